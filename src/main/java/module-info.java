@@ -29,6 +29,9 @@ module uk.ac.leeds.ccg.r2d {
     requires transitive uk.ac.leeds.ccg.stats;
     requires transitive uk.ac.leeds.ccg.v2d;
 
+    requires jdk.management;
+    requires jdk.httpserver;
+
     exports uk.ac.leeds.ccg.r2d.entities;
     exports uk.ac.leeds.ccg.r2d.io;
 }
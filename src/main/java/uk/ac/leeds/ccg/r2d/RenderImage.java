@@ -17,9 +17,6 @@ package uk.ac.leeds.ccg.r2d;
 
 import ch.obermuhlner.math.big.BigRational;
 import java.awt.Color;
-import java.awt.Image;
-import java.awt.Panel;
-import java.awt.image.MemoryImageSource;
 import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -43,9 +40,11 @@ import uk.ac.leeds.ccg.r2d.entities.PolygonNoInternalHoles;
 import uk.ac.leeds.ccg.r2d.entities.Triangle;
 import uk.ac.leeds.ccg.r2d.grids.Colour_MapDouble;
 import uk.ac.leeds.ccg.r2d.io.GSHHG;
+import uk.ac.leeds.ccg.r2d.io.GSHHGReader;
 import uk.ac.leeds.ccg.r2d.io.IO;
 import uk.ac.leeds.ccg.stats.range.Stats_RangeDouble;
 import uk.ac.leeds.ccg.v2d.core.V2D_Environment;
+import uk.ac.leeds.ccg.v2d.geometry.V2D_AABB;
 import uk.ac.leeds.ccg.v2d.geometry.V2D_ConvexArea;
 import uk.ac.leeds.ccg.v2d.geometry.V2D_FiniteGeometry;
 import uk.ac.leeds.ccg.v2d.geometry.V2D_LineSegment;
@@ -98,16 +97,6 @@ public class RenderImage {
      */
     V2D_LineSegment pq;
 
-    /**
-     * The rsp of window.
-     */
-    V2D_Triangle rsp;
-
-    /**
-     * The rs of window.
-     */
-    V2D_LineSegment rs;
-
     /**
      * The pixel height pq vector of window.
      */
@@ -148,11 +137,6 @@ public class RenderImage {
      */
     Path output;
 
-    /**
-     * pixelSize
-     */
-    BigRational pixelSize;
-
     /**
      * If true then axes are drawn.
      */
@@ -178,6 +162,11 @@ public class RenderImage {
      */
     boolean drawPolygons;
 
+    /**
+     * For transforming between world and fractional pixel coordinates.
+     */
+    ScreenTransform transform;
+
     /**
      * Create a new instance.
      *
@@ -194,17 +183,14 @@ public class RenderImage {
         this.env = env;
         this.window = window;
         this.pqr = window.getPQR();
-        this.rsp = window.getRSP();
         this.pq = pqr.getPQ(oom, rm);
         this.pqv = pq.l.v.divide(BigRational.valueOf(nrows), oom, rm);
         this.p = window.getPQR().getP(oom, rm);
-        this.rs = rsp.getQR(oom, rm);
         this.qrv = pqr.getQR(oom, rm).l.v.divide(BigRational.valueOf(ncols), oom, rm);
         this.nrows = nrows;
         this.ncols = ncols;
         this.oom = oom;
         this.rm = rm;
-        this.pixelSize = rs.getLength(oom, rm).getSqrt(oom, rm).divide(ncols);
         this.drawAxes = drawAxes;
         this.grid = grid;
         this.gridCMs = gridCMs;
@@ -212,6 +198,7 @@ public class RenderImage {
         this.drawCircumcircles = drawCircumcircles;
         this.drawPolygonsNoInternalHoles = drawPolygonsNoInternalHoles;
         this.drawPolygons = drawPolygons;
+        this.transform = new ScreenTransform(p, pqv, qrv, oom, rm);
     }
 
     /**
@@ -885,7 +872,13 @@ public class RenderImage {
         Path outDataDir = Paths.get("data", "input", "gshhg-bin-2.3.7");
         Path filepath = Paths.get(outDataDir.toString(), gshhs_name + ".b");
         V2D_Point[] points = null;
-        GSHHG gshhg = new GSHHG(filepath, env, scale, oom, rm);
+        GSHHGReader.Query query = new GSHHGReader.Query() {
+            @Override
+            public boolean accept(GSHHGReader.Header h) {
+                return h.id == 464;
+            }
+        };
+        GSHHG gshhg = new GSHHG(filepath, env, scale, oom, rm, query);
         HashMap<Integer, V2D_Polygon> polygons = gshhg.polygons;
         for (V2D_Polygon p : polygons.values()) {
             universe.addPolygon(p, oom, rm);
@@ -904,10 +897,7 @@ public class RenderImage {
             renderLine(axes.xAxis, Color.blue, pix);
             renderLine(axes.yAxis, Color.red, pix);
         }
-        MemoryImageSource m = new MemoryImageSource(ncols, nrows, pix, 0, ncols);
-        Panel panel = new Panel();
-        Image image = panel.createImage(m);
-        IO.imageToFile(image, "png", output);
+        IO.imageToFile(pix, ncols, nrows, "png", output);
         System.out.println("Rendered");
     }
 
@@ -943,9 +933,15 @@ public class RenderImage {
             }
         }
 
+        // Only entities with an AABB intersecting the window are rendered.
+        // Circumcircles can extend beyond the AABB of their triangle, so all
+        // triangles are rendered if these are drawn.
+        V2D_AABB aabb = window.getAABB(oom, rm);
+
         // Render triangles
         if (drawTriangles) {
-            ArrayList<Triangle> ts = universe.triangles;
+            ArrayList<Triangle> ts = drawCircumcircles ? universe.triangles
+                    : universe.getTriangles(aabb, oom, rm);
             for (int i = 0; i < ts.size(); i++) {
                 renderTriangle(ts.get(i), pix);
             }
@@ -953,7 +949,8 @@ public class RenderImage {
 
         // Render PolygonsNoInternalHoles
         if (drawPolygonsNoInternalHoles) {
-            ArrayList<PolygonNoInternalHoles> ps = universe.pnih;
+            ArrayList<PolygonNoInternalHoles> ps
+                    = universe.getPolygonsNoInternalHoles(aabb, oom, rm);
             for (int i = 0; i < ps.size(); i++) {
                 renderPolygonNoInternalHoles(ps.get(i), pix);
             }
@@ -961,7 +958,7 @@ public class RenderImage {
 
         // Render polygons
         if (drawPolygons) {
-            ArrayList<Polygon> ps = universe.polygons;
+            ArrayList<Polygon> ps = universe.getPolygons(aabb, oom, rm);
             for (int i = 0; i < ps.size(); i++) {
                 renderPolygon(ps.get(i), pix);
             }
@@ -986,78 +983,49 @@ public class RenderImage {
     }
 
     private void render(int[] pix, int r, int c, Color color) {
-        r = nrows - r - 1;
-        int in = (r * ncols) + c;
-        if (!(in < 0 || in >= pix.length)) {
-            pix[in] = color.getRGB();
+        if (r >= 0 && r < nrows && c >= 0 && c < ncols) {
+            pix[(nrows - r - 1) * ncols + c] = color.getRGB();
         }
     }
 
     /**
      * Calculate and return the row index of the screen that p is on.
      *
-     * @param p A point on the screen.
-     * @param qr The line segment that is the bottom of the screen.
-     * @return The row index of the screen for the point p.
+     * @param p A point.
+     * @return The row index of the screen for the point p. This is negative
+     * or greater than or equal to nrows if p is outside the window.
      */
     protected int getRow(V2D_Point p) {
-        BigRational d = rs.getDistance(p, oom, rm);
-        return (d.divide(pixelSize)).intValue();
+        return ScreenTransform.floor(transform.getRow(p));
     }
 
     /**
      * Calculate and return the column index of the screen that p is on.
      *
-     * @param p A point on the screen.
-     * @return The column index of the screen for the point p.
+     * @param p A point.
+     * @return The column index of the screen for the point p. This is
+     * negative or greater than or equal to ncols if p is outside the window.
      */
     protected int getCol(V2D_Point p) {
-        BigRational d = pq.getDistance(p, oom, rm);
-        return (d.divide(pixelSize)).intValue();
+        return ScreenTransform.floor(transform.getCol(p));
     }
 
     /**
      * For rendering a line on the image. Lines may be obscured by other
-     * rendered entities. The rendering order determines what is visible.
+     * rendered entities. The rendering order determines what is visible. Only
+     * the pixels the line passes through are visited using
+     * {@link Supercover}.
      *
      * @param l The line to render.
+     * @param color The colour to render the line.
      * @param pix The image.
      */
     public void renderLine(V2D_LineSegment l, Color color, int[] pix) {
-        V2D_Point lp = l.getP();
-        // Calculate the min and max row and col.
-        int minr = getRow(lp);
-        int minc = getCol(lp);
-        int maxr = minr;
-        int maxc = minc;
-        V2D_Point lq = l.getQ(oom, rm);
-        int rq = getRow(lq);
-        int cq = getCol(lq);
-        minr = Math.min(minr, rq);
-        minc = Math.min(minc, cq);
-        maxr = Math.max(maxr, rq);
-        maxc = Math.max(maxc, cq);
-        if (minr < 0) {
-            minr = 0;
-        }
-        if (minc < 0) {
-            minc = 0;
-        }
-        if (maxr >= nrows) {
-            maxr = nrows - 1;
-        }
-        if (maxc >= ncols) {
-            maxc = ncols - 1;
-        }
-        for (int r = minr; r <= maxr; r++) {
-            for (int c = minc; c <= maxc; c++) {
-                V2D_Rectangle pixel = getPixel(r, c);
-                V2D_FiniteGeometry pil = pixel.getIntersect(l, oom, rm);
-                if (pil != null) {
-                    render(pix, r, c, color);
-                }
-            }
-        }
+        V2D_Point p = l.getP();
+        V2D_Point q = l.getQ(oom, rm);
+        Supercover.render(transform.getCol(p), transform.getRow(p),
+                transform.getCol(q), transform.getRow(q), pix, nrows, ncols,
+                color.getRGB());
     }
 
     /**
@@ -1107,30 +1075,13 @@ public class RenderImage {
                 V2D_FiniteGeometry pit = pixel.getIntersect(t, oom, rm);
                 if (pit != null) {
                     render(pix, r, c, triangle.color);
-                    // Edge
-                    /**
-                     * There is probably a faster way to render the edge by only
-                     * getting intersections for more restricted rows and
-                     * columns.
-                     */
-                    // PQ
-                    V2D_FiniteGeometry pipq = pixel.getIntersect(t.getPQ(oom, rm), oom, rm);
-                    if (pipq != null) {
-                        render(pix, r, c, triangle.getColorPQ());
-                    }
-                    // QR
-                    V2D_FiniteGeometry piqr = pixel.getIntersect(t.getQR(oom, rm), oom, rm);
-                    if (piqr != null) {
-                        render(pix, r, c, triangle.getColorQR());
-                    }
-                    // RP
-                    V2D_FiniteGeometry pirp = pixel.getIntersect(t.getRP(oom, rm), oom, rm);
-                    if (pirp != null) {
-                        render(pix, r, c, triangle.getColorRP());
-                    }
                 }
             }
         }
+        // Edges
+        renderLine(t.getPQ(oom, rm), triangle.getColorPQ(), pix);
+        renderLine(t.getQR(oom, rm), triangle.getColorQR(), pix);
+        renderLine(t.getRP(oom, rm), triangle.getColorRP(), pix);
     }
 
     /**
@@ -1142,25 +1093,28 @@ public class RenderImage {
      */
     public void renderPolygonNoInternalHoles(PolygonNoInternalHoles polygon,
             int[] pix) {
-        V2D_PolygonNoInternalHoles poly = polygon.polygon;
-        V2D_ConvexArea ch = poly.getConvexHull(oom, rm);
-        HashMap<Integer, V2D_LineSegment> edges = poly.getEdges(oom, rm);
-        V2D_LineSegment[] edgesArray = new V2D_LineSegment[edges.size()];
-        for (int i = 0; i < edgesArray.length; i++) {
-            edgesArray[i] = edges.get(i);
-        }
-        V2D_Point[] ePs = ch.getPointsArray(oom, rm);
+        V2D_PolygonNoInternalHoles poly = polygon.getPolygon();
+        V2D_ConvexArea ch = polygon.getConvexHull(oom, rm);
+        V2D_Point[] ePs = polygon.getConvexHullPoints(oom, rm);
         // Calculate the min and max row and col.
-        int minr = getRow(ePs[0]);
-        int maxr = getRow(ePs[0]);
-        int minc = getCol(ePs[0]);
-        int maxc = getCol(ePs[0]);
+        double[] cols = new double[ePs.length];
+        double[] rows = new double[ePs.length];
+        transform.transform(ePs, cols, rows);
+        double minx = cols[0];
+        double maxx = cols[0];
+        double miny = rows[0];
+        double maxy = rows[0];
         for (int i = 1; i < ePs.length; i++) {
-            minr = Math.min(minr, getRow(ePs[i]));
-            maxr = Math.max(maxr, getRow(ePs[i]));
-            minc = Math.min(minc, getCol(ePs[i]));
-            maxc = Math.max(maxc, getCol(ePs[i]));
+            minx = Math.min(minx, cols[i]);
+            maxx = Math.max(maxx, cols[i]);
+            miny = Math.min(miny, rows[i]);
+            maxy = Math.max(maxy, rows[i]);
         }
+        // Widen by a pixel to allow for rounding to double.
+        int minr = (int) Math.floor(miny) - 1;
+        int maxr = (int) Math.floor(maxy) + 1;
+        int minc = (int) Math.floor(minx) - 1;
+        int maxc = (int) Math.floor(maxx) + 1;
         if (minr < 0) {
             minr = 0;
         }
@@ -1180,12 +1134,14 @@ public class RenderImage {
                     if (poly.intersects(pixel, oom, rm)) {
                         render(pix, r, c, polygon.color);
                     }
-                    if (pixel.intersects(oom, rm, edgesArray)) {
-                        render(pix, r, c, polygon.getColorExternalEdge());
-                    }
                 }
             }
         }
+        // Edges
+        Color ce = polygon.getColorExternalEdge();
+        for (V2D_LineSegment e : polygon.getEdges(oom, rm)) {
+            renderLine(e, ce, pix);
+        }
     }
 
     /**
@@ -1196,26 +1152,28 @@ public class RenderImage {
      * @param pix The image.
      */
     public void renderPolygon(Polygon polygon, int[] pix) {
-        V2D_Polygon poly = polygon.polygon;
-        V2D_ConvexArea ch = poly.getConvexHull(oom, rm);
-        HashMap<Integer, V2D_LineSegment> edges = poly.getEdges(oom, rm);
-//        V2D_LineSegment[] edgesArray = new V2D_LineSegment[edges.size()];
-//        for (int i = 0; i < edgesArray.length; i++) {
-//            edgesArray[i] = edges.get(i);
-//        }
-        HashMap<Integer, V2D_PolygonNoInternalHoles> internalHoles = poly.internalHoles;
-        V2D_Point[] ePs = ch.getPointsArray(oom, rm);
+        V2D_Polygon poly = polygon.getPolygon();
+        V2D_ConvexArea ch = polygon.getConvexHull(oom, rm);
+        V2D_Point[] ePs = polygon.getConvexHullPoints(oom, rm);
         // Calculate the min and max row and col.
-        int minr = getRow(ePs[0]);
-        int maxr = getRow(ePs[0]);
-        int minc = getCol(ePs[0]);
-        int maxc = getCol(ePs[0]);
+        double[] cols = new double[ePs.length];
+        double[] rows = new double[ePs.length];
+        transform.transform(ePs, cols, rows);
+        double minx = cols[0];
+        double maxx = cols[0];
+        double miny = rows[0];
+        double maxy = rows[0];
         for (int i = 1; i < ePs.length; i++) {
-            minr = Math.min(minr, getRow(ePs[i]));
-            maxr = Math.max(maxr, getRow(ePs[i]));
-            minc = Math.min(minc, getCol(ePs[i]));
-            maxc = Math.max(maxc, getCol(ePs[i]));
+            minx = Math.min(minx, cols[i]);
+            maxx = Math.max(maxx, cols[i]);
+            miny = Math.min(miny, rows[i]);
+            maxy = Math.max(maxy, rows[i]);
         }
+        // Widen by a pixel to allow for rounding to double.
+        int minr = (int) Math.floor(miny) - 1;
+        int maxr = (int) Math.floor(maxy) + 1;
+        int minc = (int) Math.floor(minx) - 1;
+        int maxc = (int) Math.floor(maxx) + 1;
         if (minr < 0) {
             minr = 0;
         }
@@ -1235,17 +1193,20 @@ public class RenderImage {
                     if (poly.intersects(pixel, oom, rm)) {
                         render(pix, r, c, polygon.color);
                     }
-                    if (pixel.intersects(oom, rm, edges.values())) {
-                        render(pix, r, c, polygon.getColorExternalEdge());
-                    }
-                    for (var x : internalHoles.values()) {
-                        if (pixel.intersects(oom, rm, x.getEdges(oom, rm).values())) {
-                            render(pix, r, c, polygon.getColorInternalEdge());
-                        }
-                    }
                 }
             }
         }
+        // Edges
+        Color ce = polygon.getColorExternalEdge();
+        for (V2D_LineSegment e : polygon.getEdges(oom, rm)) {
+            renderLine(e, ce, pix);
+        }
+        Color ci = polygon.getColorInternalEdge();
+        for (V2D_LineSegment[] holeEdges : polygon.getHoleEdges(oom, rm)) {
+            for (V2D_LineSegment e : holeEdges) {
+                renderLine(e, ci, pix);
+            }
+        }
     }
 
     /**
@@ -1254,19 +1215,14 @@ public class RenderImage {
      * @return The pixel rectangle.
      */
     public V2D_Rectangle getPixel(int row, int col) {
-        // p
-        V2D_Point pP = new V2D_Point(p);
-        pP.translate(pqv.multiply(row, oom, rm).add(qrv.multiply(col, oom, rm), oom, rm), oom, rm);
-        // q
-        V2D_Point pQ = new V2D_Point(p);
-        pQ.translate(pqv.multiply(row + 1, oom, rm).add(qrv.multiply(col, oom, rm), oom, rm), oom, rm);
-        // r
-        V2D_Point pR = new V2D_Point(p);
-        pR.translate(pqv.multiply(row + 1, oom, rm).add(qrv.multiply(col + 1, oom, rm), oom, rm), oom, rm);
-        // s
-        V2D_Point pS = new V2D_Point(p);
-        pS.translate(pqv.multiply(row, oom, rm).add(qrv.multiply(col + 1, oom, rm), oom, rm), oom, rm);
-        return new V2D_Rectangle(pP, pQ, pR, pS, oom, rm);
+        BigRational r0 = BigRational.valueOf(row);
+        BigRational r1 = BigRational.valueOf(row + 1);
+        BigRational c0 = BigRational.valueOf(col);
+        BigRational c1 = BigRational.valueOf(col + 1);
+        return new V2D_Rectangle(transform.getPoint(env, c0, r0),
+                transform.getPoint(env, c0, r1),
+                transform.getPoint(env, c1, r1),
+                transform.getPoint(env, c1, r0), oom, rm);
     }
 
     /**
@@ -5,6 +5,8 @@
 package uk.ac.leeds.ccg.r2d;
 
 import uk.ac.leeds.ccg.r2d.d.RenderImage_d;
+import uk.ac.leeds.ccg.r2d.d.TilePyramid_d;
+import uk.ac.leeds.ccg.r2d.d.TileServer_d;
 
 /**
  *
@@ -21,8 +23,12 @@ public class Run {
             RenderImage.main(args);
         } else if (args[0].equalsIgnoreCase("D")) {
             RenderImage_d.main(args);
+        } else if (args[0].equalsIgnoreCase("TILES")) {
+            TilePyramid_d.main(args);
+        } else if (args[0].equalsIgnoreCase("SERVE")) {
+            TileServer_d.main(args);
         } else {
-            System.err.println("Argument 0 should be either \"br\" or \"d\"");
+            System.err.println("Argument 0 should be either \"br\", \"d\", \"tiles\" or \"serve\"");
             System.exit(1);
         }
     }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d;
+
+import ch.obermuhlner.math.big.BigRational;
+import java.math.RoundingMode;
+import uk.ac.leeds.ccg.v2d.core.V2D_Environment;
+import uk.ac.leeds.ccg.v2d.geometry.V2D_Point;
+import uk.ac.leeds.ccg.v2d.geometry.V2D_Vector;
+
+/**
+ * An exact affine transform between world coordinates and fractional pixel
+ * coordinates for a window. The window has lower left corner p, a vector pqv
+ * the height of a row of pixels and a vector qrv the width of a column of
+ * pixels. Column 0 and row 0 are at p and rows increase towards the top of
+ * the window. The pixel (row, col) covers the fractional coordinates
+ * [col, col + 1) x [row, row + 1).
+ *
+ * @author Andy Turner
+ */
+public class ScreenTransform {
+
+    /**
+     * The Order of Magnitude for the precision.
+     */
+    final int oom;
+
+    /**
+     * The RoundingMode for any rounding.
+     */
+    final RoundingMode rm;
+
+    /**
+     * The coordinates of the lower left corner of the window.
+     */
+    final BigRational px, py;
+
+    /**
+     * The change in x and y for a change of one column.
+     */
+    final BigRational qrx, qry;
+
+    /**
+     * The change in x and y for a change of one row.
+     */
+    final BigRational pqx, pqy;
+
+    /**
+     * The coefficients of x and y for calculating fractional columns.
+     */
+    final BigRational cx, cy;
+
+    /**
+     * The coefficients of x and y for calculating fractional rows.
+     */
+    final BigRational rx, ry;
+
+    /**
+     * Create a new instance.
+     *
+     * @param p The lower left corner of the window.
+     * @param pqv The vector from the bottom to the top of a row of pixels.
+     * @param qrv The vector from the left to the right of a column of pixels.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     */
+    public ScreenTransform(V2D_Point p, V2D_Vector pqv, V2D_Vector qrv,
+            int oom, RoundingMode rm) {
+        this.oom = oom;
+        this.rm = rm;
+        this.px = p.getX(oom, rm);
+        this.py = p.getY(oom, rm);
+        this.pqx = pqv.getDX(oom, rm);
+        this.pqy = pqv.getDY(oom, rm);
+        this.qrx = qrv.getDX(oom, rm);
+        this.qry = qrv.getDY(oom, rm);
+        BigRational det = qrx.multiply(pqy).subtract(pqx.multiply(qry));
+        this.cx = pqy.divide(det);
+        this.cy = pqx.negate().divide(det);
+        this.rx = qry.negate().divide(det);
+        this.ry = qrx.divide(det);
+    }
+
+    /**
+     * @param p The point.
+     * @return The fractional column index for p.
+     */
+    public BigRational getCol(V2D_Point p) {
+        return p.getX(oom, rm).subtract(px).multiply(cx).add(
+                p.getY(oom, rm).subtract(py).multiply(cy));
+    }
+
+    /**
+     * @param p The point.
+     * @return The fractional row index for p.
+     */
+    public BigRational getRow(V2D_Point p) {
+        return p.getX(oom, rm).subtract(px).multiply(rx).add(
+                p.getY(oom, rm).subtract(py).multiply(ry));
+    }
+
+    /**
+     * The inverse transform.
+     *
+     * @param env The environment for the point returned.
+     * @param col The fractional column index.
+     * @param row The fractional row index.
+     * @return The point at (col, row).
+     */
+    public V2D_Point getPoint(V2D_Environment env, BigRational col,
+            BigRational row) {
+        return new V2D_Point(env,
+                px.add(col.multiply(qrx)).add(row.multiply(pqx)),
+                py.add(col.multiply(qry)).add(row.multiply(pqy)));
+    }
+
+    /**
+     * Transforms all the points in pts exactly and then rounds the result to
+     * double precision.
+     *
+     * @param pts The points.
+     * @param cols Output for the fractional column indexes. The length must
+     * be at least that of pts.
+     * @param rows Output for the fractional row indexes. The length must be
+     * at least that of pts.
+     */
+    public void transform(V2D_Point[] pts, double[] cols, double[] rows) {
+        for (int i = 0; i < pts.length; i++) {
+            BigRational dx = pts[i].getX(oom, rm).subtract(px);
+            BigRational dy = pts[i].getY(oom, rm).subtract(py);
+            cols[i] = dx.multiply(cx).add(dy.multiply(cy)).toDouble();
+            rows[i] = dx.multiply(rx).add(dy.multiply(ry)).toDouble();
+        }
+    }
+
+    /**
+     * @param x The value to floor.
+     * @return The largest integer less than or equal to x.
+     */
+    public static int floor(BigRational x) {
+        int i = x.integerPart().intValue();
+        if (x.signum() < 0 && !x.isInteger()) {
+            i--;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d;
+
+import ch.obermuhlner.math.big.BigRational;
+
+/**
+ * For rasterizing line segments by walking the pixels they pass through
+ * using exact arithmetic.
+ *
+ * Coordinates are fractional pixel coordinates: x is the column and y is the
+ * row with row 0 at the bottom of the image. Each pixel is the half open unit
+ * square [col, col + 1) x [row, row + 1). The segment is first clipped to the
+ * image and then walked from pixel to pixel by stepping across whichever of
+ * the next column or row boundary is nearest (a DDA). Where the segment passes
+ * exactly through a pixel corner both pixels either side of the corner are
+ * visited, so the walk is a conservative supercover: every pixel the segment
+ * touches is rendered and the cost is proportional to the number of them.
+ *
+ * @author Andy Turner
+ */
+public class Supercover {
+
+    /**
+     * Create a new instance.
+     */
+    public Supercover() {
+    }
+
+    /**
+     * Renders the line segment from (x0, y0) to (x1, y1) into pix.
+     *
+     * @param x0 The x (column) coordinate of the start.
+     * @param y0 The y (row) coordinate of the start.
+     * @param x1 The x (column) coordinate of the end.
+     * @param y1 The y (row) coordinate of the end.
+     * @param pix The image with row 0 at the top.
+     * @param nrows The number of rows in pix.
+     * @param ncols The number of columns in pix.
+     * @param rgb The colour for the line.
+     */
+    public static void render(BigRational x0, BigRational y0, BigRational x1,
+            BigRational y1, int[] pix, int nrows, int ncols, int rgb) {
+        // Clip to the image (Liang-Barsky).
+        BigRational dx = x1.subtract(x0);
+        BigRational dy = y1.subtract(y0);
+        BigRational t0 = BigRational.ZERO;
+        BigRational t1 = BigRational.ONE;
+        BigRational[] p = {dx.negate(), dx, dy.negate(), dy};
+        BigRational[] q = {x0, BigRational.valueOf(ncols).subtract(x0), y0,
+            BigRational.valueOf(nrows).subtract(y0)};
+        for (int i = 0; i < 4; i++) {
+            if (p[i].signum() == 0) {
+                if (q[i].signum() < 0) {
+                    return;
+                }
+            } else {
+                BigRational t = q[i].divide(p[i]);
+                if (p[i].signum() < 0) {
+                    if (t.compareTo(t1) > 0) {
+                        return;
+                    }
+                    if (t.compareTo(t0) > 0) {
+                        t0 = t;
+                    }
+                } else {
+                    if (t.compareTo(t0) < 0) {
+                        return;
+                    }
+                    if (t.compareTo(t1) < 0) {
+                        t1 = t;
+                    }
+                }
+            }
+        }
+        BigRational sx = x0.add(t0.multiply(dx));
+        BigRational sy = y0.add(t0.multiply(dy));
+        int c = ScreenTransform.floor(sx);
+        int r = ScreenTransform.floor(sy);
+        int c1 = ScreenTransform.floor(x0.add(t1.multiply(dx)));
+        int r1 = ScreenTransform.floor(y0.add(t1.multiply(dy)));
+        // Step directions and parametric distances to the next boundaries.
+        // These are only used for an axis with steps, so dx or dy is not 0.
+        int stepc = Integer.compare(c1, c);
+        int stepr = Integer.compare(r1, r);
+        BigRational tMaxX = null;
+        BigRational tDeltaX = null;
+        if (dx.signum() > 0) {
+            tMaxX = BigRational.valueOf(c + 1).subtract(sx).divide(dx);
+            tDeltaX = dx.reciprocal();
+        } else if (dx.signum() < 0) {
+            tMaxX = sx.subtract(BigRational.valueOf(c)).divide(dx.negate());
+            tDeltaX = dx.negate().reciprocal();
+        }
+        BigRational tMaxY = null;
+        BigRational tDeltaY = null;
+        if (dy.signum() > 0) {
+            tMaxY = BigRational.valueOf(r + 1).subtract(sy).divide(dy);
+            tDeltaY = dy.reciprocal();
+        } else if (dy.signum() < 0) {
+            tMaxY = sy.subtract(BigRational.valueOf(r)).divide(dy.negate());
+            tDeltaY = dy.negate().reciprocal();
+        }
+        int nc = Math.abs(c1 - c);
+        int nr = Math.abs(r1 - r);
+        set(pix, nrows, ncols, r, c, rgb);
+        while (nc > 0 || nr > 0) {
+            int cmp = nc > 0 && nr > 0 ? tMaxX.compareTo(tMaxY) : 0;
+            if (nc > 0 && nr > 0 && cmp == 0) {
+                // Through a corner: render both neighbouring pixels.
+                set(pix, nrows, ncols, r, c + stepc, rgb);
+                set(pix, nrows, ncols, r + stepr, c, rgb);
+                c += stepc;
+                r += stepr;
+                tMaxX = tMaxX.add(tDeltaX);
+                tMaxY = tMaxY.add(tDeltaY);
+                nc--;
+                nr--;
+            } else if (nr == 0 || (nc > 0 && cmp < 0)) {
+                c += stepc;
+                tMaxX = tMaxX.add(tDeltaX);
+                nc--;
+            } else {
+                r += stepr;
+                tMaxY = tMaxY.add(tDeltaY);
+                nr--;
+            }
+            set(pix, nrows, ncols, r, c, rgb);
+        }
+    }
+
+    /**
+     * Sets the pixel at (r, c) to rgb if it is in the image.
+     */
+    private static void set(int[] pix, int nrows, int ncols, int r, int c,
+            int rgb) {
+        if (r >= 0 && r < nrows && c >= 0 && c < ncols) {
+            pix[(nrows - r - 1) * ncols + c] = rgb;
+        }
+    }
+}
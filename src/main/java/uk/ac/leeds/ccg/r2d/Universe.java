@@ -20,6 +20,7 @@ import java.math.RoundingMode;
 import java.util.ArrayList;
 import uk.ac.leeds.ccg.data.id.Data_ID_long;
 import uk.ac.leeds.ccg.grids.d2.grid.d.Grids_GridDouble;
+import uk.ac.leeds.ccg.r2d.d.STRTree_d;
 import uk.ac.leeds.ccg.r2d.entities.Polygon;
 import uk.ac.leeds.ccg.r2d.entities.PolygonNoInternalHoles;
 import uk.ac.leeds.ccg.r2d.entities.Triangle;
@@ -59,6 +60,24 @@ public class Universe {
      * The grids to render.
      */
     public ArrayList<Grids_GridDouble> grids;
+
+    /**
+     * A spatial index of {@link #triangles}. The bounds are rounded outwards
+     * to double precision.
+     */
+    STRTree_d<Triangle> triangleIndex;
+
+    /**
+     * A spatial index of {@link #pnih}. The bounds are rounded outwards to
+     * double precision.
+     */
+    STRTree_d<PolygonNoInternalHoles> pnihIndex;
+
+    /**
+     * A spatial index of {@link #polygons}. The bounds are rounded outwards
+     * to double precision.
+     */
+    STRTree_d<Polygon> polygonIndex;
         
     /**
      * long
@@ -76,6 +95,9 @@ public class Universe {
         pnih = new ArrayList<>();
         polygons = new ArrayList<>();
         grids = new ArrayList<>();
+        triangleIndex = new STRTree_d<>();
+        pnihIndex = new STRTree_d<>();
+        polygonIndex = new STRTree_d<>();
         this.envelope = envelope;
     }
 
@@ -98,7 +120,7 @@ public class Universe {
     public Triangle addTriangle(V2D_Triangle triangle, int oom, RoundingMode rm){
         Triangle t = new Triangle(triangle, getNextID());
         triangles.add(t);
-        envelope = envelope.union(triangle.getAABB(oom, rm), oom);
+        add(triangleIndex, t, triangle.getAABB(oom, rm), oom, rm);
         return t;
     }
     
@@ -114,7 +136,7 @@ public class Universe {
     public Triangle addTriangle(V2D_Triangle triangle, int oom, RoundingMode rm, Color color, Color colorEdge){
         Triangle t = new Triangle(triangle, getNextID(), color, colorEdge);
         triangles.add(t);
-        envelope = envelope.union(triangle.getAABB(oom, rm), oom);
+        add(triangleIndex, t, triangle.getAABB(oom, rm), oom, rm);
         return t;
     }
     
@@ -133,7 +155,7 @@ public class Universe {
             Color colorPQ, Color colorQR, Color colorRP){
         Triangle t = new Triangle(triangle, getNextID(), color, colorPQ, colorQR, colorRP);
         triangles.add(t);
-        envelope = envelope.union(triangle.getAABB(oom, rm), oom);
+        add(triangleIndex, t, triangle.getAABB(oom, rm), oom, rm);
         return t;
     }
     
@@ -147,7 +169,8 @@ public class Universe {
     public PolygonNoInternalHoles addPolygonNoInternalHoles(V2D_PolygonNoInternalHoles polygon, int oom, RoundingMode rm){
         PolygonNoInternalHoles p = new PolygonNoInternalHoles(polygon, getNextID());
         pnih.add(p);
-        envelope = envelope.union(polygon.getAABB(oom, rm), oom);
+        add(pnihIndex, p, polygon.getAABB(oom, rm), oom, rm);
+        p.setUniverse(this);
         return p;
     }
     
@@ -164,7 +187,8 @@ public class Universe {
             Color color, Color colorEdge){
         PolygonNoInternalHoles p = new PolygonNoInternalHoles(polygon, getNextID(), color, colorEdge);
         pnih.add(p);
-        envelope = envelope.union(polygon.getAABB(oom, rm), oom);
+        add(pnihIndex, p, polygon.getAABB(oom, rm), oom, rm);
+        p.setUniverse(this);
         return p;
     }
     
@@ -178,7 +202,8 @@ public class Universe {
     public Polygon addPolygon(V2D_Polygon polygon, int oom, RoundingMode rm){
         Polygon t = new Polygon(polygon, getNextID());
         polygons.add(t);
-        envelope = envelope.union(polygon.getAABB(oom, rm), oom);
+        add(polygonIndex, t, polygon.getAABB(oom, rm), oom, rm);
+        t.setUniverse(this);
         return t;
     }
     
@@ -195,7 +220,8 @@ public class Universe {
             Color color, Color colorEdge){
         Polygon t = new Polygon(polygon, getNextID(), color, colorEdge);
         polygons.add(t);
-        envelope = envelope.union(polygon.getAABB(oom, rm), oom);
+        add(polygonIndex, t, polygon.getAABB(oom, rm), oom, rm);
+        t.setUniverse(this);
         return t;
     }
     
@@ -213,10 +239,127 @@ public class Universe {
         Polygon t = new Polygon(polygon, getNextID(), color, 
                 colorInternalEdge, colorExternalEdge);
         polygons.add(t);
-        envelope = envelope.union(polygon.getAABB(oom, rm), oom);
+        add(polygonIndex, t, polygon.getAABB(oom, rm), oom, rm);
+        t.setUniverse(this);
         return t;
     }
     
+    /**
+     * Adds the entity to the index and extends the envelope.
+     *
+     * @param index The index.
+     * @param entity The entity.
+     * @param aabb The AABB of the entity.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     */
+    private <T> void add(STRTree_d<T> index, T entity, V2D_AABB aabb,
+            int oom, RoundingMode rm) {
+        index.add(entity, Math.nextDown(aabb.getXMin(oom, rm).toDouble()),
+                Math.nextDown(aabb.getYMin(oom, rm).toDouble()),
+                Math.nextUp(aabb.getXMax(oom, rm).toDouble()),
+                Math.nextUp(aabb.getYMax(oom, rm).toDouble()));
+        envelope = envelope.union(aabb, oom);
+    }
+
+    /**
+     * Updates the index and extends the envelope for the geometry of p
+     * having been set.
+     *
+     * @param p The polygon.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     */
+    public void update(PolygonNoInternalHoles p, int oom, RoundingMode rm) {
+        update(pnihIndex, p, p.getAABB(oom, rm), oom, rm);
+    }
+
+    /**
+     * Updates the index and extends the envelope for the geometry of p
+     * having been set.
+     *
+     * @param p The polygon.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     */
+    public void update(Polygon p, int oom, RoundingMode rm) {
+        update(polygonIndex, p, p.getAABB(oom, rm), oom, rm);
+    }
+
+    /**
+     * Updates the entity in the index and extends the envelope.
+     *
+     * @param index The index.
+     * @param entity The entity.
+     * @param aabb The AABB of the entity.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     */
+    private <T> void update(STRTree_d<T> index, T entity, V2D_AABB aabb,
+            int oom, RoundingMode rm) {
+        if (index.update(entity,
+                Math.nextDown(aabb.getXMin(oom, rm).toDouble()),
+                Math.nextDown(aabb.getYMin(oom, rm).toDouble()),
+                Math.nextUp(aabb.getXMax(oom, rm).toDouble()),
+                Math.nextUp(aabb.getYMax(oom, rm).toDouble()))) {
+            envelope = envelope.union(aabb, oom);
+        }
+    }
+
+    /**
+     * @param aabb The window.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return The triangles with an AABB intersecting aabb in the order they
+     * were added.
+     */
+    public ArrayList<Triangle> getTriangles(V2D_AABB aabb, int oom,
+            RoundingMode rm) {
+        return query(triangleIndex, aabb, oom, rm);
+    }
+
+    /**
+     * @param aabb The window.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return The polygons with no internal holes with an AABB intersecting
+     * aabb in the order they were added.
+     */
+    public ArrayList<PolygonNoInternalHoles> getPolygonsNoInternalHoles(
+            V2D_AABB aabb, int oom, RoundingMode rm) {
+        return query(pnihIndex, aabb, oom, rm);
+    }
+
+    /**
+     * @param aabb The window.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return The polygons with an AABB intersecting aabb in the order they
+     * were added.
+     */
+    public ArrayList<Polygon> getPolygons(V2D_AABB aabb, int oom,
+            RoundingMode rm) {
+        return query(polygonIndex, aabb, oom, rm);
+    }
+
+    /**
+     * The query box is rounded outwards to double precision, so this may
+     * return entities that only nearly intersect aabb, but not miss any.
+     *
+     * @param index The index.
+     * @param aabb The window.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return The entities in index with an AABB intersecting aabb.
+     */
+    private static <T> ArrayList<T> query(STRTree_d<T> index, V2D_AABB aabb,
+            int oom, RoundingMode rm) {
+        return index.query(Math.nextDown(aabb.getXMin(oom, rm).toDouble()),
+                Math.nextDown(aabb.getYMin(oom, rm).toDouble()),
+                Math.nextUp(aabb.getXMax(oom, rm).toDouble()),
+                Math.nextUp(aabb.getYMax(oom, rm).toDouble()));
+    }
+
     /**
      * Adds the grid.
      * @param grid The grid to add. 
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A uniform grid index of the edges of the rings of a polygon for testing
+ * boxes against the edges and points against the area using the even-odd
+ * rule without looking at every edge.
+ *
+ * The bounding box of the rings is divided into cells and each edge is listed
+ * in every cell its bounding box overlaps, so an edge that intersects a box
+ * is listed in a cell that the box overlaps. Each row of cells is also a
+ * band listing every edge with a y range that overlaps it, so the edges a
+ * horizontal ray from a point may cross are those in the band of the point.
+ * The results are the same as testing every edge as in
+ * {@link PixelBoundaries_d#intersectsRings(int, int, double[][], double[][])}.
+ *
+ * @author Andy Turner
+ */
+public class EdgeIndex_d {
+
+    /**
+     * The maximum number of cells along each axis.
+     */
+    static final int MAX_CELLS = 1024;
+
+    /**
+     * The start and end coordinates of the edges. The edges of each ring go
+     * from the previous point to the next with the first edge from the last
+     * point to the first.
+     */
+    final double[] ax, ay, bx, by;
+
+    /**
+     * The bounding box of the rings.
+     */
+    public final double xmin, ymin, xmax, ymax;
+
+    /**
+     * The number of cells along the x and y axes.
+     */
+    final int nx, ny;
+
+    /**
+     * The number of cells per unit along the x and y axes.
+     */
+    final double sx, sy;
+
+    /**
+     * The edges listed in cell (row, col) are
+     * cellEdges[cellStart[row * nx + col]] up to
+     * cellEdges[cellStart[row * nx + col + 1]].
+     */
+    final int[] cellStart, cellEdges;
+
+    /**
+     * The edges listed in band row are bandEdges[bandStart[row]] up to
+     * bandEdges[bandStart[row + 1]].
+     */
+    final int[] bandStart, bandEdges;
+
+    /**
+     * Create a new instance.
+     *
+     * @param xs The x coordinates of the points of each ring.
+     * @param ys The y coordinates of the points of each ring.
+     */
+    public EdgeIndex_d(double[][] xs, double[][] ys) {
+        this(DoubleBuffer.wrap(concat(xs)), DoubleBuffer.wrap(concat(ys)),
+                IntBuffer.wrap(getStarts(xs)), 0, xs.length);
+    }
+
+    /**
+     * Create a new instance for rings with their points packed into buffers
+     * as in {@link Polygons_d}. The buffers may be on or off the heap and
+     * are only read with absolute gets, so they may be shared.
+     *
+     * @param xs The x coordinates of the points.
+     * @param ys The y coordinates of the points.
+     * @param ringStart The index of the first point of each ring followed by
+     * the number of points.
+     * @param ring0 The index of the first ring.
+     * @param ring1 The index after that of the last ring.
+     */
+    public EdgeIndex_d(DoubleBuffer xs, DoubleBuffer ys, IntBuffer ringStart,
+            int ring0, int ring1) {
+        int n = ringStart.get(ring1) - ringStart.get(ring0);
+        ax = new double[n];
+        ay = new double[n];
+        bx = new double[n];
+        by = new double[n];
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        int e = 0;
+        for (int ring = ring0; ring < ring1; ring++) {
+            int p0 = ringStart.get(ring);
+            int p1 = ringStart.get(ring + 1);
+            for (int i = p0, j = p1 - 1; i < p1; j = i, i++) {
+                ax[e] = xs.get(j);
+                ay[e] = ys.get(j);
+                bx[e] = xs.get(i);
+                by[e] = ys.get(i);
+                x0 = Math.min(x0, bx[e]);
+                y0 = Math.min(y0, by[e]);
+                x1 = Math.max(x1, bx[e]);
+                y1 = Math.max(y1, by[e]);
+                e++;
+            }
+        }
+        xmin = x0;
+        ymin = y0;
+        xmax = x1;
+        ymax = y1;
+        // About one edge per cell.
+        int m = Math.max(1, Math.min(MAX_CELLS, (int) Math.sqrt(n)));
+        nx = m;
+        ny = m;
+        sx = xmax > xmin ? nx / (xmax - xmin) : 0d;
+        sy = ymax > ymin ? ny / (ymax - ymin) : 0d;
+        // Count and then fill.
+        cellStart = new int[nx * ny + 1];
+        bandStart = new int[ny + 1];
+        for (e = 0; e < n; e++) {
+            int c0 = col(Math.min(ax[e], bx[e]));
+            int c1 = col(Math.max(ax[e], bx[e]));
+            int r0 = row(Math.min(ay[e], by[e]));
+            int r1 = row(Math.max(ay[e], by[e]));
+            for (int r = r0; r <= r1; r++) {
+                bandStart[r + 1]++;
+                for (int c = c0; c <= c1; c++) {
+                    cellStart[r * nx + c + 1]++;
+                }
+            }
+        }
+        for (int i = 1; i < cellStart.length; i++) {
+            cellStart[i] += cellStart[i - 1];
+        }
+        for (int i = 1; i < bandStart.length; i++) {
+            bandStart[i] += bandStart[i - 1];
+        }
+        cellEdges = new int[cellStart[nx * ny]];
+        bandEdges = new int[bandStart[ny]];
+        int[] cellNext = cellStart.clone();
+        int[] bandNext = bandStart.clone();
+        for (e = 0; e < n; e++) {
+            int c0 = col(Math.min(ax[e], bx[e]));
+            int c1 = col(Math.max(ax[e], bx[e]));
+            int r0 = row(Math.min(ay[e], by[e]));
+            int r1 = row(Math.max(ay[e], by[e]));
+            for (int r = r0; r <= r1; r++) {
+                bandEdges[bandNext[r]++] = e;
+                for (int c = c0; c <= c1; c++) {
+                    cellEdges[cellNext[r * nx + c]++] = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param rings The coordinates of rings.
+     * @return The coordinates of all the rings in one array.
+     */
+    private static double[] concat(double[][] rings) {
+        int n = 0;
+        for (double[] ring : rings) {
+            n += ring.length;
+        }
+        double[] r = new double[n];
+        int i = 0;
+        for (double[] ring : rings) {
+            System.arraycopy(ring, 0, r, i, ring.length);
+            i += ring.length;
+        }
+        return r;
+    }
+
+    /**
+     * @param rings The coordinates of rings.
+     * @return The index of the first point of each ring in
+     * {@link #concat(double[][])} followed by the number of points.
+     */
+    private static int[] getStarts(double[][] rings) {
+        int[] r = new int[rings.length + 1];
+        for (int i = 0; i < rings.length; i++) {
+            r[i + 1] = r[i] + rings[i].length;
+        }
+        return r;
+    }
+
+    /**
+     * @param x The x coordinate.
+     * @return The column of cells x is in, clamped to the grid.
+     */
+    private int col(double x) {
+        return Math.max(0, Math.min(nx - 1, (int) Math.floor((x - xmin) * sx)));
+    }
+
+    /**
+     * @param y The y coordinate.
+     * @return The row of cells y is in, clamped to the grid.
+     */
+    private int row(double y) {
+        return Math.max(0, Math.min(ny - 1, (int) Math.floor((y - ymin) * sy)));
+    }
+
+    /**
+     * Tests if any edge intersects the half open box [bx0, bx1) x [by0, by1).
+     *
+     * @param bx0 The minimum x of the box.
+     * @param by0 The minimum y of the box.
+     * @param bx1 The maximum x of the box.
+     * @param by1 The maximum y of the box.
+     * @return {@code true} if an edge intersects the box.
+     */
+    public boolean intersectsEdge(double bx0, double by0, double bx1,
+            double by1) {
+        if (bx0 > xmax || bx1 < xmin || by0 > ymax || by1 < ymin) {
+            return false;
+        }
+        int c0 = col(bx0);
+        int c1 = col(bx1);
+        int r0 = row(by0);
+        int r1 = row(by1);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * nx + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int e = cellEdges[k];
+                    if (PixelBoundaries_d.intersectsSegment(bx0, by0, bx1,
+                            by1, ax[e], ay[e], bx[e], by[e])) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests if (x, y) is inside the rings using the even-odd rule.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return {@code true} if (x, y) is inside.
+     */
+    public boolean contains(double x, double y) {
+        if (y < ymin || y > ymax) {
+            return false;
+        }
+        int r = row(y);
+        boolean in = false;
+        for (int k = bandStart[r]; k < bandStart[r + 1]; k++) {
+            int e = bandEdges[k];
+            double yi = by[e];
+            double yj = ay[e];
+            if ((yi > y) != (yj > y)) {
+                double xc = bx[e] + (y - yi) / (yj - yi) * (ax[e] - bx[e]);
+                if (x < xc) {
+                    in = !in;
+                }
+            }
+        }
+        return in;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.util.Arrays;
+
+/**
+ * A target for rasterizing into that stores a byte per pixel indexing a
+ * {@link Palette_d}, rather than an ARGB int, so takes a quarter of the
+ * memory. Colours set must be in the palette. {@link #pix} is null.
+ *
+ * An instance remembers the last colour it looked up, so an instance should
+ * only be used by one thread at a time, but instances from
+ * {@link #clip(int, int, int, int)} can be used concurrently.
+ *
+ * @author Andy Turner
+ */
+public class IndexedRaster_d extends Raster_d {
+
+    /**
+     * The palette indexes of the pixels with row 0 at the top.
+     */
+    public final byte[] index;
+
+    /**
+     * The palette.
+     */
+    public final Palette_d palette;
+
+    /**
+     * The last colour looked up.
+     */
+    private int lastRGB;
+
+    /**
+     * The index of {@link #lastRGB}.
+     */
+    private byte lastIndex;
+
+    /**
+     * Create a new instance clipped to the image.
+     *
+     * @param index What {@link #index} is set to.
+     * @param palette What {@link #palette} is set to.
+     * @param nrows What {@link #nrows} is set to.
+     * @param ncols What {@link #ncols} is set to.
+     */
+    public IndexedRaster_d(byte[] index, Palette_d palette, int nrows,
+            int ncols) {
+        this(index, palette, nrows, ncols, 0, nrows - 1, 0, ncols - 1, 0);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param index What {@link #index} is set to.
+     * @param palette What {@link #palette} is set to.
+     * @param nrows What {@link #nrows} is set to.
+     * @param ncols What {@link #ncols} is set to.
+     * @param minr The minimum row of the clip rectangle.
+     * @param maxr The maximum row of the clip rectangle.
+     * @param minc The minimum column of the clip rectangle.
+     * @param maxc The maximum column of the clip rectangle.
+     * @param top What {@link #top} is set to.
+     */
+    public IndexedRaster_d(byte[] index, Palette_d palette, int nrows,
+            int ncols, int minr, int maxr, int minc, int maxc, int top) {
+        super(null, nrows, ncols, minr, maxr, minc, maxc, top);
+        this.index = index;
+        this.palette = palette;
+        this.lastRGB = palette.getColour(0);
+        this.lastIndex = 0;
+    }
+
+    @Override
+    public IndexedRaster_d clip(int minr, int maxr, int minc, int maxc) {
+        return new IndexedRaster_d(index, palette, nrows, ncols,
+                Math.max(this.minr, minr), Math.min(this.maxr, maxr),
+                Math.max(this.minc, minc), Math.min(this.maxc, maxc), top);
+    }
+
+    /**
+     * @param rgb The colour.
+     * @return The palette index of the colour.
+     * @throws IllegalArgumentException If rgb is not in {@link #palette}.
+     */
+    private byte getIndex(int rgb) {
+        if (rgb != lastRGB) {
+            int i = palette.getIndex(rgb);
+            if (i < 0) {
+                throw new IllegalArgumentException("Colour "
+                        + Integer.toHexString(rgb) + " is not in the palette");
+            }
+            lastRGB = rgb;
+            lastIndex = (byte) i;
+        }
+        return lastIndex;
+    }
+
+    @Override
+    public void set(int r, int c, int rgb) {
+        if (r >= minr && r <= maxr && c >= minc && c <= maxc) {
+            index[(nrows - r - 1 - top) * ncols + c] = getIndex(rgb);
+        }
+    }
+
+    @Override
+    public void setSpan(int r, int c0, int c1, int rgb) {
+        if (r < minr || r > maxr) {
+            return;
+        }
+        c0 = Math.max(c0, minc);
+        c1 = Math.min(c1, maxc);
+        if (c0 <= c1) {
+            int offset = (nrows - r - 1 - top) * ncols;
+            Arrays.fill(index, offset + c0, offset + c1 + 1, getIndex(rgb));
+        }
+    }
+}
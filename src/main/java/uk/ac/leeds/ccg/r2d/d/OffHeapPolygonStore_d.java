@@ -0,0 +1,403 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import uk.ac.leeds.ccg.v2d.core.d.V2D_Environment_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_ConvexArea_d;
+
+/**
+ * A store of polygons like {@link PolygonStore_d} with the coordinates,
+ * offsets, colours and bounds held in a {@link ByteBuffer} outside the Java
+ * heap. The buffer is either direct (see {@link #copyOf(Polygons_d)}) or a
+ * read only mapping of a file written with {@link #write(Polygons_d, Path)}
+ * (see {@link #map(V2D_Environment_d, Path)}), in which case the operating
+ * system pages the coordinates in as they are rendered. The coordinates are
+ * read from the buffer by {@link RenderImage_d} and are not copied onto the
+ * heap, apart from the edges of the polygons that
+ * {@link #getEdgeIndex(int)} is called for.
+ *
+ * The layout of the buffer is little endian:
+ * <ul>
+ * <li>{@link #MAGIC}, {@link #VERSION}, the number of polygons n, rings and
+ * points p as ints followed by an int of padding.</li>
+ * <li>The bounds of the polygons as 4 * n doubles.</li>
+ * <li>The x and then the y coordinates as p doubles each.</li>
+ * <li>The ring starts of the polygons, the point starts of the rings and
+ * the colours of the polygons as ints as in {@link PolygonStore_d}.</li>
+ * </ul>
+ * As this is one buffer it is limited to {@link Integer#MAX_VALUE} bytes,
+ * which is over 100 million points.
+ *
+ * Reading is thread safe. {@link #getEdgeIndex(int)} may create an index
+ * more than once if called concurrently for the same polygon.
+ *
+ * @author Andy Turner
+ */
+public class OffHeapPolygonStore_d implements Polygons_d {
+
+    /**
+     * Identifies a polygon store file.
+     */
+    static final int MAGIC = 0x52324450;
+
+    /**
+     * The version of the layout.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The number of bytes before the bounds.
+     */
+    static final int PREAMBLE_BYTES = 24;
+
+    /**
+     * The environment.
+     */
+    public final V2D_Environment_d env;
+
+    /**
+     * The buffer.
+     */
+    final ByteBuffer buffer;
+
+    /**
+     * The number of polygons, rings and points.
+     */
+    final int nPolygons, nRings, nPoints;
+
+    /**
+     * Views of {@link #buffer}.
+     */
+    final DoubleBuffer bounds, xs, ys;
+
+    /**
+     * Views of {@link #buffer}.
+     */
+    final IntBuffer polygonRingStart, ringStart, colors;
+
+    /**
+     * A spatial index of the polygons. This is built on the heap from the
+     * bounds.
+     */
+    final STRTree_d<Integer> index;
+
+    /**
+     * Indexes of the edges of the polygons for testing pixels. These are
+     * created when first needed.
+     */
+    final EdgeIndex_d[] edgeIndexes;
+
+    /**
+     * The convex hulls of the polygons each as a polygon with one ring, or
+     * null if these are not held.
+     */
+    Polygons_d hulls;
+
+    /**
+     * Create a new instance.
+     *
+     * @param env What {@link #env} is set to.
+     * @param buffer The buffer with the layout described above starting at
+     * position 0.
+     * @throws IllegalArgumentException If buffer does not have the layout.
+     */
+    public OffHeapPolygonStore_d(V2D_Environment_d env, ByteBuffer buffer) {
+        this.env = env;
+        this.buffer = buffer;
+        ByteBuffer b = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (b.capacity() < PREAMBLE_BYTES || b.getInt(0) != MAGIC
+                || b.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a polygon store");
+        }
+        nPolygons = b.getInt(8);
+        nRings = b.getInt(12);
+        nPoints = b.getInt(16);
+        if (nPolygons < 0 || nRings < 0 || nPoints < 0
+                || getSize(nPolygons, nRings, nPoints) > b.capacity()) {
+            throw new IllegalArgumentException("Truncated polygon store");
+        }
+        int o = PREAMBLE_BYTES;
+        bounds = doubles(b, o, 4 * nPolygons);
+        o += 32 * nPolygons;
+        xs = doubles(b, o, nPoints);
+        o += 8 * nPoints;
+        ys = doubles(b, o, nPoints);
+        o += 8 * nPoints;
+        polygonRingStart = ints(b, o, nPolygons + 1);
+        o += 4 * (nPolygons + 1);
+        ringStart = ints(b, o, nRings + 1);
+        o += 4 * (nRings + 1);
+        colors = ints(b, o, 3 * nPolygons);
+        index = new STRTree_d<>();
+        for (int i = 0; i < nPolygons; i++) {
+            index.add(i, bounds.get(4 * i), bounds.get(4 * i + 1),
+                    bounds.get(4 * i + 2), bounds.get(4 * i + 3));
+        }
+        edgeIndexes = new EdgeIndex_d[nPolygons];
+    }
+
+    /**
+     * @return A view of n doubles of b from offset.
+     */
+    private static DoubleBuffer doubles(ByteBuffer b, int offset, int n) {
+        return b.slice(offset, 8 * n).order(ByteOrder.LITTLE_ENDIAN)
+                .asDoubleBuffer();
+    }
+
+    /**
+     * @return A view of n ints of b from offset.
+     */
+    private static IntBuffer ints(ByteBuffer b, int offset, int n) {
+        return b.slice(offset, 4 * n).order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+    }
+
+    /**
+     * @param nPolygons The number of polygons.
+     * @param nRings The number of rings.
+     * @param nPoints The number of points.
+     * @return The number of bytes of the layout.
+     */
+    static long getSize(int nPolygons, int nRings, int nPoints) {
+        return PREAMBLE_BYTES + 32L * nPolygons + 16L * nPoints
+                + 4L * (nPolygons + 1) + 4L * (nRings + 1) + 12L * nPolygons;
+    }
+
+    /**
+     * @param s The polygons.
+     * @return The number of bytes needed to hold s.
+     */
+    public static long getSize(Polygons_d s) {
+        return getSize(s.size(), s.getNRings(), s.getNPoints());
+    }
+
+    /**
+     * Puts s into b in the layout described above from the position of b.
+     *
+     * @param s The polygons.
+     * @param b The buffer. This is left at the end of what is put.
+     */
+    public static void put(Polygons_d s, ByteBuffer b) {
+        int n = s.size();
+        int nr = s.getNRings();
+        int np = s.getNPoints();
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(nr).putInt(np)
+                .putInt(0);
+        double[] bs = new double[4];
+        for (int i = 0; i < n; i++) {
+            s.getBounds(i, bs);
+            for (double v : bs) {
+                b.putDouble(v);
+            }
+        }
+        for (int i = 0; i < np; i++) {
+            b.putDouble(s.getX(i));
+        }
+        for (int i = 0; i < np; i++) {
+            b.putDouble(s.getY(i));
+        }
+        for (int i = 0; i <= n; i++) {
+            b.putInt(s.getRingStart(i));
+        }
+        for (int i = 0; i <= nr; i++) {
+            b.putInt(s.getPointStart(i));
+        }
+        for (int i = 0; i < n; i++) {
+            b.putInt(s.getColor(i));
+            b.putInt(s.getColorExternalEdge(i));
+            b.putInt(s.getColorInternalEdge(i));
+        }
+    }
+
+    /**
+     * Copies s into a direct buffer.
+     *
+     * @param s The polygons.
+     * @return A new instance.
+     * @throws IllegalArgumentException If s is too large for one buffer.
+     */
+    public static OffHeapPolygonStore_d copyOf(Polygons_d s) {
+        long size = getSize(s);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too large for one buffer");
+        }
+        ByteBuffer b = ByteBuffer.allocateDirect((int) size);
+        put(s, b);
+        return new OffHeapPolygonStore_d(s.getEnvironment(), b.rewind());
+    }
+
+    /**
+     * Writes s to a temporary file through a mapping which is then moved to
+     * p.
+     *
+     * @param s The polygons.
+     * @param p The path to write to.
+     * @throws IOException If p cannot be written or s is too large.
+     */
+    public static void write(Polygons_d s, Path p) throws IOException {
+        long size = getSize(s);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Too large to map " + p);
+        }
+        Path tmp = p.resolveSibling(p.getFileName().toString() + ".tmp");
+        try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            put(s, fc.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+        Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Maps a file written with {@link #write(Polygons_d, Path)}. The mapping
+     * remains valid after this returns.
+     *
+     * @param env The environment.
+     * @param p The path of the file.
+     * @return A new instance.
+     * @throws IOException If p cannot be mapped or is not a polygon store.
+     */
+    public static OffHeapPolygonStore_d map(V2D_Environment_d env, Path p)
+            throws IOException {
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = fc.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map " + p);
+            }
+            return new OffHeapPolygonStore_d(env,
+                    fc.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage() + " " + p);
+        }
+    }
+
+    @Override
+    public V2D_Environment_d getEnvironment() {
+        return env;
+    }
+
+    @Override
+    public int size() {
+        return nPolygons;
+    }
+
+    @Override
+    public int getNRings() {
+        return nRings;
+    }
+
+    @Override
+    public int getNPoints() {
+        return nPoints;
+    }
+
+    @Override
+    public int getRingStart(int polygon) {
+        return polygonRingStart.get(polygon);
+    }
+
+    @Override
+    public int getPointStart(int ring) {
+        return ringStart.get(ring);
+    }
+
+    @Override
+    public double getX(int point) {
+        return xs.get(point);
+    }
+
+    @Override
+    public double getY(int point) {
+        return ys.get(point);
+    }
+
+    @Override
+    public int getColor(int polygon) {
+        return colors.get(3 * polygon);
+    }
+
+    @Override
+    public int getColorExternalEdge(int polygon) {
+        return colors.get(3 * polygon + 1);
+    }
+
+    @Override
+    public int getColorInternalEdge(int polygon) {
+        return colors.get(3 * polygon + 2);
+    }
+
+    @Override
+    public double[] getBounds(int polygon, double[] b) {
+        bounds.get(4 * polygon, b, 0, 4);
+        return b;
+    }
+
+    @Override
+    public BitSet query(double xmin, double ymin, double xmax, double ymax) {
+        return index.query(xmin, ymin, xmax, ymax, new BitSet(nPolygons));
+    }
+
+    /**
+     * Sets the convex hulls of the polygons.
+     *
+     * @param hulls Polygons with one ring for each polygon in the same order
+     * or null.
+     */
+    public void setHulls(Polygons_d hulls) {
+        if (hulls != null && hulls.size() != nPolygons) {
+            throw new IllegalArgumentException("Hulls do not match");
+        }
+        this.hulls = hulls;
+    }
+
+    @Override
+    public V2D_ConvexArea_d getConvexHull(int polygon, double epsilon) {
+        if (hulls == null) {
+            return null;
+        }
+        return new V2D_ConvexArea_d(epsilon,
+                hulls.getPoints(hulls.getRingStart(polygon)));
+    }
+
+    /**
+     * @param polygon The index of a polygon.
+     * @return An index of the edges of the polygon, which is created on the
+     * heap and kept the first time it is needed.
+     */
+    @Override
+    public EdgeIndex_d getEdgeIndex(int polygon) {
+        EdgeIndex_d r = edgeIndexes[polygon];
+        if (r == null) {
+            r = new EdgeIndex_d(xs, ys, ringStart,
+                    polygonRingStart.get(polygon),
+                    polygonRingStart.get(polygon + 1));
+            edgeIndexes[polygon] = r;
+        }
+        return r;
+    }
+}
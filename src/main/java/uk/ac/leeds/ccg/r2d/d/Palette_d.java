@@ -0,0 +1,181 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import uk.ac.leeds.ccg.r2d.d.entities.PolygonNoInternalHoles_d;
+import uk.ac.leeds.ccg.r2d.d.entities.Polygon_d;
+import uk.ac.leeds.ccg.r2d.d.entities.Triangle_t;
+import uk.ac.leeds.ccg.r2d.grids.Colour_MapDouble;
+
+/**
+ * A palette of up to {@link #MAX_SIZE} ARGB colours for rendering into an
+ * {@link IndexedRaster_d}. This is not changed once created, so can be read
+ * by several threads.
+ *
+ * @author Andy Turner
+ */
+public class Palette_d {
+
+    /**
+     * The maximum number of colours.
+     */
+    public static final int MAX_SIZE = 256;
+
+    /**
+     * The colours in index order.
+     */
+    final int[] colours;
+
+    /**
+     * The colours in ascending order for searching.
+     */
+    final int[] keys;
+
+    /**
+     * The indexes of {@link #keys}.
+     */
+    final int[] indexes;
+
+    /**
+     * Create a new instance. Repeated colours are only added once.
+     *
+     * @param argb The ARGB colours in index order.
+     */
+    public Palette_d(int... argb) {
+        LinkedHashSet<Integer> s = new LinkedHashSet<>();
+        for (int c : argb) {
+            s.add(c);
+        }
+        if (s.size() > MAX_SIZE) {
+            throw new IllegalArgumentException(s.size() + " colours is more"
+                    + " than " + MAX_SIZE);
+        }
+        colours = s.stream().mapToInt(Integer::intValue).toArray();
+        long[] sorted = new long[colours.length];
+        for (int i = 0; i < colours.length; i++) {
+            sorted[i] = ((long) colours[i] << 32) | i;
+        }
+        Arrays.sort(sorted);
+        keys = new int[colours.length];
+        indexes = new int[colours.length];
+        for (int i = 0; i < sorted.length; i++) {
+            keys[i] = (int) (sorted[i] >> 32);
+            indexes[i] = (int) sorted[i];
+        }
+    }
+
+    /**
+     * Creates a palette of the colours ri may render: transparent black for
+     * the background, the colours of the axes, the colours of the grid
+     * colour maps and the colours of the entities in the universe.
+     *
+     * @param ri The renderer.
+     * @return A new palette or null if there are more than {@link #MAX_SIZE}
+     * colours.
+     */
+    public static Palette_d of(RenderImage_d ri) {
+        LinkedHashSet<Integer> s = new LinkedHashSet<>();
+        s.add(0);
+        Universe_d u = ri.universe;
+        if (ri.drawAxes) {
+            s.add(Color.blue.getRGB());
+            s.add(Color.red.getRGB());
+        }
+        if (!u.grids.isEmpty()) {
+            for (Colour_MapDouble cm : ri.gridCMs) {
+                add(s, cm.cm.values().toArray(Color[]::new));
+            }
+            add(s, Color.BLACK);
+        }
+        if (ri.drawTriangles) {
+            for (Triangle_t t : u.triangles) {
+                add(s, t.color, t.getColorPQ(), t.getColorQR(),
+                        t.getColorRP());
+            }
+            if (ri.drawCircumcircles) {
+                add(s, Color.white);
+            }
+        }
+        if (ri.drawPolygonsNoInternalHoles) {
+            for (PolygonNoInternalHoles_d p : u.pnih) {
+                add(s, p.color, p.getColorExternalEdge());
+            }
+        }
+        if (ri.drawPolygons) {
+            for (Polygon_d p : u.polygons) {
+                add(s, p.color, p.getColorExternalEdge(),
+                        p.getColorInternalEdge());
+            }
+            for (Polygons_d store : u.polygonStores) {
+                for (int i = 0; i < store.size(); i++) {
+                    s.add(store.getColor(i));
+                    s.add(store.getColorExternalEdge(i));
+                    s.add(store.getColorInternalEdge(i));
+                }
+            }
+        }
+        if (s.size() > MAX_SIZE) {
+            return null;
+        }
+        return new Palette_d(s.stream().mapToInt(Integer::intValue)
+                .toArray());
+    }
+
+    /**
+     * Adds the RGB of the colours that are not null to s.
+     */
+    private static void add(LinkedHashSet<Integer> s, Color... colors) {
+        for (Color c : colors) {
+            if (c != null) {
+                s.add(c.getRGB());
+            }
+        }
+    }
+
+    /**
+     * @return The number of colours.
+     */
+    public int size() {
+        return colours.length;
+    }
+
+    /**
+     * @param index The index of a colour.
+     * @return The ARGB colour.
+     */
+    public int getColour(int index) {
+        return colours[index];
+    }
+
+    /**
+     * @return A copy of the ARGB colours in index order.
+     */
+    public int[] getColours() {
+        return colours.clone();
+    }
+
+    /**
+     * @param argb An ARGB colour.
+     * @return The index of the colour or -1 if it is not in the palette.
+     */
+    public int getIndex(int argb) {
+        int i = Arrays.binarySearch(keys, argb);
+        return i < 0 ? -1 : indexes[i];
+    }
+}
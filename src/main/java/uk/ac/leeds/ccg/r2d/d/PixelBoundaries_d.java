@@ -0,0 +1,276 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+/**
+ * Precomputed world coordinates of the pixel boundaries of an axis aligned
+ * window together with tests of pixels against geometry that work on
+ * primitive doubles, so that nothing is allocated per pixel tested.
+ *
+ * The pixel (row, col) is the half open box [xs[col], xs[col + 1]) x
+ * [ys[row], ys[row + 1]) (with the ends swapped if the window is flipped), so
+ * geometry that only touches the top or right boundary of a pixel does not
+ * intersect it. {@link Supercover_d} also uses half open pixels. The other
+ * rasterizers differ: {@link TriangleRaster_d} tests the closed unit square
+ * of each pixel in the columns floor(xmin) to floor(xmax) and the rows
+ * floor(ymin) to floor(ymax) inclusive, where xmin, xmax, ymin and ymax bound
+ * the triangle, and
+ * {@link ScanlineFill_d} fills a pixel if its centre is inside the polygon.
+ *
+ * @author Andy Turner
+ */
+public class PixelBoundaries_d {
+
+    /**
+     * The x coordinates of the column boundaries. xs[c] is the left of column
+     * c and xs[ncols] is the right of the last column.
+     */
+    public final double[] xs;
+
+    /**
+     * The y coordinates of the row boundaries. ys[r] is the bottom of row r
+     * and ys[nrows] is the top of the last row.
+     */
+    public final double[] ys;
+
+    /**
+     * Create a new instance.
+     *
+     * @param t The transform. This must be axis aligned (see
+     * {@link #isAxisAligned(ScreenTransform_d)}).
+     * @param nrows The number of rows.
+     * @param ncols The number of columns.
+     */
+    public PixelBoundaries_d(ScreenTransform_d t, int nrows, int ncols) {
+        xs = new double[ncols + 1];
+        for (int c = 0; c <= ncols; c++) {
+            xs[c] = t.getX(c, 0);
+        }
+        ys = new double[nrows + 1];
+        for (int r = 0; r <= nrows; r++) {
+            ys[r] = t.getY(0, r);
+        }
+    }
+
+    /**
+     * @param t The transform.
+     * @return {@code true} if rows are horizontal and columns are vertical.
+     */
+    public static boolean isAxisAligned(ScreenTransform_d t) {
+        return t.qry == 0d && t.pqx == 0d;
+    }
+
+    /**
+     * Tests if the pixel intersects the triangle (x0, y0), (x1, y1),
+     * (x2, y2). The triangle is closed.
+     *
+     * @param r The row of the pixel.
+     * @param c The column of the pixel.
+     * @param x0 The x coordinate of the first corner.
+     * @param y0 The y coordinate of the first corner.
+     * @param x1 The x coordinate of the second corner.
+     * @param y1 The y coordinate of the second corner.
+     * @param x2 The x coordinate of the third corner.
+     * @param y2 The y coordinate of the third corner.
+     * @return {@code true} if the pixel intersects the triangle.
+     */
+    public boolean intersectsTriangle(int r, int c, double x0, double y0,
+            double x1, double y1, double x2, double y2) {
+        double bx0 = Math.min(xs[c], xs[c + 1]);
+        double bx1 = Math.max(xs[c], xs[c + 1]);
+        double by0 = Math.min(ys[r], ys[r + 1]);
+        double by1 = Math.max(ys[r], ys[r + 1]);
+        if (Math.max(x0, Math.max(x1, x2)) < bx0
+                || Math.min(x0, Math.min(x1, x2)) >= bx1
+                || Math.max(y0, Math.max(y1, y2)) < by0
+                || Math.min(y0, Math.min(y1, y2)) >= by1) {
+            return false;
+        }
+        // Orientation of the triangle.
+        double area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+        if (area == 0d) {
+            // Degenerate: test the sides.
+            return intersectsSegment(r, c, x0, y0, x1, y1)
+                    || intersectsSegment(r, c, x1, y1, x2, y2);
+        }
+        return !separates(x0, y0, x1, y1, area, bx0, by0, bx1, by1)
+                && !separates(x1, y1, x2, y2, area, bx0, by0, bx1, by1)
+                && !separates(x2, y2, x0, y0, area, bx0, by0, bx1, by1);
+    }
+
+    /**
+     * @return {@code true} if the box is entirely outside the edge from
+     * (ax, ay) to (bx, by) of a triangle with signed area.
+     */
+    private static boolean separates(double ax, double ay, double bx,
+            double by, double area, double bx0, double by0, double bx1,
+            double by1) {
+        double ex = bx - ax;
+        double ey = by - ay;
+        // The inside of the edge is where s * cross >= 0.
+        double s = area > 0d ? 1d : -1d;
+        double nx = -ey * s;
+        double ny = ex * s;
+        // The box corner furthest along (nx, ny).
+        double cx = nx > 0d ? bx1 : bx0;
+        double cy = ny > 0d ? by1 : by0;
+        return nx * (cx - ax) + ny * (cy - ay) < 0d;
+    }
+
+    /**
+     * Tests if the pixel intersects the closed line segment from (x0, y0) to
+     * (x1, y1).
+     *
+     * @param r The row of the pixel.
+     * @param c The column of the pixel.
+     * @param x0 The x coordinate of the start.
+     * @param y0 The y coordinate of the start.
+     * @param x1 The x coordinate of the end.
+     * @param y1 The y coordinate of the end.
+     * @return {@code true} if the pixel intersects the line segment.
+     */
+    public boolean intersectsSegment(int r, int c, double x0, double y0,
+            double x1, double y1) {
+        double bx0 = Math.min(xs[c], xs[c + 1]);
+        double bx1 = Math.max(xs[c], xs[c + 1]);
+        double by0 = Math.min(ys[r], ys[r + 1]);
+        double by1 = Math.max(ys[r], ys[r + 1]);
+        return intersectsSegment(bx0, by0, bx1, by1, x0, y0, x1, y1);
+    }
+
+    /**
+     * Tests if the half open box [bx0, bx1) x [by0, by1) intersects the
+     * closed line segment from (x0, y0) to (x1, y1).
+     */
+    static boolean intersectsSegment(double bx0, double by0,
+            double bx1, double by1, double x0, double y0, double x1,
+            double y1) {
+        if (Math.max(x0, x1) < bx0 || Math.min(x0, x1) >= bx1
+                || Math.max(y0, y1) < by0 || Math.min(y0, y1) >= by1) {
+            return false;
+        }
+        // Clip to the closed box (Liang-Barsky).
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double t0 = 0d;
+        double t1 = 1d;
+        if (dx != 0d) {
+            double ta = (bx0 - x0) / dx;
+            double tb = (bx1 - x0) / dx;
+            t0 = Math.max(t0, Math.min(ta, tb));
+            t1 = Math.min(t1, Math.max(ta, tb));
+        }
+        if (dy != 0d) {
+            double ta = (by0 - y0) / dy;
+            double tb = (by1 - y0) / dy;
+            t0 = Math.max(t0, Math.min(ta, tb));
+            t1 = Math.min(t1, Math.max(ta, tb));
+        }
+        if (t0 > t1) {
+            return false;
+        }
+        // The clipped part misses the half open box only if it lies along
+        // the right or top boundary.
+        double sx = x0 + t0 * dx;
+        double ex = x0 + t1 * dx;
+        double sy = y0 + t0 * dy;
+        double ey = y0 + t1 * dy;
+        return !((sx >= bx1 && ex >= bx1) || (sy >= by1 && ey >= by1));
+    }
+
+    /**
+     * Tests if the pixel intersects the area bounded by the rings using the
+     * even-odd rule, so rings of internal holes are simply passed in
+     * alongside the external ring.
+     *
+     * @param r The row of the pixel.
+     * @param c The column of the pixel.
+     * @param rxs The x coordinates of each ring.
+     * @param rys The y coordinates of each ring.
+     * @return {@code true} if the pixel intersects the area or its boundary.
+     */
+    public boolean intersectsRings(int r, int c, double[][] rxs,
+            double[][] rys) {
+        double bx0 = Math.min(xs[c], xs[c + 1]);
+        double bx1 = Math.max(xs[c], xs[c + 1]);
+        double by0 = Math.min(ys[r], ys[r + 1]);
+        double by1 = Math.max(ys[r], ys[r + 1]);
+        // Any boundary in the pixel?
+        for (int ring = 0; ring < rxs.length; ring++) {
+            double[] x = rxs[ring];
+            double[] y = rys[ring];
+            int n = x.length;
+            for (int i = 0, j = n - 1; i < n; j = i, i++) {
+                if (intersectsSegment(bx0, by0, bx1, by1, x[j], y[j], x[i],
+                        y[i])) {
+                    return true;
+                }
+            }
+        }
+        // Otherwise the pixel is either all inside or all outside.
+        return contains(rxs, rys, (bx0 + bx1) / 2d, (by0 + by1) / 2d);
+    }
+
+    /**
+     * Tests if the pixel intersects the area bounded by the rings indexed by
+     * index using the even-odd rule. This gives the same result as
+     * {@link #intersectsRings(int, int, double[][], double[][])} but only
+     * tests edges near the pixel.
+     *
+     * @param r The row of the pixel.
+     * @param c The column of the pixel.
+     * @param index The index of the edges of the rings.
+     * @return {@code true} if the pixel intersects the area or its boundary.
+     */
+    public boolean intersectsRings(int r, int c, EdgeIndex_d index) {
+        double bx0 = Math.min(xs[c], xs[c + 1]);
+        double bx1 = Math.max(xs[c], xs[c + 1]);
+        double by0 = Math.min(ys[r], ys[r + 1]);
+        double by1 = Math.max(ys[r], ys[r + 1]);
+        return index.intersectsEdge(bx0, by0, bx1, by1)
+                || index.contains((bx0 + bx1) / 2d, (by0 + by1) / 2d);
+    }
+
+    /**
+     * Tests if (x, y) is inside the rings using the even-odd rule.
+     *
+     * @param rxs The x coordinates of each ring.
+     * @param rys The y coordinates of each ring.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return {@code true} if (x, y) is inside.
+     */
+    public static boolean contains(double[][] rxs, double[][] rys, double x,
+            double y) {
+        boolean in = false;
+        for (int ring = 0; ring < rxs.length; ring++) {
+            double[] xr = rxs[ring];
+            double[] yr = rys[ring];
+            int n = xr.length;
+            for (int i = 0, j = n - 1; i < n; j = i, i++) {
+                double yi = yr[i];
+                double yj = yr[j];
+                if ((yi > y) != (yj > y)) {
+                    double xc = xr[i] + (y - yi) / (yj - yi) * (xr[j] - xr[i]);
+                    if (x < xc) {
+                        in = !in;
+                    }
+                }
+            }
+        }
+        return in;
+    }
+}
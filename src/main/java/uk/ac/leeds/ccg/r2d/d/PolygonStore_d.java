@@ -0,0 +1,353 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.awt.Color;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import uk.ac.leeds.ccg.v2d.core.d.V2D_Environment_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Point_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Polygon_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_PolygonNoInternalHoles_d;
+
+/**
+ * A store of polygons with their coordinates packed into arrays rather than
+ * held as points, so each point takes 16 bytes. The points of all the rings
+ * are held one after another in {@link #xs} and {@link #ys}. The points of
+ * ring r are from {@link #ringStart}[r] up to {@link #ringStart}[r + 1] and
+ * the rings of polygon i are from {@link #polygonRingStart}[i] up to
+ * {@link #polygonRingStart}[i + 1]. The first ring of each polygon is the
+ * external ring and any others are internal holes.
+ *
+ * Polygons are rendered directly from the arrays. A {@link V2D_Polygon_d} is
+ * only created for a polygon by {@link #getPolygon(int, double)}. The arrays
+ * are on the heap, {@link OffHeapPolygonStore_d} holds them outside it.
+ *
+ * This is not thread safe: adding polygons or querying after adding may
+ * rebuild the index.
+ *
+ * @author Andy Turner
+ */
+public class PolygonStore_d implements Polygons_d {
+
+    /**
+     * The environment.
+     */
+    public final V2D_Environment_d env;
+
+    /**
+     * The x and y coordinates of the points of the rings.
+     */
+    double[] xs, ys;
+
+    /**
+     * The number of points.
+     */
+    int nPoints;
+
+    /**
+     * The index in {@link #xs} and {@link #ys} of the first point of each
+     * ring followed by {@link #nPoints}.
+     */
+    int[] ringStart;
+
+    /**
+     * The number of rings.
+     */
+    int nRings;
+
+    /**
+     * The index of the first ring of each polygon followed by
+     * {@link #nRings}.
+     */
+    int[] polygonRingStart;
+
+    /**
+     * The number of polygons.
+     */
+    int nPolygons;
+
+    /**
+     * The colours of the polygons as RGB values. For polygon i the fill,
+     * external edge and internal edge colours are at 3 * i.
+     */
+    int[] colors;
+
+    /**
+     * The bounds of the polygons. For polygon i these are xmin, ymin, xmax,
+     * ymax at 4 * i.
+     */
+    double[] bounds;
+
+    /**
+     * A spatial index of the polygons.
+     */
+    final STRTree_d<Integer> index;
+
+    /**
+     * Indexes of the edges of the polygons for testing pixels. These are
+     * created when first needed.
+     */
+    EdgeIndex_d[] edgeIndexes;
+
+    /**
+     * Create a new instance.
+     *
+     * @param env What {@link #env} is set to.
+     */
+    public PolygonStore_d(V2D_Environment_d env) {
+        this.env = env;
+        xs = new double[1024];
+        ys = new double[1024];
+        ringStart = new int[65];
+        polygonRingStart = new int[65];
+        colors = new int[3 * 64];
+        bounds = new double[4 * 64];
+        index = new STRTree_d<>();
+        edgeIndexes = new EdgeIndex_d[0];
+    }
+
+    /**
+     * Adds a polygon.
+     *
+     * @param x The x coordinates of the points of each ring, starting with
+     * the external ring.
+     * @param y The y coordinates of the points of each ring.
+     * @param color The colour of the polygon.
+     * @param colorExternalEdge The colour of the external edge.
+     * @param colorInternalEdge The colour of the edges of internal holes.
+     * @return The index of the polygon.
+     */
+    public int add(double[][] x, double[][] y, Color color,
+            Color colorExternalEdge, Color colorInternalEdge) {
+        int i = nPolygons;
+        if (4 * (i + 1) > bounds.length) {
+            polygonRingStart = Arrays.copyOf(polygonRingStart, 2 * i + 1);
+            colors = Arrays.copyOf(colors, 3 * 2 * i);
+            bounds = Arrays.copyOf(bounds, 4 * 2 * i);
+        }
+        double xmin = Double.POSITIVE_INFINITY;
+        double ymin = Double.POSITIVE_INFINITY;
+        double xmax = Double.NEGATIVE_INFINITY;
+        double ymax = Double.NEGATIVE_INFINITY;
+        for (int r = 0; r < x.length; r++) {
+            int n = x[r].length;
+            if (nRings + 2 > ringStart.length) {
+                ringStart = Arrays.copyOf(ringStart, ringStart.length * 2);
+            }
+            if (nPoints + n > xs.length) {
+                int length = Math.max(xs.length * 2, nPoints + n);
+                xs = Arrays.copyOf(xs, length);
+                ys = Arrays.copyOf(ys, length);
+            }
+            System.arraycopy(x[r], 0, xs, nPoints, n);
+            System.arraycopy(y[r], 0, ys, nPoints, n);
+            for (int j = 0; j < n; j++) {
+                xmin = Math.min(xmin, x[r][j]);
+                ymin = Math.min(ymin, y[r][j]);
+                xmax = Math.max(xmax, x[r][j]);
+                ymax = Math.max(ymax, y[r][j]);
+            }
+            nPoints += n;
+            nRings++;
+            ringStart[nRings] = nPoints;
+        }
+        polygonRingStart[i + 1] = nRings;
+        colors[3 * i] = color.getRGB();
+        colors[3 * i + 1] = colorExternalEdge.getRGB();
+        colors[3 * i + 2] = colorInternalEdge.getRGB();
+        bounds[4 * i] = xmin;
+        bounds[4 * i + 1] = ymin;
+        bounds[4 * i + 2] = xmax;
+        bounds[4 * i + 3] = ymax;
+        index.add(i, xmin, ymin, xmax, ymax);
+        nPolygons++;
+        return i;
+    }
+
+    /**
+     * Adds a polygon.
+     *
+     * @param polygon The polygon to add.
+     * @param color The colour of the polygon.
+     * @param colorExternalEdge The colour of the external edge.
+     * @param colorInternalEdge The colour of the edges of internal holes.
+     * @return The index of the polygon.
+     */
+    public int add(V2D_Polygon_d polygon, Color color,
+            Color colorExternalEdge, Color colorInternalEdge) {
+        double[][] x = new double[polygon.internalHoles.size() + 1][];
+        double[][] y = new double[x.length][];
+        setRing(polygon.getPointsArray(), x, y, 0);
+        int r = 1;
+        for (V2D_PolygonNoInternalHoles_d h : polygon.internalHoles.values()) {
+            setRing(h.getPointsArray(), x, y, r);
+            r++;
+        }
+        return add(x, y, color, colorExternalEdge, colorInternalEdge);
+    }
+
+    /**
+     * Sets x[r] and y[r] to the coordinates of pts.
+     */
+    private static void setRing(V2D_Point_d[] pts, double[][] x, double[][] y,
+            int r) {
+        x[r] = new double[pts.length];
+        y[r] = new double[pts.length];
+        for (int j = 0; j < pts.length; j++) {
+            x[r][j] = pts[j].getX();
+            y[r][j] = pts[j].getY();
+        }
+    }
+
+    @Override
+    public V2D_Environment_d getEnvironment() {
+        return env;
+    }
+
+    @Override
+    public int getNRings() {
+        return nRings;
+    }
+
+    /**
+     * @return The number of polygons.
+     */
+    @Override
+    public int size() {
+        return nPolygons;
+    }
+
+    /**
+     * @return The number of points.
+     */
+    @Override
+    public int getNPoints() {
+        return nPoints;
+    }
+
+    /**
+     * @param polygon The index of a polygon.
+     * @return The index of the first ring of the polygon. The rings of the
+     * polygon are up to that of the next polygon.
+     */
+    @Override
+    public int getRingStart(int polygon) {
+        return polygonRingStart[polygon];
+    }
+
+    /**
+     * @param ring The index of a ring.
+     * @return The index of the first point of the ring. The points of the
+     * ring are up to that of the next ring.
+     */
+    @Override
+    public int getPointStart(int ring) {
+        return ringStart[ring];
+    }
+
+    /**
+     * @param point The index of a point.
+     * @return The x coordinate of the point.
+     */
+    @Override
+    public double getX(int point) {
+        return xs[point];
+    }
+
+    /**
+     * @param point The index of a point.
+     * @return The y coordinate of the point.
+     */
+    @Override
+    public double getY(int point) {
+        return ys[point];
+    }
+
+    /**
+     * @param polygon The index of a polygon.
+     * @return The colour of the polygon as an RGB value.
+     */
+    @Override
+    public int getColor(int polygon) {
+        return colors[3 * polygon];
+    }
+
+    /**
+     * @param polygon The index of a polygon.
+     * @return The colour of the external edge as an RGB value.
+     */
+    @Override
+    public int getColorExternalEdge(int polygon) {
+        return colors[3 * polygon + 1];
+    }
+
+    /**
+     * @param polygon The index of a polygon.
+     * @return The colour of the edges of internal holes as an RGB value.
+     */
+    @Override
+    public int getColorInternalEdge(int polygon) {
+        return colors[3 * polygon + 2];
+    }
+
+    /**
+     * @param polygon The index of a polygon.
+     * @param b Output for the bounds of the polygon: xmin, ymin, xmax, ymax.
+     * @return b
+     */
+    @Override
+    public double[] getBounds(int polygon, double[] b) {
+        System.arraycopy(bounds, 4 * polygon, b, 0, 4);
+        return b;
+    }
+
+    /**
+     * Finds the polygons whose bounds intersect the closed query box.
+     *
+     * @param xmin The minimum x of the query box.
+     * @param ymin The minimum y of the query box.
+     * @param xmax The maximum x of the query box.
+     * @param ymax The maximum y of the query box.
+     * @return The bits for the indexes of the polygons found are set.
+     */
+    @Override
+    public BitSet query(double xmin, double ymin, double xmax, double ymax) {
+        return index.query(xmin, ymin, xmax, ymax, new BitSet(nPolygons));
+    }
+
+    /**
+     * @param polygon The index of a polygon.
+     * @return An index of the edges of the polygon, which is created and
+     * kept the first time it is needed.
+     */
+    @Override
+    public EdgeIndex_d getEdgeIndex(int polygon) {
+        if (edgeIndexes.length < nPolygons) {
+            edgeIndexes = Arrays.copyOf(edgeIndexes, nPolygons);
+        }
+        EdgeIndex_d r = edgeIndexes[polygon];
+        if (r == null) {
+            r = new EdgeIndex_d(DoubleBuffer.wrap(xs), DoubleBuffer.wrap(ys),
+                    IntBuffer.wrap(ringStart), polygonRingStart[polygon],
+                    polygonRingStart[polygon + 1]);
+            edgeIndexes[polygon] = r;
+        }
+        return r;
+    }
+}
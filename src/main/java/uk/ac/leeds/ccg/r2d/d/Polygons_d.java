@@ -0,0 +1,199 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import uk.ac.leeds.ccg.v2d.core.d.V2D_Environment_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_AABB_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_ConvexArea_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Point_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Polygon_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_PolygonNoInternalHoles_d;
+
+/**
+ * Read access to polygons with their coordinates packed rather than held as
+ * points. This is what {@link RenderImage_d} renders from, so the coordinates
+ * can be held on or off the heap.
+ *
+ * The points of all the rings are numbered one after another. The points of
+ * ring r are from {@link #getPointStart(int)} of r up to that of r + 1 and
+ * the rings of polygon i are from {@link #getRingStart(int)} of i up to that
+ * of i + 1. The first ring of each polygon is the external ring and any
+ * others are internal holes.
+ *
+ * @author Andy Turner
+ * @see PolygonStore_d
+ * @see OffHeapPolygonStore_d
+ */
+public interface Polygons_d {
+
+    /**
+     * @return The environment.
+     */
+    V2D_Environment_d getEnvironment();
+
+    /**
+     * @return The number of polygons.
+     */
+    int size();
+
+    /**
+     * @return The number of rings.
+     */
+    int getNRings();
+
+    /**
+     * @return The number of points.
+     */
+    int getNPoints();
+
+    /**
+     * @param polygon The index of a polygon or {@link #size()}.
+     * @return The index of the first ring of the polygon. The rings of the
+     * polygon are up to that of the next polygon.
+     */
+    int getRingStart(int polygon);
+
+    /**
+     * @param ring The index of a ring or {@link #getNRings()}.
+     * @return The index of the first point of the ring. The points of the
+     * ring are up to that of the next ring.
+     */
+    int getPointStart(int ring);
+
+    /**
+     * @param point The index of a point.
+     * @return The x coordinate of the point.
+     */
+    double getX(int point);
+
+    /**
+     * @param point The index of a point.
+     * @return The y coordinate of the point.
+     */
+    double getY(int point);
+
+    /**
+     * @param polygon The index of a polygon.
+     * @return The colour of the polygon as an RGB value.
+     */
+    int getColor(int polygon);
+
+    /**
+     * @param polygon The index of a polygon.
+     * @return The colour of the external edge as an RGB value.
+     */
+    int getColorExternalEdge(int polygon);
+
+    /**
+     * @param polygon The index of a polygon.
+     * @return The colour of the edges of internal holes as an RGB value.
+     */
+    int getColorInternalEdge(int polygon);
+
+    /**
+     * @param polygon The index of a polygon.
+     * @param b Output for the bounds of the polygon: xmin, ymin, xmax, ymax.
+     * @return b
+     */
+    double[] getBounds(int polygon, double[] b);
+
+    /**
+     * Finds the polygons whose bounds intersect the closed query box.
+     *
+     * @param xmin The minimum x of the query box.
+     * @param ymin The minimum y of the query box.
+     * @param xmax The maximum x of the query box.
+     * @param ymax The maximum y of the query box.
+     * @return The bits for the indexes of the polygons found are set.
+     */
+    BitSet query(double xmin, double ymin, double xmax, double ymax);
+
+    /**
+     * @param polygon The index of a polygon.
+     * @return An index of the edges of the polygon for testing pixels.
+     */
+    EdgeIndex_d getEdgeIndex(int polygon);
+
+    /**
+     * @param polygon The index of a polygon.
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal.
+     * @return The convex hull of the polygon if this is held, otherwise
+     * null.
+     */
+    default V2D_ConvexArea_d getConvexHull(int polygon, double epsilon) {
+        return null;
+    }
+
+    /**
+     * @return The envelope of all the polygons or null if there are none.
+     */
+    default V2D_AABB_d getEnvelope() {
+        int n = size();
+        if (n == 0) {
+            return null;
+        }
+        double xmin = Double.POSITIVE_INFINITY;
+        double ymin = Double.POSITIVE_INFINITY;
+        double xmax = Double.NEGATIVE_INFINITY;
+        double ymax = Double.NEGATIVE_INFINITY;
+        double[] b = new double[4];
+        for (int i = 0; i < n; i++) {
+            getBounds(i, b);
+            xmin = Math.min(xmin, b[0]);
+            ymin = Math.min(ymin, b[1]);
+            xmax = Math.max(xmax, b[2]);
+            ymax = Math.max(ymax, b[3]);
+        }
+        return new V2D_AABB_d(getEnvironment(), xmin, xmax, ymin, ymax);
+    }
+
+    /**
+     * Creates a polygon. This is not kept.
+     *
+     * @param polygon The index of a polygon.
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal.
+     * @return A new polygon.
+     */
+    default V2D_Polygon_d getPolygon(int polygon, double epsilon) {
+        int r0 = getRingStart(polygon);
+        int r1 = getRingStart(polygon + 1);
+        HashMap<Integer, V2D_PolygonNoInternalHoles_d> holes = new HashMap<>();
+        for (int r = r0 + 1; r < r1; r++) {
+            holes.put(holes.size(), new V2D_PolygonNoInternalHoles_d(
+                    getPoints(r), epsilon));
+        }
+        return new V2D_Polygon_d(getPoints(r0), holes, epsilon);
+    }
+
+    /**
+     * @param ring The index of a ring.
+     * @return New points for the ring.
+     */
+    default V2D_Point_d[] getPoints(int ring) {
+        V2D_Environment_d env = getEnvironment();
+        int p0 = getPointStart(ring);
+        int p1 = getPointStart(ring + 1);
+        V2D_Point_d[] r = new V2D_Point_d[p1 - p0];
+        for (int j = p0; j < p1; j++) {
+            r[j - p0] = new V2D_Point_d(env, getX(j), getY(j));
+        }
+        return r;
+    }
+}
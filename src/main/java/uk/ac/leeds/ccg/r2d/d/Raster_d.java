@@ -0,0 +1,188 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.util.Arrays;
+
+/**
+ * A target for rasterizing into. Rows are indexed with row 0 at the bottom
+ * of the image and columns with column 0 at the left. Pixels are stored in
+ * {@link #pix} with row 0 at the top as expected for images.
+ *
+ * A raster can hold a horizontal strip of the image, in which case
+ * {@link #pix} holds the rows from {@link #top} (counting from the top) and
+ * the clip rectangle is within the strip. This is for rendering images too
+ * large to hold in memory a strip at a time.
+ *
+ * Only pixels within the clip rectangle are set. The rasterizers decide
+ * whether to set each pixel independently of the clip rectangle so that
+ * rendering the same entities into several clipped rasters that cover the
+ * image gives the same result as rendering them into one unclipped raster.
+ *
+ * @author Andy Turner
+ */
+public class Raster_d {
+
+    /**
+     * The pixels with row 0 at the top.
+     */
+    public final int[] pix;
+
+    /**
+     * The number of rows in the image.
+     */
+    public final int nrows;
+
+    /**
+     * The number of columns in the image.
+     */
+    public final int ncols;
+
+    /**
+     * The clip rectangle (inclusive).
+     */
+    public final int minr, maxr, minc, maxc;
+
+    /**
+     * The row of the image counting from the top that is the first row of
+     * {@link #pix}. This is 0 unless this is a strip.
+     */
+    public final int top;
+
+    /**
+     * Create a new instance clipped to the image.
+     *
+     * @param pix What {@link #pix} is set to.
+     * @param nrows What {@link #nrows} is set to.
+     * @param ncols What {@link #ncols} is set to.
+     */
+    public Raster_d(int[] pix, int nrows, int ncols) {
+        this(pix, nrows, ncols, 0, nrows - 1, 0, ncols - 1);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param pix What {@link #pix} is set to.
+     * @param nrows What {@link #nrows} is set to.
+     * @param ncols What {@link #ncols} is set to.
+     * @param minr The minimum row of the clip rectangle.
+     * @param maxr The maximum row of the clip rectangle.
+     * @param minc The minimum column of the clip rectangle.
+     * @param maxc The maximum column of the clip rectangle.
+     */
+    public Raster_d(int[] pix, int nrows, int ncols, int minr, int maxr,
+            int minc, int maxc) {
+        this(pix, nrows, ncols, minr, maxr, minc, maxc, 0);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param pix What {@link #pix} is set to.
+     * @param nrows What {@link #nrows} is set to.
+     * @param ncols What {@link #ncols} is set to.
+     * @param minr The minimum row of the clip rectangle.
+     * @param maxr The maximum row of the clip rectangle.
+     * @param minc The minimum column of the clip rectangle.
+     * @param maxc The maximum column of the clip rectangle.
+     * @param top What {@link #top} is set to.
+     */
+    public Raster_d(int[] pix, int nrows, int ncols, int minr, int maxr,
+            int minc, int maxc, int top) {
+        this.top = top;
+        this.pix = pix;
+        this.nrows = nrows;
+        this.ncols = ncols;
+        this.minr = Math.max(0, minr);
+        this.maxr = Math.min(nrows - 1, maxr);
+        this.minc = Math.max(0, minc);
+        this.maxc = Math.min(ncols - 1, maxc);
+    }
+
+    /**
+     * Creates a strip of an image.
+     *
+     * @param pix The pixels of the strip. The length must be at least
+     * height * ncols.
+     * @param nrows The number of rows in the image.
+     * @param ncols The number of columns in the image.
+     * @param top The row of the image counting from the top that is the
+     * first row of the strip.
+     * @param height The number of rows in the strip.
+     * @return A raster clipped to the strip.
+     */
+    public static Raster_d strip(int[] pix, int nrows, int ncols, int top,
+            int height) {
+        return new Raster_d(pix, nrows, ncols, nrows - top - height,
+                nrows - top - 1, 0, ncols - 1, top);
+    }
+
+    /**
+     * @return {@code true} if the clip rectangle is empty.
+     */
+    public boolean isEmpty() {
+        return minr > maxr || minc > maxc;
+    }
+
+    /**
+     * @param minr The minimum row of the clip rectangle.
+     * @param maxr The maximum row of the clip rectangle.
+     * @param minc The minimum column of the clip rectangle.
+     * @param maxc The maximum column of the clip rectangle.
+     * @return A raster sharing {@link #pix} clipped to the intersection of
+     * the clip rectangle of this and the one given.
+     */
+    public Raster_d clip(int minr, int maxr, int minc, int maxc) {
+        return new Raster_d(pix, nrows, ncols, Math.max(this.minr, minr),
+                Math.min(this.maxr, maxr), Math.max(this.minc, minc),
+                Math.min(this.maxc, maxc), top);
+    }
+
+    /**
+     * Sets the pixel at (r, c) to rgb if it is in the clip rectangle.
+     *
+     * @param r The row.
+     * @param c The column.
+     * @param rgb The colour.
+     */
+    public void set(int r, int c, int rgb) {
+        if (r >= minr && r <= maxr && c >= minc && c <= maxc) {
+            pix[(nrows - r - 1 - top) * ncols + c] = rgb;
+        }
+    }
+
+    /**
+     * Sets the pixels in row r from column c0 to column c1 inclusive to rgb
+     * where they are in the clip rectangle.
+     *
+     * @param r The row.
+     * @param c0 The first column.
+     * @param c1 The last column.
+     * @param rgb The colour.
+     */
+    public void setSpan(int r, int c0, int c1, int rgb) {
+        if (r < minr || r > maxr) {
+            return;
+        }
+        c0 = Math.max(c0, minc);
+        c1 = Math.min(c1, maxc);
+        if (c0 <= c1) {
+            int offset = (nrows - r - 1 - top) * ncols;
+            Arrays.fill(pix, offset + c0, offset + c1 + 1, rgb);
+        }
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import uk.ac.leeds.ccg.io.IO_Cache;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_AABB_d;
+
+/**
+ * A cache of rendered images (or tiles) keyed by {@link Key}. The pixels are
+ * held in memory up to a budget in bytes, evicting the least recently used
+ * first. If an {@link IO_Cache} is given, evicted images are written to it
+ * and read back if requested again, otherwise they are dropped.
+ *
+ * The pixel arrays returned are shared and must not be modified.
+ *
+ * This is thread safe. Rendering on a miss in
+ * {@link #render(Key, RenderImage_d)} is done without holding the lock, so
+ * the same key may be rendered more than once if requested concurrently.
+ *
+ * @author Andy Turner
+ */
+public class RenderCache_d {
+
+    /**
+     * The number of bytes counted for each image in addition to its pixels.
+     */
+    static final long ENTRY_OVERHEAD = 128L;
+
+    /**
+     * Identifies an image: the dataset, the envelope of the window, the
+     * number of rows and columns, the style and the draw flags.
+     */
+    public static final class Key {
+
+        /**
+         * The flag for {@link RenderImage_d#drawAxes}.
+         */
+        public static final int AXES = 1;
+
+        /**
+         * The flag for {@link RenderImage_d#drawTriangles}.
+         */
+        public static final int TRIANGLES = 2;
+
+        /**
+         * The flag for {@link RenderImage_d#drawCircumcircles}.
+         */
+        public static final int CIRCUMCIRCLES = 4;
+
+        /**
+         * The flag for {@link RenderImage_d#drawPolygonsNoInternalHoles}.
+         */
+        public static final int POLYGONS_NO_INTERNAL_HOLES = 8;
+
+        /**
+         * The flag for {@link RenderImage_d#drawPolygons}.
+         */
+        public static final int POLYGONS = 16;
+
+        /**
+         * The flag for {@link RenderImage_d#exact}.
+         */
+        public static final int EXACT = 32;
+
+        /**
+         * The name of the dataset.
+         */
+        public final String dataset;
+
+        /**
+         * The envelope of the window.
+         */
+        public final double xmin, ymin, xmax, ymax;
+
+        /**
+         * The number of rows and columns.
+         */
+        public final int nrows, ncols;
+
+        /**
+         * The name of the style.
+         */
+        public final String style;
+
+        /**
+         * The draw flags.
+         */
+        public final int flags;
+
+        /**
+         * Create a new instance.
+         *
+         * @param dataset What {@link #dataset} is set to.
+         * @param xmin What {@link #xmin} is set to.
+         * @param ymin What {@link #ymin} is set to.
+         * @param xmax What {@link #xmax} is set to.
+         * @param ymax What {@link #ymax} is set to.
+         * @param nrows What {@link #nrows} is set to.
+         * @param ncols What {@link #ncols} is set to.
+         * @param style What {@link #style} is set to.
+         * @param flags What {@link #flags} is set to.
+         */
+        public Key(String dataset, double xmin, double ymin, double xmax,
+                double ymax, int nrows, int ncols, String style, int flags) {
+            this.dataset = dataset;
+            this.xmin = xmin;
+            this.ymin = ymin;
+            this.xmax = xmax;
+            this.ymax = ymax;
+            this.nrows = nrows;
+            this.ncols = ncols;
+            this.style = style;
+            this.flags = flags;
+        }
+
+        /**
+         * Create a new instance for what ri renders.
+         *
+         * @param dataset What {@link #dataset} is set to.
+         * @param style What {@link #style} is set to.
+         * @param ri The renderer.
+         */
+        public Key(String dataset, String style, RenderImage_d ri) {
+            this(dataset, ri.window.getAABB(), ri.nrows, ri.ncols, style,
+                    (ri.drawAxes ? AXES : 0)
+                    | (ri.drawTriangles ? TRIANGLES : 0)
+                    | (ri.drawCircumcircles ? CIRCUMCIRCLES : 0)
+                    | (ri.drawPolygonsNoInternalHoles
+                            ? POLYGONS_NO_INTERNAL_HOLES : 0)
+                    | (ri.drawPolygons ? POLYGONS : 0)
+                    | (ri.exact ? EXACT : 0));
+        }
+
+        private Key(String dataset, V2D_AABB_d aabb, int nrows, int ncols,
+                String style, int flags) {
+            this(dataset, aabb.getXMin(), aabb.getYMin(), aabb.getXMax(),
+                    aabb.getYMax(), nrows, ncols, style, flags);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o instanceof Key k) {
+                return Double.compare(xmin, k.xmin) == 0
+                        && Double.compare(ymin, k.ymin) == 0
+                        && Double.compare(xmax, k.xmax) == 0
+                        && Double.compare(ymax, k.ymax) == 0
+                        && nrows == k.nrows && ncols == k.ncols
+                        && flags == k.flags
+                        && Objects.equals(dataset, k.dataset)
+                        && Objects.equals(style, k.style);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Objects.hash(dataset, style);
+            h = 31 * h + Double.hashCode(xmin);
+            h = 31 * h + Double.hashCode(ymin);
+            h = 31 * h + Double.hashCode(xmax);
+            h = 31 * h + Double.hashCode(ymax);
+            h = 31 * h + nrows;
+            h = 31 * h + ncols;
+            return 31 * h + flags;
+        }
+
+        @Override
+        public String toString() {
+            return "Key(" + dataset + ", " + xmin + ", " + ymin + ", " + xmax
+                    + ", " + ymax + ", " + nrows + "x" + ncols + ", " + style
+                    + ", " + flags + ")";
+        }
+    }
+
+    /**
+     * The maximum number of bytes of images to hold in memory.
+     */
+    final long budget;
+
+    /**
+     * For spilling evicted images to disk or null.
+     */
+    final IO_Cache spill;
+
+    /**
+     * The images in memory from the least to the most recently used.
+     */
+    final LinkedHashMap<Key, int[]> images;
+
+    /**
+     * The ids in {@link #spill} of the images that have been spilled.
+     */
+    final HashMap<Key, Long> spilled;
+
+    /**
+     * The number of bytes of images in memory.
+     */
+    long bytes;
+
+    /**
+     * The number of requests found in memory.
+     */
+    long hits;
+
+    /**
+     * The number of requests read back from {@link #spill}.
+     */
+    long spillHits;
+
+    /**
+     * The number of requests not found.
+     */
+    long misses;
+
+    /**
+     * The number of images evicted from memory.
+     */
+    long evictions;
+
+    /**
+     * Create a new instance.
+     *
+     * @param budget What {@link #budget} is set to.
+     * @param spill What {@link #spill} is set to. This should be a new
+     * cache used only by this.
+     */
+    public RenderCache_d(long budget, IO_Cache spill) {
+        this.budget = budget;
+        this.spill = spill;
+        this.images = new LinkedHashMap<>(16, 0.75f, true);
+        this.spilled = new HashMap<>();
+    }
+
+    /**
+     * @param pix The pixels of an image.
+     * @return The number of bytes counted for pix.
+     */
+    static long getBytes(int[] pix) {
+        return 4L * pix.length + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * Gets the image for key from memory or from {@link #spill}.
+     *
+     * @param key The key.
+     * @return The pixels or null if the image is not cached.
+     */
+    public synchronized int[] get(Key key) {
+        int[] pix = images.get(key);
+        if (pix != null) {
+            hits++;
+            return pix;
+        }
+        Long id = spilled.get(key);
+        if (id != null) {
+            try {
+                pix = (int[]) spill.get(id);
+                spillHits++;
+                hold(key, pix);
+                return pix;
+            } catch (IOException | ClassNotFoundException e) {
+                System.err.println(e.getMessage());
+                spilled.remove(key);
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Adds the image for key.
+     *
+     * @param key The key.
+     * @param pix The pixels. These must not be modified afterwards.
+     */
+    public synchronized void put(Key key, int[] pix) {
+        int[] old = images.remove(key);
+        if (old != null) {
+            bytes -= getBytes(old);
+        }
+        spilled.remove(key);
+        hold(key, pix);
+    }
+
+    /**
+     * Holds pix in memory and evicts the least recently used images until
+     * the bytes are within the budget. An image larger than the budget is
+     * evicted straight away.
+     */
+    private void hold(Key key, int[] pix) {
+        images.put(key, pix);
+        bytes += getBytes(pix);
+        Iterator<Map.Entry<Key, int[]>> ite = images.entrySet().iterator();
+        while (bytes > budget && ite.hasNext()) {
+            Map.Entry<Key, int[]> e = ite.next();
+            ite.remove();
+            bytes -= getBytes(e.getValue());
+            evictions++;
+            if (spill != null && !spilled.containsKey(e.getKey())) {
+                try {
+                    spill.add(e.getValue());
+                    spilled.put(e.getKey(), spill.getNextID());
+                } catch (Exception ex) {
+                    System.err.println(ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the image for key or renders it with ri and adds it.
+     *
+     * @param key The key for what ri renders.
+     * @param ri The renderer.
+     * @return The pixels.
+     */
+    public int[] render(Key key, RenderImage_d ri) {
+        int[] pix = get(key);
+        if (pix == null) {
+            pix = ri.render();
+            put(key, pix);
+        }
+        return pix;
+    }
+
+    /**
+     * Removes all the images from memory. Spilled images remain on disk
+     * but are no longer found.
+     */
+    public synchronized void clear() {
+        images.clear();
+        spilled.clear();
+        bytes = 0L;
+    }
+
+    /**
+     * @return The number of images in memory.
+     */
+    public synchronized int size() {
+        return images.size();
+    }
+
+    /**
+     * @return The number of bytes of images in memory.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The number of requests found in memory.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of requests read back from disk.
+     */
+    public synchronized long getSpillHits() {
+        return spillHits;
+    }
+
+    /**
+     * @return The number of requests not found.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The number of images evicted from memory.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RenderCache_d(images=" + images.size() + ", bytes=" + bytes
+                + ", budget=" + budget + ", hits=" + hits + ", spillHits="
+                + spillHits + ", misses=" + misses + ", evictions="
+                + evictions + ", spilled=" + spilled.size() + ")";
+    }
+}
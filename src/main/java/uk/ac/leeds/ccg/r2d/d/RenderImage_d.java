@@ -16,16 +16,27 @@
 package uk.ac.leeds.ccg.r2d.d;
 
 import ch.obermuhlner.math.big.BigRational;
+import com.sun.management.ThreadMXBean;
 import java.awt.Color;
-import java.awt.Image;
-import java.awt.Panel;
-import java.awt.image.MemoryImageSource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
 import java.math.RoundingMode;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 import uk.ac.leeds.ccg.grids.core.Grids_Environment;
@@ -40,10 +51,13 @@ import uk.ac.leeds.ccg.r2d.d.entities.Polygon_d;
 import uk.ac.leeds.ccg.r2d.d.entities.PolygonNoInternalHoles_d;
 import uk.ac.leeds.ccg.r2d.d.entities.Triangle_t;
 import uk.ac.leeds.ccg.r2d.grids.Colour_MapDouble;
-import uk.ac.leeds.ccg.r2d.io.GSHHGDouble;
-import uk.ac.leeds.ccg.r2d.io.IO;
+import uk.ac.leeds.ccg.r2d.io.GSHHGReader;
+import uk.ac.leeds.ccg.r2d.io.GSHHGStore;
+import uk.ac.leeds.ccg.r2d.io.PNGRowWriter;
+import uk.ac.leeds.ccg.r2d.io.PNGWriter;
 import uk.ac.leeds.ccg.stats.range.Stats_RangeDouble;
 import uk.ac.leeds.ccg.v2d.core.d.V2D_Environment_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_AABB_d;
 import uk.ac.leeds.ccg.v2d.geometry.d.V2D_ConvexArea_d;
 import uk.ac.leeds.ccg.v2d.geometry.d.V2D_FiniteGeometry_d;
 import uk.ac.leeds.ccg.v2d.geometry.d.V2D_LineSegment_d;
@@ -96,16 +110,6 @@ public class RenderImage_d {
      */
     V2D_LineSegment_d pq;
 
-    /**
-     * The rsp of window.
-     */
-    V2D_Triangle_d rsp;
-
-    /**
-     * The rs of window.
-     */
-    V2D_LineSegment_d rs;
-
     /**
      * The pixel height pq vector of window.
      */
@@ -141,11 +145,6 @@ public class RenderImage_d {
      */
     Path output;
 
-    /**
-     * pixelSize
-     */
-    BigRational pixelSize;
-
     /**
      * If true then axes are drawn.
      */
@@ -171,6 +170,69 @@ public class RenderImage_d {
      */
     boolean drawPolygons;
 
+    /**
+     * If true then each pixel is tested for intersection with the geometry
+     * of an entity to render it exactly, otherwise entities are rasterized
+     * (polygons are filled using {@link ScanlineFill_d} and triangles using
+     * {@link TriangleRaster_d}).
+     */
+    boolean exact;
+
+    /**
+     * For transforming between world and fractional pixel coordinates.
+     */
+    ScreenTransform_d transform;
+
+    /**
+     * The pixel boundaries for testing pixels against geometry without
+     * allocating. This is null if the window is not axis aligned in which
+     * case pixels are tested using {@link #getPixel(int, int)}.
+     */
+    PixelBoundaries_d pixels;
+
+    /**
+     * The number of bytes allocated by the last call to {@link #render()} or
+     * -1 if this is not supported by the JVM.
+     */
+    long allocatedBytes;
+
+    /**
+     * The number of threads to render with. If this is greater than 1 then
+     * the image is split into tiles of {@link #tileSize} by
+     * {@link #tileSize} pixels which are rendered concurrently.
+     */
+    int nThreads;
+
+    /**
+     * The default for {@link #tileSize}.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * The width and height of tiles in pixels for rendering with more than
+     * one thread.
+     */
+    int tileSize;
+
+    /**
+     * If greater than 0, {@link #run()} renders and writes the image in
+     * strips of this many rows using {@link #writeStrips(Path, int)}. Images
+     * with too many pixels for an array are always written in strips.
+     */
+    int stripRows;
+
+    /**
+     * If true, {@link #run()} renders into a byte per pixel indexing a
+     * palette and writes an indexed PNG using {@link #writeIndexed(Path)}.
+     */
+    boolean indexed;
+
+    /**
+     * If true, {@link #run()} renders into runs of a colour for each row and
+     * writes these using {@link #writeSpans(Path)}.
+     */
+    boolean spans;
+
     /**
      * Create a new instance.
      *
@@ -183,20 +245,79 @@ public class RenderImage_d {
             ArrayList<Colour_MapDouble> gridCMs, boolean drawTriangles,
             boolean drawCircumcircles, boolean drawPolygonsNoInternalHoles,
             boolean drawPolygons) {
+        this(universe, env, window, nrows, ncols, epsilon, drawAxes, grid,
+                gridCMs, drawTriangles, drawCircumcircles,
+                drawPolygonsNoInternalHoles, drawPolygons, true);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param universe The universe.
+     * @param window The window onto the universe to render.
+     * @param exact What {@link #exact} is set to.
+     */
+    public RenderImage_d(Universe_d universe, V2D_Environment_d env,
+            V2D_Rectangle_d window, int nrows, int ncols, double epsilon,
+            boolean drawAxes, Grids_GridDouble grid,
+            ArrayList<Colour_MapDouble> gridCMs, boolean drawTriangles,
+            boolean drawCircumcircles, boolean drawPolygonsNoInternalHoles,
+            boolean drawPolygons, boolean exact) {
+        this(universe, env, window, nrows, ncols, epsilon, drawAxes, grid,
+                gridCMs, drawTriangles, drawCircumcircles,
+                drawPolygonsNoInternalHoles, drawPolygons, exact, 1);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param universe The universe.
+     * @param window The window onto the universe to render.
+     * @param exact What {@link #exact} is set to.
+     * @param nThreads What {@link #nThreads} is set to.
+     */
+    public RenderImage_d(Universe_d universe, V2D_Environment_d env,
+            V2D_Rectangle_d window, int nrows, int ncols, double epsilon,
+            boolean drawAxes, Grids_GridDouble grid,
+            ArrayList<Colour_MapDouble> gridCMs, boolean drawTriangles,
+            boolean drawCircumcircles, boolean drawPolygonsNoInternalHoles,
+            boolean drawPolygons, boolean exact, int nThreads) {
+        this(universe, env, window, nrows, ncols, epsilon, drawAxes, grid,
+                gridCMs, drawTriangles, drawCircumcircles,
+                drawPolygonsNoInternalHoles, drawPolygons, exact, nThreads,
+                DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param universe The universe.
+     * @param window The window onto the universe to render.
+     * @param exact What {@link #exact} is set to.
+     * @param nThreads What {@link #nThreads} is set to.
+     * @param tileSize What {@link #tileSize} is set to.
+     */
+    public RenderImage_d(Universe_d universe, V2D_Environment_d env,
+            V2D_Rectangle_d window, int nrows, int ncols, double epsilon,
+            boolean drawAxes, Grids_GridDouble grid,
+            ArrayList<Colour_MapDouble> gridCMs, boolean drawTriangles,
+            boolean drawCircumcircles, boolean drawPolygonsNoInternalHoles,
+            boolean drawPolygons, boolean exact, int nThreads,
+            int tileSize) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("tileSize " + tileSize);
+        }
         this.universe = universe;
         this.env = env;
         this.window = window;
         this.pqr = window.getPQR();
-        this.rsp = window.getRSP();
         this.pq = pqr.getPQ();
         this.pqv = pq.l.v.divide((double) nrows);
         this.p = window.getPQR().getP();
-        this.rs = rsp.getQR();
         this.qrv = pqr.getQR().l.v.divide((double) ncols);
         this.nrows = nrows;
         this.ncols = ncols;
         this.epsilon = epsilon;
-        this.pixelSize = BigRational.valueOf(rs.getLength()).divide(ncols);
         this.drawAxes = drawAxes;
         this.grid = grid;
         this.gridCMs = gridCMs;
@@ -204,6 +325,13 @@ public class RenderImage_d {
         this.drawCircumcircles = drawCircumcircles;
         this.drawPolygonsNoInternalHoles = drawPolygonsNoInternalHoles;
         this.drawPolygons = drawPolygons;
+        this.exact = exact;
+        this.transform = new ScreenTransform_d(p, pqv, qrv);
+        if (PixelBoundaries_d.isAxisAligned(transform)) {
+            this.pixels = new PixelBoundaries_d(transform, nrows, ncols);
+        }
+        this.nThreads = nThreads;
+        this.tileSize = tileSize;
     }
 
     /**
@@ -413,8 +541,15 @@ public class RenderImage_d {
                 addPolygons1(universe, env, epsilon);
             case 2 ->
                 addPolygons2(universe, env, epsilon);
-            case 3 ->
-                addPolygons3(universe, env, gshhs_name, scale, epsilon);
+            case 3 -> {
+                try {
+                    addPolygons3(universe, env, inDataDir, gshhs_name,
+                            scale, window.getAABB());
+                } catch (IOException e) {
+                    System.err.println(e.getMessage());
+                    System.exit(1);
+                }
+            }
             case 4 ->
                 addPolygons4(universe, env, epsilon);
         }
@@ -422,10 +557,17 @@ public class RenderImage_d {
         // Draw circumcircles
         //boolean drawCircumcircles = false;
         boolean drawCircumcircles = true;
+        // Render exactly or rasterize
+        //boolean exact = true;
+        boolean exact = false;
+        // Number of threads to render with
+        //int nThreads = 1;
+        int nThreads = Runtime.getRuntime().availableProcessors();
         // Render
         RenderImage_d ri = new RenderImage_d(universe, env, window, nrows,
                 ncols, epsilon, drawAxes, grid, gridCMs, drawTriangles,
-                drawCircumcircles, drawPolygonsNoInternalHoles, drawPolygons);
+                drawCircumcircles, drawPolygonsNoInternalHoles, drawPolygons,
+                exact, nThreads);
         String fname = name;
         if (drawTriangles) {
             fname += "_triangles" + tt;
@@ -438,6 +580,9 @@ public class RenderImage_d {
         if (addGrid) {
             fname += "_grid";
         }
+        if (!exact) {
+            fname += "_raster";
+        }
         ri.output = Paths.get(dir.toString(), fname + "_nrows" + nrows + "_ncols" + ncols + ".png");
         System.out.println(ri.output.toString());
         ri.run();
@@ -887,16 +1032,41 @@ public class RenderImage_d {
         universe.addPolygon(polygon, Color.lightGray, Color.red, Color.blue);
     }
 
+    /**
+     * Adds the GSHHG polygons that intersect envelope and are of the levels
+     * to a new {@link PolygonStore_d} of universe. The selection is done from
+     * the headers of the polygons, so the coordinates of those not selected
+     * are not read, and the coordinates of those selected are decoded
+     * straight into the store.
+     *
+     * @param universe The universe to add to.
+     * @param env The environment.
+     * @param inDataDir The input data directory, which has the GSHHG data
+     * in a "gshhg-bin-2.3.7" directory.
+     * @param gshhs_name The name of the GSHHG data set (e.g. "gshhs_c").
+     * @param scale The scale to multiply coordinate values by.
+     * @param envelope The envelope in scaled coordinates that the polygons
+     * must intersect or null for all of them.
+     * @param levels The levels of the polygons to add. If there are none then
+     * all levels are added.
+     * @throws IOException If the GSHHG file cannot be read.
+     */
     public static void addPolygons3(Universe_d universe,
-            V2D_Environment_d env, String gshhs_name, int scale, double epsilon) {
-        Path outDataDir = Paths.get("data", "input", "gshhg-bin-2.3.7");
-        Path filepath = Paths.get(outDataDir.toString(), gshhs_name + ".b");
-        V2D_Point_d[] points = null;
-        GSHHGDouble gshhg = new GSHHGDouble(filepath, env, scale, epsilon);
-        HashMap<Integer, V2D_Polygon_d> polygons = gshhg.polygons;
-        for (V2D_Polygon_d p : polygons.values()) {
-            universe.addPolygon(p);
+            V2D_Environment_d env, Path inDataDir, String gshhs_name,
+            int scale, V2D_AABB_d envelope, int... levels) throws IOException {
+        Path filepath = Paths.get(inDataDir.toString(), "gshhg-bin-2.3.7",
+                gshhs_name + ".b");
+        GSHHGReader.Query query;
+        if (envelope == null) {
+            query = new GSHHGReader.Query(-180d, -90d, 180d, 90d, levels);
+        } else {
+            query = new GSHHGReader.Query(envelope.getXMin() / scale,
+                    envelope.getYMin() / scale, envelope.getXMax() / scale,
+                    envelope.getYMax() / scale, levels);
         }
+        GSHHGStore gshhg = new GSHHGStore(filepath, env, scale, query,
+                Color.lightGray, Color.gray, Color.gray);
+        universe.addPolygonStore(gshhg.store);
     }
 
     /**
@@ -994,25 +1164,226 @@ public class RenderImage_d {
      * @throws Exception
      */
     public void run() {
+        if (spans) {
+            try {
+                writeSpans(output);
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            }
+            System.out.println("Rendered spans (allocated " + allocatedBytes
+                    + " bytes)");
+            return;
+        }
+        if (indexed) {
+            try {
+                writeIndexed(output);
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            }
+            System.out.println("Rendered indexed (allocated "
+                    + allocatedBytes + " bytes)");
+            return;
+        }
+        if (stripRows > 0 || (long) ncols * nrows > Integer.MAX_VALUE - 8) {
+            int rows = stripRows > 0 ? stripRows
+                    : Math.max(1, (1 << 24) / ncols);
+            try {
+                writeStrips(output, rows);
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            }
+            System.out.println("Rendered in strips of " + rows + " rows");
+            return;
+        }
         int[] pix = render();
         if (drawAxes) {
             axes = new Axes_d(env, universe.envelope);
-            renderLine(axes.xAxis, Color.blue, pix);
-            renderLine(axes.yAxis, Color.red, pix);
-        }
-        MemoryImageSource m = new MemoryImageSource(ncols, nrows, pix, 0, ncols);
-        Panel panel = new Panel();
-        Image image = panel.createImage(m);
-        IO.imageToFile(image, "png", output);
-        System.out.println("Rendered");
+            Raster_d raster = new Raster_d(pix, nrows, ncols);
+            renderLine(axes.xAxis, Color.blue, raster);
+            renderLine(axes.yAxis, Color.red, raster);
+        }
+        try {
+            new PNGWriter(Deflater.DEFAULT_COMPRESSION, nThreads).write(pix,
+                    ncols, nrows, output);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+        System.out.println("Rendered (allocated " + allocatedBytes
+                + " bytes)");
+    }
+
+    /**
+     * Renders the image a strip of rows at a time from the top and writes
+     * each strip to a PNG as it is rendered, so only a strip of pixels is
+     * held in memory. The result is the same as rendering the whole image.
+     * The PNG is written to a temporary file next to p which is moved to p
+     * once it is complete, so p is not left part written if rendering fails.
+     *
+     * @param p The path to write to.
+     * @param rows The number of rows in each strip.
+     * @throws IOException If p cannot be written.
+     */
+    public void writeStrips(Path p, int rows) throws IOException {
+        rows = Math.min(rows, nrows);
+        if ((long) rows * ncols > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(rows + " rows of " + ncols
+                    + " columns is too large for an array");
+        }
+        if (drawAxes) {
+            axes = new Axes_d(env, universe.envelope);
+        }
+        Path parent = p.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        int[] pix = new int[rows * ncols];
+        Path tmp = p.resolveSibling(p.getFileName().toString() + ".tmp");
+        try {
+            try (OutputStream os = new BufferedOutputStream(
+                    Files.newOutputStream(tmp), 1 << 16);
+                    PNGRowWriter w = new PNGRowWriter(os, ncols, nrows, true,
+                            Deflater.DEFAULT_COMPRESSION)) {
+                for (int top = 0; top < nrows; top += rows) {
+                    int height = Math.min(rows, nrows - top);
+                    Arrays.fill(pix, 0);
+                    Raster_d strip = Raster_d.strip(pix, nrows, ncols, top,
+                            height);
+                    render(strip);
+                    if (drawAxes) {
+                        renderLine(axes.xAxis, Color.blue, strip);
+                        renderLine(axes.yAxis, Color.red, strip);
+                    }
+                    w.write(pix, height);
+                }
+            }
+            Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Renders the image into runs of a colour for each row and writes these
+     * to a PNG a row at a time, so the pixels of the whole image are never
+     * held in memory. If there are no more than {@link Palette_d#MAX_SIZE}
+     * colours the PNG is indexed colour.
+     *
+     * @param p The path to write to.
+     * @throws IOException If p cannot be written.
+     */
+    public void writeSpans(Path p) throws IOException {
+        SpanRaster_d raster = renderSpans();
+        if (drawAxes) {
+            axes = new Axes_d(env, universe.envelope);
+            renderLine(axes.xAxis, Color.blue, raster);
+            renderLine(axes.yAxis, Color.red, raster);
+        }
+        Path parent = p.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Palette_d palette = raster.getPalette();
+        try (OutputStream os = new BufferedOutputStream(
+                Files.newOutputStream(p), 1 << 16)) {
+            if (palette == null) {
+                try (PNGRowWriter w = new PNGRowWriter(os, ncols, nrows, true,
+                        Deflater.DEFAULT_COMPRESSION)) {
+                    raster.write(w);
+                }
+            } else {
+                try (PNGRowWriter w = new PNGRowWriter(os, ncols, nrows,
+                        palette.getColours(), Deflater.DEFAULT_COMPRESSION)) {
+                    raster.write(w, palette);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an image map of the universe as runs of a colour for each row.
+     *
+     * @return The rendered spans.
+     */
+    public SpanRaster_d renderSpans() {
+        SpanRaster_d raster = new SpanRaster_d(nrows, ncols);
+        render(raster);
+        return raster;
+    }
+
+    /**
+     * Renders the image into a byte per pixel indexing a palette of the
+     * colours that may be rendered and writes it as an indexed PNG. If more
+     * than {@link Palette_d#MAX_SIZE} colours may be rendered the image is
+     * rendered as ARGB pixels and written as a truecolour PNG instead.
+     *
+     * @param p The path to write to.
+     * @throws IOException If p cannot be written.
+     */
+    public void writeIndexed(Path p) throws IOException {
+        Palette_d palette = Palette_d.of(this);
+        if (palette == null) {
+            int[] pix = render();
+            if (drawAxes) {
+                axes = new Axes_d(env, universe.envelope);
+                Raster_d raster = new Raster_d(pix, nrows, ncols);
+                renderLine(axes.xAxis, Color.blue, raster);
+                renderLine(axes.yAxis, Color.red, raster);
+            }
+            new PNGWriter(Deflater.DEFAULT_COMPRESSION, nThreads).write(pix,
+                    ncols, nrows, p);
+            return;
+        }
+        byte[] index = renderIndexed(palette);
+        if (drawAxes) {
+            axes = new Axes_d(env, universe.envelope);
+            IndexedRaster_d raster = new IndexedRaster_d(index, palette,
+                    nrows, ncols);
+            renderLine(axes.xAxis, Color.blue, raster);
+            renderLine(axes.yAxis, Color.red, raster);
+        }
+        new PNGWriter(Deflater.DEFAULT_COMPRESSION, nThreads).write(index,
+                palette.getColours(), ncols, nrows, p);
+    }
+
+    /**
+     * Creates an image map of the universe as palette indexes.
+     *
+     * @param palette The palette, which must have all the colours rendered.
+     * Pixels not rendered are index 0, so the first colour is the background.
+     * See {@link Palette_d#of(RenderImage_d)}.
+     * @return The palette indexes of the pixels in rows from the top.
+     */
+    public byte[] renderIndexed(Palette_d palette) {
+        if ((long) ncols * nrows > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException(ncols + "x" + nrows
+                    + " is too large for an array");
+        }
+        byte[] index = new byte[ncols * nrows];
+        render(new IndexedRaster_d(index, palette, nrows, ncols));
+        return index;
     }
 
     /**
      * Creates an image map of the universe.
      */
     int[] render() {
-        int n = ncols * nrows;
-        int[] pix = new int[n];
+        if ((long) ncols * nrows > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException(ncols + "x" + nrows
+                    + " is too large for an array, render in strips");
+        }
+        int[] pix = new int[ncols * nrows];
+        render(new Raster_d(pix, nrows, ncols));
+        return pix;
+    }
+
+    /**
+     * Renders into raster, which may be the whole image or a strip of it.
+     * Only entities intersecting the raster are rendered.
+     *
+     * @param raster The raster to render into.
+     */
+    void render(Raster_d raster) {
+        long allocated0 = getThreadAllocatedBytes();
 
         // Render grids
         ArrayList<Grids_GridDouble> grids = universe.grids;
@@ -1030,7 +1401,7 @@ public class RenderImage_d {
                         int gridCol = (int) this.grid.getCol(x);
                         try {
                             Color color = cm.getColour(grid.getCell(x, y));
-                            render(pix, gridRow, gridCol, color);
+                            render(raster, gridRow, gridCol, color);
                         } catch (Exception e) {
                             System.err.print(e.getMessage());
                         }
@@ -1039,31 +1410,404 @@ public class RenderImage_d {
             }
         }
 
+        // Only entities with an AABB intersecting the window are rendered.
+        // Circumcircles can extend beyond the AABB of their triangle, so all
+        // triangles are rendered if these are drawn.
+        V2D_AABB_d aabb;
+        if (raster.top == 0 && raster.minr == 0 && raster.maxr == nrows - 1) {
+            aabb = window.getAABB();
+        } else {
+            double[] b = getBounds(raster);
+            aabb = new V2D_AABB_d(env, b[0], b[2], b[1], b[3]);
+        }
+        ArrayList<Triangle_t> ts = new ArrayList<>();
+        if (drawTriangles) {
+            ts = drawCircumcircles ? universe.triangles
+                    : universe.getTriangles(aabb);
+        }
+        ArrayList<PolygonNoInternalHoles_d> pnih = new ArrayList<>();
+        if (drawPolygonsNoInternalHoles) {
+            pnih = universe.getPolygonsNoInternalHoles(aabb);
+        }
+        ArrayList<Polygon_d> ps = new ArrayList<>();
+        ArrayList<BitSet> packed = new ArrayList<>();
+        if (drawPolygons) {
+            ps = universe.getPolygons(aabb);
+            for (Polygons_d store : universe.polygonStores) {
+                packed.add(store.query(aabb.getXMin(), aabb.getYMin(),
+                        aabb.getXMax(), aabb.getYMax()));
+            }
+        }
+
+        long allocatedTiles = 0L;
+        // Testing pixels using V2D geometry computes and caches things in
+        // the geometry as it goes, so that is done with one thread.
+        if (nThreads > 1 && !(exact && pixels == null)) {
+            allocatedTiles = renderTiles(raster, ts, pnih, ps, packed);
+        } else {
+            renderEntities(raster, ts, pnih, ps, packed);
+        }
+
+        allocatedBytes = allocated0 < 0L ? -1L
+                : getThreadAllocatedBytes() - allocated0 + allocatedTiles;
+    }
+
+    /**
+     * Renders entities in the order: triangles, polygons with no internal
+     * holes, polygons, then the polygons in {@link Universe_d#polygonStores}.
+     *
+     * @param raster The raster to render into.
+     * @param ts The triangles.
+     * @param pnih The polygons with no internal holes.
+     * @param ps The polygons.
+     * @param packed For each store in {@link Universe_d#polygonStores}, the
+     * bits for the polygons to render are set.
+     */
+    void renderEntities(Raster_d raster, ArrayList<Triangle_t> ts,
+            ArrayList<PolygonNoInternalHoles_d> pnih,
+            ArrayList<Polygon_d> ps, ArrayList<BitSet> packed) {
         // Render triangles
         if (drawTriangles) {
-            ArrayList<Triangle_t> ts = universe.triangles;
             for (int i = 0; i < ts.size(); i++) {
-                renderTriangle(ts.get(i), pix);
+                renderTriangle(ts.get(i), raster);
             }
         }
 
         // Render PolygonsNoInternalHoles
         if (drawPolygonsNoInternalHoles) {
-            ArrayList<PolygonNoInternalHoles_d> ps = universe.pnih;
-            for (int i = 0; i < ps.size(); i++) {
-                renderPolygonNoInternalHoles(ps.get(i), pix, epsilon);
+            for (int i = 0; i < pnih.size(); i++) {
+                renderPolygonNoInternalHoles(pnih.get(i), raster, epsilon);
             }
         }
 
         // Render polygons
         if (drawPolygons) {
-            ArrayList<Polygon_d> ps = universe.polygons;
             for (int i = 0; i < ps.size(); i++) {
-                renderPolygon(ps.get(i), pix);
+                renderPolygon(ps.get(i), raster);
+            }
+            for (int j = 0; j < packed.size(); j++) {
+                Polygons_d store = universe.polygonStores.get(j);
+                BitSet b = packed.get(j);
+                for (int i = b.nextSetBit(0); i >= 0; i = b.nextSetBit(i + 1)) {
+                    renderPolygon(store, i, raster);
+                }
             }
         }
+    }
 
-        return pix;
+    /**
+     * Splits the image into tiles, bins the entities into the tiles their
+     * screen bounding boxes overlap keeping them in order, and then renders
+     * the tiles concurrently using {@link #nThreads} threads. Each tile only
+     * sets pixels within it and the rasterizers decide each pixel
+     * independently of the tile, so the result is the same as rendering
+     * everything into the whole image in order.
+     *
+     * @param raster The image or a strip of it. Only the tiles intersecting
+     * this are binned and rendered.
+     * @param ts The triangles.
+     * @param pnih The polygons with no internal holes.
+     * @param ps The polygons.
+     * @param packed For each store in {@link Universe_d#polygonStores}, the
+     * bits for the polygons to render are set.
+     * @return The number of bytes allocated by the threads rendering tiles or
+     * 0 if this is not supported by the JVM.
+     */
+    long renderTiles(Raster_d raster, ArrayList<Triangle_t> ts,
+            ArrayList<PolygonNoInternalHoles_d> pnih,
+            ArrayList<Polygon_d> ps, ArrayList<BitSet> packed) {
+        if (raster.isEmpty()) {
+            return 0L;
+        }
+        int ntr = (nrows + tileSize - 1) / tileSize;
+        int ntc = (ncols + tileSize - 1) / tileSize;
+        // Only the tiles intersecting raster, which may be a strip, are
+        // binned and rendered.
+        int[] range = {raster.minr / tileSize, raster.maxr / tileSize,
+            raster.minc / tileSize, raster.maxc / tileSize};
+        int nrc = range[3] - range[2] + 1;
+        int nt = (range[1] - range[0] + 1) * nrc;
+        ArrayList<ArrayList<Triangle_t>> tts = new ArrayList<>(nt);
+        ArrayList<ArrayList<PolygonNoInternalHoles_d>> tpnih = new ArrayList<>(nt);
+        ArrayList<ArrayList<Polygon_d>> tps = new ArrayList<>(nt);
+        for (int i = 0; i < nt; i++) {
+            tts.add(new ArrayList<>());
+            tpnih.add(new ArrayList<>());
+            tps.add(new ArrayList<>());
+        }
+        // Bin the entities. Geometry that is computed lazily and cached is
+        // computed here so the tiles only read it. The caches of the entities
+        // are got holding their locks, but tiles then do not wait on them.
+        int[] b = new int[4];
+        if (drawTriangles) {
+            for (Triangle_t t : ts) {
+                if (getTileBounds(t, b, ntr, ntc)) {
+                    bin(tts, t, b, range);
+                }
+            }
+        }
+        if (drawPolygonsNoInternalHoles) {
+            for (PolygonNoInternalHoles_d p : pnih) {
+                p.getEdges();
+                p.getXs();
+                if (exact && pixels != null) {
+                    p.getEdgeIndex();
+                }
+                if (getTileBounds(p.getBounds(), b, ntr, ntc)) {
+                    bin(tpnih, p, b, range);
+                }
+            }
+        }
+        if (drawPolygons) {
+            for (Polygon_d p : ps) {
+                p.getEdges();
+                p.getHoleEdges();
+                p.getXs();
+                if (exact && pixels != null) {
+                    p.getEdgeIndex();
+                }
+                if (getTileBounds(p.getBounds(), b, ntr, ntc)) {
+                    bin(tps, p, b, range);
+                }
+            }
+            if (exact && pixels != null) {
+                for (int j = 0; j < packed.size(); j++) {
+                    Polygons_d store = universe.polygonStores.get(j);
+                    BitSet pb = packed.get(j);
+                    for (int i = pb.nextSetBit(0); i >= 0;
+                            i = pb.nextSetBit(i + 1)) {
+                        store.getEdgeIndex(i);
+                    }
+                }
+            }
+        }
+        // Render the tiles.
+        ArrayList<Callable<Long>> tasks = new ArrayList<>(nt);
+        for (int tr = range[0]; tr <= range[1]; tr++) {
+            for (int tc = range[2]; tc <= range[3]; tc++) {
+                int i = (tr - range[0]) * nrc + tc - range[2];
+                Raster_d tile = raster.clip(tr * tileSize,
+                        (tr + 1) * tileSize - 1, tc * tileSize,
+                        (tc + 1) * tileSize - 1);
+                if (tile.isEmpty()) {
+                    continue;
+                }
+                ArrayList<Triangle_t> tileTs = tts.get(i);
+                ArrayList<PolygonNoInternalHoles_d> tilePnih = tpnih.get(i);
+                ArrayList<Polygon_d> tilePs = tps.get(i);
+                ArrayList<BitSet> tilePacked = getTilePacked(packed, tile);
+                if (tileTs.isEmpty() && tilePnih.isEmpty() && tilePs.isEmpty()
+                        && tilePacked.stream().allMatch(BitSet::isEmpty)) {
+                    continue;
+                }
+                tasks.add(() -> {
+                    long a0 = getThreadAllocatedBytes();
+                    renderEntities(tile, tileTs, tilePnih, tilePs, tilePacked);
+                    return a0 < 0L ? 0L : getThreadAllocatedBytes() - a0;
+                });
+            }
+        }
+        long allocated = 0L;
+        ForkJoinPool pool = new ForkJoinPool(nThreads);
+        try {
+            for (Future<Long> f : pool.invokeAll(tasks)) {
+                allocated += f.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdown();
+        }
+        return allocated;
+    }
+
+    /**
+     * Adds an entity to the bins of the tiles it may render pixels in that
+     * are in range.
+     *
+     * @param bins The bins of the tiles in range in row major order.
+     * @param entity The entity.
+     * @param b The minimum and maximum tile row and the minimum and maximum
+     * tile column the entity may render pixels in.
+     * @param range The minimum and maximum tile row and the minimum and
+     * maximum tile column of the tiles binned.
+     */
+    private static <T> void bin(ArrayList<ArrayList<T>> bins, T entity,
+            int[] b, int[] range) {
+        int nrc = range[3] - range[2] + 1;
+        int tr1 = Math.min(b[1], range[1]);
+        int tc1 = Math.min(b[3], range[3]);
+        for (int tr = Math.max(b[0], range[0]); tr <= tr1; tr++) {
+            for (int tc = Math.max(b[2], range[2]); tc <= tc1; tc++) {
+                bins.get((tr - range[0]) * nrc + tc - range[2]).add(entity);
+            }
+        }
+    }
+
+    /**
+     * Finds the polygons in {@link Universe_d#polygonStores} to render in a
+     * tile by querying each store with the world bounds of the tile widened
+     * by a pixel.
+     *
+     * @param packed For each store, the bits for the polygons to render are
+     * set.
+     * @param tile The tile.
+     * @return For each store, the bits for the polygons to render in the
+     * tile are set.
+     */
+    private ArrayList<BitSet> getTilePacked(ArrayList<BitSet> packed,
+            Raster_d tile) {
+        ArrayList<BitSet> r = new ArrayList<>(packed.size());
+        if (packed.isEmpty()) {
+            return r;
+        }
+        double[] tb = getBounds(tile);
+        for (int j = 0; j < packed.size(); j++) {
+            BitSet b = universe.polygonStores.get(j).query(tb[0], tb[1],
+                    tb[2], tb[3]);
+            b.and(packed.get(j));
+            r.add(b);
+        }
+        return r;
+    }
+
+    /**
+     * Calculates the world bounds of the clip rectangle of a raster widened
+     * by a pixel.
+     *
+     * @param raster The raster.
+     * @return The bounds: xmin, ymin, xmax, ymax.
+     */
+    private double[] getBounds(Raster_d raster) {
+        int r0 = raster.minr - 1;
+        int r1 = raster.maxr + 2;
+        int c0 = raster.minc - 1;
+        int c1 = raster.maxc + 2;
+        double x0 = transform.getX(c0, r0);
+        double x1 = transform.getX(c0, r1);
+        double x2 = transform.getX(c1, r0);
+        double x3 = transform.getX(c1, r1);
+        double y0 = transform.getY(c0, r0);
+        double y1 = transform.getY(c0, r1);
+        double y2 = transform.getY(c1, r0);
+        double y3 = transform.getY(c1, r1);
+        return new double[]{Math.min(Math.min(x0, x1), Math.min(x2, x3)),
+            Math.min(Math.min(y0, y1), Math.min(y2, y3)),
+            Math.max(Math.max(x0, x1), Math.max(x2, x3)),
+            Math.max(Math.max(y0, y1), Math.max(y2, y3))};
+    }
+
+    /**
+     * Calculates the range of tiles that the triangle (and its circumcircle
+     * if that is drawn) may render pixels in.
+     *
+     * @param triangle The triangle.
+     * @param b Output for the minimum and maximum tile row and the minimum
+     * and maximum tile column.
+     * @param ntr The number of tile rows.
+     * @param ntc The number of tile columns.
+     * @return {@code false} if the triangle is outside the image.
+     */
+    private boolean getTileBounds(Triangle_t triangle, int[] b, int ntr,
+            int ntc) {
+        V2D_Triangle_d t = triangle.triangle;
+        V2D_Point_d tp = t.getP();
+        V2D_Point_d tq = t.getQ();
+        V2D_Point_d tr = t.getR();
+        t.getPQ();
+        t.getQR();
+        t.getRP();
+        double c0 = transform.getCol(tp);
+        double c1 = transform.getCol(tq);
+        double c2 = transform.getCol(tr);
+        double r0 = transform.getRow(tp);
+        double r1 = transform.getRow(tq);
+        double r2 = transform.getRow(tr);
+        double minc = Math.min(c0, Math.min(c1, c2));
+        double maxc = Math.max(c0, Math.max(c1, c2));
+        double minr = Math.min(r0, Math.min(r1, r2));
+        double maxr = Math.max(r0, Math.max(r1, r2));
+        if (drawCircumcircles) {
+            V2D_Point_d circumcentre = t.getCircumcenter();
+            int radius = (int) circumcentre.getDistance(tp);
+            int cc = getCol(circumcentre);
+            int cr = getRow(circumcentre);
+            minc = Math.min(minc, cc - radius);
+            maxc = Math.max(maxc, cc + radius);
+            minr = Math.min(minr, cr - radius);
+            maxr = Math.max(maxr, cr + radius);
+        }
+        return getTileBounds(minr, maxr, minc, maxc, b, ntr, ntc);
+    }
+
+    /**
+     * Calculates the range of tiles that an entity with the bounds may
+     * render pixels in.
+     *
+     * @param bounds The bounds: xmin, ymin, xmax, ymax.
+     * @param b Output for the minimum and maximum tile row and the minimum
+     * and maximum tile column.
+     * @param ntr The number of tile rows.
+     * @param ntc The number of tile columns.
+     * @return {@code false} if the bounds are outside the image.
+     */
+    private boolean getTileBounds(double[] bounds, int[] b, int ntr,
+            int ntc) {
+        double x0 = bounds[0];
+        double x1 = bounds[2];
+        double y0 = bounds[1];
+        double y1 = bounds[3];
+        double c0 = transform.getCol(x0, y0);
+        double c1 = transform.getCol(x0, y1);
+        double c2 = transform.getCol(x1, y0);
+        double c3 = transform.getCol(x1, y1);
+        double r0 = transform.getRow(x0, y0);
+        double r1 = transform.getRow(x0, y1);
+        double r2 = transform.getRow(x1, y0);
+        double r3 = transform.getRow(x1, y1);
+        return getTileBounds(
+                Math.min(Math.min(r0, r1), Math.min(r2, r3)),
+                Math.max(Math.max(r0, r1), Math.max(r2, r3)),
+                Math.min(Math.min(c0, c1), Math.min(c2, c3)),
+                Math.max(Math.max(c0, c1), Math.max(c2, c3)), b, ntr, ntc);
+    }
+
+    /**
+     * Calculates the range of tiles that pixels in the fractional bounds may
+     * be in. This is widened by a pixel at the minimum so that pixels which
+     * only touch the bounds along a boundary are included.
+     *
+     * @return {@code false} if the bounds are outside the image.
+     */
+    private boolean getTileBounds(double minr, double maxr, double minc,
+            double maxc, int[] b, int ntr, int ntc) {
+        int r0 = (int) Math.floor(minr) - 1;
+        int r1 = (int) Math.floor(maxr);
+        int c0 = (int) Math.floor(minc) - 1;
+        int c1 = (int) Math.floor(maxc);
+        if (r1 < 0 || c1 < 0 || r0 >= nrows || c0 >= ncols) {
+            return false;
+        }
+        b[0] = Math.max(0, r0) / tileSize;
+        b[1] = Math.min(ntr - 1, r1 / tileSize);
+        b[2] = Math.max(0, c0) / tileSize;
+        b[3] = Math.min(ntc - 1, c1 / tileSize);
+        return true;
+    }
+
+    /**
+     * @return The number of bytes allocated by the current thread or -1 if
+     * this is not supported by the JVM.
+     */
+    static long getThreadAllocatedBytes() {
+        java.lang.management.ThreadMXBean tmx
+                = ManagementFactory.getThreadMXBean();
+        if (tmx instanceof ThreadMXBean smx
+                && smx.isThreadAllocatedMemorySupported()
+                && smx.isThreadAllocatedMemoryEnabled()) {
+            return smx.getThreadAllocatedBytes(Thread.currentThread().threadId());
+        }
+        return -1L;
     }
 
     /**
@@ -1074,88 +1818,56 @@ public class RenderImage_d {
      * @param p The point to render.
      * @param pl The plane of the point to render. The normal is the vector to
      * this.
-     * @param pix The image.
-     * @return pix
+     * @param raster The raster to render into.
      */
-    public void renderPoint(V2D_Point_d p, Color c, int[] pix) {
+    public void renderPoint(V2D_Point_d p, Color c, Raster_d raster) {
         int row = getRow(p);
         int col = getCol(p);
-        render(pix, row, col, c);
+        render(raster, row, col, c);
     }
 
-    private void render(int[] pix, int r, int c, Color color) {
-        r = nrows - r - 1;
-        int in = (r * ncols) + c;
-        if (!(in < 0 || in >= pix.length)) {
-            pix[in] = color.getRGB();
-        }
+    private void render(Raster_d raster, int r, int c, Color color) {
+        raster.set(r, c, color.getRGB());
     }
 
     /**
      * Calculate and return the row index of the screen that p is on.
      *
-     * @param p A point on the screen.
-     * @param qr The line segment that is the bottom of the screen.
-     * @return The row index of the screen for the point p.
+     * @param p A point.
+     * @return The row index of the screen for the point p. This is negative
+     * or greater than or equal to nrows if p is outside the window.
      */
     protected int getRow(V2D_Point_d p) {
-        BigRational d = BigRational.valueOf(rs.getDistance(p, epsilon));
-        return (d.divide(pixelSize)).intValue();
+        return (int) Math.floor(transform.getRow(p));
     }
 
     /**
      * Calculate and return the column index of the screen that p is on.
      *
-     * @param p A point on the screen.
-     * @return The column index of the screen for the point p.
+     * @param p A point.
+     * @return The column index of the screen for the point p. This is
+     * negative or greater than or equal to ncols if p is outside the window.
      */
     protected int getCol(V2D_Point_d p) {
-        BigRational d = BigRational.valueOf(pq.getDistance(p, epsilon));
-        return (d.divide(pixelSize)).intValue();
+        return (int) Math.floor(transform.getCol(p));
     }
 
     /**
      * For rendering a line on the image. Lines may be obscured by other
-     * rendered entities. The rendering order determines what is visible.
+     * rendered entities. The rendering order determines what is visible. Only
+     * the pixels the line passes through are visited using
+     * {@link Supercover_d}.
      *
      * @param l The line to render.
-     * @param pix The image.
+     * @param color The colour to render the line.
+     * @param raster The raster to render into.
      */
-    public void renderLine(V2D_LineSegment_d l, Color color, int[] pix) {
+    public void renderLine(V2D_LineSegment_d l, Color color, Raster_d raster) {
         V2D_Point_d lp = l.getP();
-        // Calculate the min and max row and col.
-        int minr = getRow(lp);
-        int minc = getCol(lp);
-        int maxr = minr;
-        int maxc = minc;
         V2D_Point_d lq = l.getQ();
-        int rq = getRow(lq);
-        int cq = getCol(lq);
-        minr = Math.min(minr, rq);
-        minc = Math.min(minc, cq);
-        maxr = Math.max(maxr, rq);
-        maxc = Math.max(maxc, cq);
-        if (minr < 0) {
-            minr = 0;
-        }
-        if (minc < 0) {
-            minc = 0;
-        }
-        if (maxr >= nrows) {
-            maxr = nrows - 1;
-        }
-        if (maxc >= ncols) {
-            maxc = ncols - 1;
-        }
-        for (int r = minr; r <= maxr; r++) {
-            for (int c = minc; c <= maxc; c++) {
-                V2D_Rectangle_d pixel = getPixel(r, c);
-                V2D_FiniteGeometry_d pil = pixel.getIntersect(l, epsilon);
-                if (pil != null) {
-                    render(pix, r, c, color);
-                }
-            }
-        }
+        Supercover_d.render(transform.getCol(lp), transform.getRow(lp),
+                transform.getCol(lq), transform.getRow(lq), raster,
+                color.getRGB());
     }
 
     /**
@@ -1163,15 +1875,19 @@ public class RenderImage_d {
      * rendered entities. The rendering order determines what is visible.
      *
      * @param l The line to render.
-     * @param pix The image.
+     * @param raster The raster to render into.
      */
-    public void renderTriangle(Triangle_t triangle, int[] pix) {
+    public void renderTriangle(Triangle_t triangle, Raster_d raster) {
         V2D_Triangle_d t = triangle.triangle;
         // Circumcircles
         if (drawCircumcircles) {
             V2D_Point_d circumcentre = t.getCircumcenter();
             double radius = circumcentre.getDistance(t.getP());
-            drawCircle(pix, circumcentre, radius, Color.white);
+            drawCircle(raster, circumcentre, radius, Color.white);
+        }
+        if (!exact) {
+            renderTriangleEdgeFunctions(triangle, raster);
+            return;
         }
         V2D_Point_d tp = t.getP();
         // Calculate the min and max row and col.
@@ -1187,48 +1903,65 @@ public class RenderImage_d {
         int minc = Math_Integer.min(cp, cq, cr);
         int maxr = Math_Integer.max(rp, rq, rr);
         int maxc = Math_Integer.max(cp, cq, cr);
-        if (minr < 0) {
-            minr = 0;
+        if (minr < raster.minr) {
+            minr = raster.minr;
         }
-        if (minc < 0) {
-            minc = 0;
+        if (minc < raster.minc) {
+            minc = raster.minc;
         }
-        if (maxr >= nrows) {
-            maxr = nrows - 1;
+        if (maxr > raster.maxr) {
+            maxr = raster.maxr;
         }
-        if (maxc >= ncols) {
-            maxc = ncols - 1;
+        if (maxc > raster.maxc) {
+            maxc = raster.maxc;
         }
-        for (int r = minr; r <= maxr; r++) {
-            for (int c = minc; c <= maxc; c++) {
-                V2D_Rectangle_d pixel = getPixel(r, c);
-                V2D_FiniteGeometry_d pit = pixel.getIntersect(t, epsilon);
-                if (pit != null) {
-                    render(pix, r, c, triangle.color);
-                    // Edge
-                    /**
-                     * There is probably a faster way to render the edge by only
-                     * getting intersections for more restricted rows and
-                     * columns.
-                     */
-                    // PQ
-                    V2D_FiniteGeometry_d pipq = pixel.getIntersect(t.getPQ(), epsilon);
-                    if (pipq != null) {
-                        render(pix, r, c, triangle.getColorPQ());
+        if (pixels != null) {
+            double x0 = tp.getX(), y0 = tp.getY();
+            double x1 = tq.getX(), y1 = tq.getY();
+            double x2 = tr.getX(), y2 = tr.getY();
+            int rgb = triangle.color.getRGB();
+            for (int r = minr; r <= maxr; r++) {
+                for (int c = minc; c <= maxc; c++) {
+                    if (pixels.intersectsTriangle(r, c, x0, y0, x1, y1, x2,
+                            y2)) {
+                        raster.set(r, c, rgb);
                     }
-                    // QR
-                    V2D_FiniteGeometry_d piqr = pixel.getIntersect(t.getQR(), epsilon);
-                    if (piqr != null) {
-                        render(pix, r, c, triangle.getColorQR());
-                    }
-                    // RP
-                    V2D_FiniteGeometry_d pirp = pixel.getIntersect(t.getRP(), epsilon);
-                    if (pirp != null) {
-                        render(pix, r, c, triangle.getColorRP());
+                }
+            }
+        } else {
+            for (int r = minr; r <= maxr; r++) {
+                for (int c = minc; c <= maxc; c++) {
+                    V2D_Rectangle_d pixel = getPixel(r, c);
+                    V2D_FiniteGeometry_d pit = pixel.getIntersect(t, epsilon);
+                    if (pit != null) {
+                        render(raster, r, c, triangle.color);
                     }
                 }
             }
         }
+        // Edges
+        renderLine(t.getPQ(), triangle.getColorPQ(), raster);
+        renderLine(t.getQR(), triangle.getColorQR(), raster);
+        renderLine(t.getRP(), triangle.getColorRP(), raster);
+    }
+
+    /**
+     * For rendering a triangle using {@link TriangleRaster_d} which steps
+     * edge functions across the pixels in the bounding box of the triangle.
+     *
+     * @param triangle The triangle to render.
+     * @param raster The raster to render into.
+     */
+    public void renderTriangleEdgeFunctions(Triangle_t triangle, Raster_d raster) {
+        V2D_Triangle_d t = triangle.triangle;
+        V2D_Point_d tp = t.getP();
+        V2D_Point_d tq = t.getQ();
+        V2D_Point_d tr = t.getR();
+        TriangleRaster_d.render(transform.getCol(tp), transform.getRow(tp),
+                transform.getCol(tq), transform.getRow(tq),
+                transform.getCol(tr), transform.getRow(tr), raster,
+                triangle.color.getRGB(), triangle.getColorPQ().getRGB(),
+                triangle.getColorQR().getRGB(), triangle.getColorRP().getRGB());
     }
 
     /**
@@ -1236,41 +1969,69 @@ public class RenderImage_d {
      * rendered entities. The rendering order determines what is visible.
      *
      * @param l The polygon to render.
-     * @param pix The image.
+     * @param raster The raster to render into.
      * @param epsilon The tolerance within which two vectors are regarded as
      * equal.
      */
-    public void renderPolygonNoInternalHoles(PolygonNoInternalHoles_d polygon, int[] pix, double epsilon) {
-        V2D_PolygonNoInternalHoles_d poly = polygon.polygon;
-        V2D_ConvexArea_d ch = poly.getConvexArea(epsilon);
-        HashMap<Integer, V2D_LineSegment_d> externalEdges = poly.getEdges();
-        V2D_LineSegment_d[] externalEdgesArray = new V2D_LineSegment_d[externalEdges.size()];
-        for (int i = 0; i < externalEdgesArray.length; i++) {
-            externalEdgesArray[i] = externalEdges.get(i);
+    public void renderPolygonNoInternalHoles(PolygonNoInternalHoles_d polygon, Raster_d raster, double epsilon) {
+        if (!exact) {
+            renderPolygonNoInternalHolesScanline(polygon, raster);
+            return;
         }
-        V2D_Point_d[] ePs = ch.getPointsArray();
+        if (pixels != null) {
+            renderRings(polygon.getEdgeIndex(), polygon.color.getRGB(),
+                    raster);
+        } else {
+            renderPolygonNoInternalHolesPixels(polygon, raster, epsilon);
+        }
+        // Edges
+        renderEdges(polygon.getEdges(), polygon.getColorExternalEdge(),
+                raster);
+    }
+
+    /**
+     * For rendering a polygon with no internal holes by testing pixels
+     * created using {@link #getPixel(int, int)}.
+     *
+     * @param polygon The polygon to render.
+     * @param raster The raster to render into.
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal.
+     */
+    private void renderPolygonNoInternalHolesPixels(
+            PolygonNoInternalHoles_d polygon, Raster_d raster, double epsilon) {
+        V2D_PolygonNoInternalHoles_d poly = polygon.getPolygon();
+        V2D_ConvexArea_d ch = polygon.getConvexArea(epsilon);
+        V2D_Point_d[] ePs = polygon.getConvexAreaPoints(epsilon);
         // Calculate the min and max row and col.
-        int minr = getRow(ePs[0]);
-        int maxr = getRow(ePs[0]);
-        int minc = getCol(ePs[0]);
-        int maxc = getCol(ePs[0]);
+        double[] cols = new double[ePs.length];
+        double[] rows = new double[ePs.length];
+        transform.transform(ePs, cols, rows);
+        double minx = cols[0];
+        double maxx = cols[0];
+        double miny = rows[0];
+        double maxy = rows[0];
         for (int i = 1; i < ePs.length; i++) {
-            minr = Math.min(minr, getRow(ePs[i]));
-            maxr = Math.max(maxr, getRow(ePs[i]));
-            minc = Math.min(minc, getCol(ePs[i]));
-            maxc = Math.max(maxc, getCol(ePs[i]));
+            minx = Math.min(minx, cols[i]);
+            maxx = Math.max(maxx, cols[i]);
+            miny = Math.min(miny, rows[i]);
+            maxy = Math.max(maxy, rows[i]);
         }
-        if (minr < 0) {
-            minr = 0;
+        int minr = (int) Math.floor(miny);
+        int maxr = (int) Math.floor(maxy);
+        int minc = (int) Math.floor(minx);
+        int maxc = (int) Math.floor(maxx);
+        if (minr < raster.minr) {
+            minr = raster.minr;
         }
-        if (minc < 0) {
-            minc = 0;
+        if (minc < raster.minc) {
+            minc = raster.minc;
         }
-        if (maxr >= nrows) {
-            maxr = nrows - 1;
+        if (maxr > raster.maxr) {
+            maxr = raster.maxr;
         }
-        if (maxc >= ncols) {
-            maxc = ncols - 1;
+        if (maxc > raster.maxc) {
+            maxc = raster.maxc;
         }
         for (int r = minr; r <= maxr; r++) {
 
@@ -1286,10 +2047,7 @@ public class RenderImage_d {
                 V2D_Rectangle_d pixel = getPixel(r, c);
                 if (ch.intersects(pixel, epsilon)) {
                     if (poly.intersects(pixel, epsilon)) {
-                        render(pix, r, c, polygon.color);
-                    }
-                    if (pixel.intersects(epsilon, externalEdgesArray)) {
-                        render(pix, r, c, polygon.getColorExternalEdge());
+                        render(raster, r, c, polygon.color);
                     }
                 }
             }
@@ -1301,40 +2059,81 @@ public class RenderImage_d {
      * rendered entities. The rendering order determines what is visible.
      *
      * @param l The polygon to render.
-     * @param pix The image.
-     */
-    public void renderPolygon(Polygon_d polygon, int[] pix) {
-        V2D_Polygon_d poly = polygon.polygon;
-        V2D_ConvexArea_d ch = poly.getConvexArea(epsilon);
-        HashMap<Integer, V2D_LineSegment_d> edges = poly.getEdges();
-        //V2D_LineSegmentDouble[] externalEdgesArray = new V2D_LineSegment_d[externalEdges.size()];
-        //for (int i = 0; i < externalEdgesArray.length; i++) {
-        //    externalEdgesArray[i] = externalEdges.get(i);
-        //}
-        HashMap<Integer, V2D_PolygonNoInternalHoles_d> internalHoles = poly.internalHoles;
-        V2D_Point_d[] ePs = ch.getPointsArray();
+     * @param raster The raster to render into.
+     */
+    public void renderPolygon(Polygon_d polygon, Raster_d raster) {
+        if (!exact) {
+            renderPolygonScanline(polygon, raster);
+            return;
+        }
+        if (pixels != null) {
+            renderRings(polygon.getEdgeIndex(), polygon.color.getRGB(),
+                    raster);
+        } else {
+            renderPolygonPixels(polygon, raster);
+        }
+        // Edges
+        renderEdges(polygon.getEdges(), polygon.getColorExternalEdge(),
+                raster);
+        Color ci = polygon.getColorInternalEdge();
+        for (double[] holeEdges : polygon.getHoleEdges()) {
+            renderEdges(holeEdges, ci, raster);
+        }
+    }
+
+    /**
+     * For rendering a polygon by testing pixels created using
+     * {@link #getPixel(int, int)}.
+     *
+     * @param polygon The polygon to render.
+     * @param raster The raster to render into.
+     */
+    private void renderPolygonPixels(Polygon_d polygon, Raster_d raster) {
+        renderPolygonPixels(polygon.getPolygon(), polygon.getConvexArea(epsilon),
+                polygon.getConvexAreaPoints(epsilon), polygon.color, raster);
+    }
+
+    /**
+     * For rendering a polygon by testing pixels created using
+     * {@link #getPixel(int, int)}.
+     *
+     * @param poly The polygon to render.
+     * @param ch The convex hull of poly.
+     * @param ePs The points of ch.
+     * @param color The colour to render the polygon.
+     * @param raster The raster to render into.
+     */
+    private void renderPolygonPixels(V2D_Polygon_d poly, V2D_ConvexArea_d ch,
+            V2D_Point_d[] ePs, Color color, Raster_d raster) {
         // Calculate the min and max row and col.
-        int minr = getRow(ePs[0]);
-        int maxr = getRow(ePs[0]);
-        int minc = getCol(ePs[0]);
-        int maxc = getCol(ePs[0]);
+        double[] cols = new double[ePs.length];
+        double[] rows = new double[ePs.length];
+        transform.transform(ePs, cols, rows);
+        double minx = cols[0];
+        double maxx = cols[0];
+        double miny = rows[0];
+        double maxy = rows[0];
         for (int i = 1; i < ePs.length; i++) {
-            minr = Math.min(minr, getRow(ePs[i]));
-            maxr = Math.max(maxr, getRow(ePs[i]));
-            minc = Math.min(minc, getCol(ePs[i]));
-            maxc = Math.max(maxc, getCol(ePs[i]));
+            minx = Math.min(minx, cols[i]);
+            maxx = Math.max(maxx, cols[i]);
+            miny = Math.min(miny, rows[i]);
+            maxy = Math.max(maxy, rows[i]);
         }
-        if (minr < 0) {
-            minr = 0;
+        int minr = (int) Math.floor(miny);
+        int maxr = (int) Math.floor(maxy);
+        int minc = (int) Math.floor(minx);
+        int maxc = (int) Math.floor(maxx);
+        if (minr < raster.minr) {
+            minr = raster.minr;
         }
-        if (minc < 0) {
-            minc = 0;
+        if (minc < raster.minc) {
+            minc = raster.minc;
         }
-        if (maxr >= nrows) {
-            maxr = nrows - 1;
+        if (maxr > raster.maxr) {
+            maxr = raster.maxr;
         }
-        if (maxc >= ncols) {
-            maxc = ncols - 1;
+        if (maxc > raster.maxc) {
+            maxc = raster.maxc;
         }
         for (int r = minr; r <= maxr; r++) {
 
@@ -1351,39 +2150,211 @@ public class RenderImage_d {
                 V2D_Rectangle_d pixel = getPixel(r, c);
                 if (ch.intersects(pixel, epsilon)) {
                     if (poly.intersects(pixel, epsilon)) {
-                        render(pix, r, c, polygon.color);
-                    }
-                    if (pixel.intersects(epsilon, edges.values())) {
-                        render(pix, r, c, polygon.getColorExternalEdge());
-                    }
-                    for (var x : internalHoles.values()) {
-                        if (pixel.intersects(epsilon, x.getEdges().values())) {
-                            render(pix, r, c, polygon.getColorInternalEdge());
-                        }
+                        render(raster, r, c, color);
                     }
                 }
             }
         }
     }
 
+    /**
+     * For rendering a polygon in a {@link Polygons_d} directly from the
+     * coordinates in the store. This renders the same as
+     * {@link #renderPolygon(Polygon_d, Raster_d)} would for the polygon.
+     *
+     * @param store The store.
+     * @param i The index of the polygon in the store.
+     * @param raster The raster to render into.
+     */
+    public void renderPolygon(Polygons_d store, int i, Raster_d raster) {
+        int rgb = store.getColor(i);
+        int ring0 = store.getRingStart(i);
+        int ring1 = store.getRingStart(i + 1);
+        if (!exact) {
+            int n = ring1 - ring0;
+            double[][] xs = new double[n][];
+            double[][] ys = new double[n][];
+            for (int ring = ring0; ring < ring1; ring++) {
+                int p0 = store.getPointStart(ring);
+                int p1 = store.getPointStart(ring + 1);
+                double[] x = new double[p1 - p0];
+                double[] y = new double[p1 - p0];
+                for (int j = p0; j < p1; j++) {
+                    double wx = store.getX(j);
+                    double wy = store.getY(j);
+                    x[j - p0] = transform.getCol(wx, wy);
+                    y[j - p0] = transform.getRow(wx, wy);
+                }
+                xs[ring - ring0] = x;
+                ys[ring - ring0] = y;
+            }
+            ScanlineFill_d.fill(xs, ys, raster, rgb);
+        } else if (pixels != null) {
+            renderRings(store.getEdgeIndex(i), rgb, raster);
+        } else {
+            V2D_Polygon_d poly = store.getPolygon(i, epsilon);
+            V2D_ConvexArea_d ch = store.getConvexHull(i, epsilon);
+            if (ch == null) {
+                ch = poly.getConvexArea(epsilon);
+            }
+            renderPolygonPixels(poly, ch, ch.getPointsArray(), new Color(rgb),
+                    raster);
+        }
+        // Edges
+        renderRingEdges(store, ring0, store.getColorExternalEdge(i), raster);
+        int rgbi = store.getColorInternalEdge(i);
+        for (int ring = ring0 + 1; ring < ring1; ring++) {
+            renderRingEdges(store, ring, rgbi, raster);
+        }
+    }
+
+    /**
+     * For rendering the edges of a ring in a {@link Polygons_d}.
+     *
+     * @param store The store.
+     * @param ring The index of the ring in the store.
+     * @param rgb The colour to render the edges.
+     * @param raster The raster to render into.
+     */
+    private void renderRingEdges(Polygons_d store, int ring, int rgb,
+            Raster_d raster) {
+        int p0 = store.getPointStart(ring);
+        int p1 = store.getPointStart(ring + 1);
+        if (p1 == p0) {
+            return;
+        }
+        double x = store.getX(p1 - 1);
+        double y = store.getY(p1 - 1);
+        double c0 = transform.getCol(x, y);
+        double r0 = transform.getRow(x, y);
+        for (int j = p0; j < p1; j++) {
+            x = store.getX(j);
+            y = store.getY(j);
+            double c1 = transform.getCol(x, y);
+            double r1 = transform.getRow(x, y);
+            Supercover_d.render(c0, r0, c1, r1, raster, rgb);
+            c0 = c1;
+            r0 = r1;
+        }
+    }
+
+    /**
+     * For rendering the area bounded by rings by testing each pixel in the
+     * bounding box against {@link #pixels}. Nothing is allocated per pixel
+     * and only edges near each pixel are tested.
+     *
+     * @param index The index of the edges of the rings.
+     * @param rgb The colour.
+     * @param raster The raster to render into.
+     */
+    private void renderRings(EdgeIndex_d index, int rgb, Raster_d raster) {
+        double c0 = transform.getCol(index.xmin, index.ymin);
+        double c1 = transform.getCol(index.xmax, index.ymax);
+        double r0 = transform.getRow(index.xmin, index.ymin);
+        double r1 = transform.getRow(index.xmax, index.ymax);
+        int minc = Math.max(raster.minc, (int) Math.floor(Math.min(c0, c1)));
+        int maxc = Math.min(raster.maxc, (int) Math.floor(Math.max(c0, c1)));
+        int minr = Math.max(raster.minr, (int) Math.floor(Math.min(r0, r1)));
+        int maxr = Math.min(raster.maxr, (int) Math.floor(Math.max(r0, r1)));
+        for (int r = minr; r <= maxr; r++) {
+            for (int c = minc; c <= maxc; c++) {
+                if (pixels.intersectsRings(r, c, index)) {
+                    raster.set(r, c, rgb);
+                }
+            }
+        }
+    }
+
+    /**
+     * For rendering a polygon with no internal holes by filling it with
+     * {@link ScanlineFill_d} and then rendering the edges.
+     *
+     * @param polygon The polygon to render.
+     * @param raster The raster to render into.
+     */
+    public void renderPolygonNoInternalHolesScanline(
+            PolygonNoInternalHoles_d polygon, Raster_d raster) {
+        double[][] xs = new double[1][];
+        double[][] ys = new double[1][];
+        transformRings(polygon.getXs(), polygon.getYs(), xs, ys);
+        ScanlineFill_d.fill(xs, ys, raster, polygon.color.getRGB());
+        renderEdges(polygon.getEdges(), polygon.getColorExternalEdge(),
+                raster);
+    }
+
+    /**
+     * For rendering a polygon by filling it with {@link ScanlineFill_d} and
+     * then rendering the edges. Internal holes are left unfilled by the even
+     * odd fill rule.
+     *
+     * @param polygon The polygon to render.
+     * @param raster The raster to render into.
+     */
+    public void renderPolygonScanline(Polygon_d polygon, Raster_d raster) {
+        double[][] wxs = polygon.getXs();
+        double[][] xs = new double[wxs.length][];
+        double[][] ys = new double[wxs.length][];
+        transformRings(wxs, polygon.getYs(), xs, ys);
+        ScanlineFill_d.fill(xs, ys, raster, polygon.color.getRGB());
+        renderEdges(polygon.getEdges(), polygon.getColorExternalEdge(),
+                raster);
+        Color ci = polygon.getColorInternalEdge();
+        for (double[] holeEdges : polygon.getHoleEdges()) {
+            renderEdges(holeEdges, ci, raster);
+        }
+    }
+
+    /**
+     * Sets each xs[i] and ys[i] to the fractional column and row indexes of
+     * the points with world coordinates wxs[i] and wys[i].
+     *
+     * @param wxs The x coordinates of the points of rings.
+     * @param wys The y coordinates of the points of rings.
+     * @param xs The column indexes of rings.
+     * @param ys The row indexes of rings.
+     */
+    private void transformRings(double[][] wxs, double[][] wys,
+            double[][] xs, double[][] ys) {
+        for (int i = 0; i < wxs.length; i++) {
+            int n = wxs[i].length;
+            xs[i] = new double[n];
+            ys[i] = new double[n];
+            transform.transform(wxs[i], wys[i], 0, n, xs[i], ys[i]);
+        }
+    }
+
+    /**
+     * For rendering edges.
+     *
+     * @param edges The coordinates of the edges. For each edge these are the
+     * x and y of the start and the x and y of the end.
+     * @param color The colour to render the edges.
+     * @param raster The raster to render into.
+     */
+    private void renderEdges(double[] edges, Color color, Raster_d raster) {
+        int rgb = color.getRGB();
+        for (int i = 0; i < edges.length; i += 4) {
+            Supercover_d.render(transform.getCol(edges[i], edges[i + 1]),
+                    transform.getRow(edges[i], edges[i + 1]),
+                    transform.getCol(edges[i + 2], edges[i + 3]),
+                    transform.getRow(edges[i + 2], edges[i + 3]), raster, rgb);
+        }
+    }
+
     /**
      * @param row The row index for the pixel returned.
      * @param col The column index for the pixel returned.
      * @return The pixel rectangle.
      */
     public V2D_Rectangle_d getPixel(int row, int col) {
-        // p
-        V2D_Point_d pP = new V2D_Point_d(p);
-        pP.translate(pqv.multiply(row).add(qrv.multiply(col)));
-        // q
-        V2D_Point_d pQ = new V2D_Point_d(p);
-        pQ.translate(pqv.multiply(row + 1).add(qrv.multiply(col)));
-        // r
-        V2D_Point_d pR = new V2D_Point_d(p);
-        pR.translate(pqv.multiply(row + 1).add(qrv.multiply(col + 1)));
-        // s
-        V2D_Point_d pS = new V2D_Point_d(p);
-        pS.translate(pqv.multiply(row).add(qrv.multiply(col + 1)));
+        V2D_Point_d pP = new V2D_Point_d(env, transform.getX(col, row),
+                transform.getY(col, row));
+        V2D_Point_d pQ = new V2D_Point_d(env, transform.getX(col, row + 1),
+                transform.getY(col, row + 1));
+        V2D_Point_d pR = new V2D_Point_d(env, transform.getX(col + 1, row + 1),
+                transform.getY(col + 1, row + 1));
+        V2D_Point_d pS = new V2D_Point_d(env, transform.getX(col + 1, row),
+                transform.getY(col + 1, row));
         return new V2D_Rectangle_d(pP, pQ, pR, pS);
     }
 
@@ -1391,12 +2362,12 @@ public class RenderImage_d {
      * https://en.wikipedia.org/wiki/Midpoint_circle_algorithm
      * https://rosettacode.org/wiki/Bitmap/Midpoint_circle_algorithm#Java
      *
-     * @param pix The image.
+     * @param raster The raster to render into.
      * @param centre The circle centre.
      * @param radius The circle radius.
      * @param color The colour of the circle.
      */
-    private void drawCircle(int[] pix, V2D_Point_d centre, double radius,
+    private void drawCircle(Raster_d raster, V2D_Point_d centre, double radius,
             Color color) {
         int d = (5 - (int) radius * 4) / 4;
         int x = 0;
@@ -1404,14 +2375,14 @@ public class RenderImage_d {
         int centreY = getCol(centre);
         int centreX = getRow(centre);
         do {
-            render(pix, centreX + x, centreY + y, color);
-            render(pix, centreX + x, centreY - y, color);
-            render(pix, centreX - x, centreY + y, color);
-            render(pix, centreX - x, centreY - y, color);
-            render(pix, centreX + y, centreY + x, color);
-            render(pix, centreX + y, centreY - x, color);
-            render(pix, centreX - y, centreY + x, color);
-            render(pix, centreX - y, centreY - x, color);
+            render(raster, centreX + x, centreY + y, color);
+            render(raster, centreX + x, centreY - y, color);
+            render(raster, centreX - x, centreY + y, color);
+            render(raster, centreX - x, centreY - y, color);
+            render(raster, centreX + y, centreY + x, color);
+            render(raster, centreX + y, centreY - x, color);
+            render(raster, centreX - y, centreY + x, color);
+            render(raster, centreX - y, centreY - x, color);
             if (d < 0) {
                 d += 2 * x + 1;
             } else {
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A static R-tree of items with axis aligned bounding boxes, bulk loaded
+ * using Sort-Tile-Recursive (STR) packing. Items are added one at a time and
+ * the tree is built the next time it is queried. Items added since it was
+ * last built are checked one by one until there are enough of them to be
+ * worth rebuilding for.
+ *
+ * Queries return the items whose boxes intersect the query box in the order
+ * they were added, so the result can be rendered in the same order as
+ * everything would be without the index.
+ *
+ * This is not thread safe: the tree may be rebuilt by a query.
+ *
+ * @author Andy Turner
+ * @param <T> The type of item.
+ */
+public class STRTree_d<T> {
+
+    /**
+     * The default maximum number of children of a node.
+     */
+    public static final int DEFAULT_NODE_CAPACITY = 16;
+
+    /**
+     * The maximum number of children of a node.
+     */
+    final int nodeCapacity;
+
+    /**
+     * The items in the order they were added.
+     */
+    final ArrayList<T> items;
+
+    /**
+     * The bounds of the items in the order they were added. For item i these
+     * are xmin, ymin, xmax, ymax at 4 * i.
+     */
+    double[] bounds;
+
+    /**
+     * The number of items in the tree. Items from this index onwards have
+     * been added since the tree was built.
+     */
+    int nIndexed;
+
+    /**
+     * For each level of the tree from the leaves up, the children of the
+     * nodes. The children of node j are at j * nodeCapacity up to
+     * (j + 1) * nodeCapacity (or the end). At level 0 they are item indexes
+     * and otherwise they are indexes of nodes in the level below.
+     */
+    int[][] children;
+
+    /**
+     * For each level of the tree from the leaves up, the bounds of the nodes
+     * in the same layout as {@link #bounds}.
+     */
+    double[][] nodeBounds;
+
+    /**
+     * Create a new instance with {@link #DEFAULT_NODE_CAPACITY}.
+     */
+    public STRTree_d() {
+        this(DEFAULT_NODE_CAPACITY);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param nodeCapacity What {@link #nodeCapacity} is set to.
+     */
+    public STRTree_d(int nodeCapacity) {
+        this.nodeCapacity = Math.max(2, nodeCapacity);
+        this.items = new ArrayList<>();
+        this.bounds = new double[4 * 16];
+        this.nIndexed = 0;
+    }
+
+    /**
+     * @return The number of items.
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Adds an item.
+     *
+     * @param item The item.
+     * @param xmin The minimum x of the bounding box of the item.
+     * @param ymin The minimum y of the bounding box of the item.
+     * @param xmax The maximum x of the bounding box of the item.
+     * @param ymax The maximum y of the bounding box of the item.
+     */
+    public void add(T item, double xmin, double ymin, double xmax,
+            double ymax) {
+        int i = items.size();
+        if (4 * i + 4 > bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[4 * i] = xmin;
+        bounds[4 * i + 1] = ymin;
+        bounds[4 * i + 2] = xmax;
+        bounds[4 * i + 3] = ymax;
+        items.add(item);
+    }
+
+    /**
+     * Sets the bounding box of an item that has been added. The tree is
+     * rebuilt when next worth it, until then all the items are checked one
+     * by one.
+     *
+     * @param item The item.
+     * @param xmin The minimum x of the bounding box of the item.
+     * @param ymin The minimum y of the bounding box of the item.
+     * @param xmax The maximum x of the bounding box of the item.
+     * @param ymax The maximum y of the bounding box of the item.
+     * @return {@code true} if item was found.
+     */
+    public boolean update(T item, double xmin, double ymin, double xmax,
+            double ymax) {
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) == item) {
+                bounds[4 * i] = xmin;
+                bounds[4 * i + 1] = ymin;
+                bounds[4 * i + 2] = xmax;
+                bounds[4 * i + 3] = ymax;
+                nIndexed = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the items whose bounding boxes intersect the closed query box.
+     *
+     * @param xmin The minimum x of the query box.
+     * @param ymin The minimum y of the query box.
+     * @param xmax The maximum x of the query box.
+     * @param ymax The maximum y of the query box.
+     * @return The items in the order they were added.
+     */
+    public ArrayList<T> query(double xmin, double ymin, double xmax,
+            double ymax) {
+        BitSet found = query(xmin, ymin, xmax, ymax, new BitSet(items.size()));
+        ArrayList<T> r = new ArrayList<>(found.cardinality());
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            r.add(items.get(i));
+        }
+        return r;
+    }
+
+    /**
+     * Finds the items whose bounding boxes intersect the closed query box.
+     *
+     * @param xmin The minimum x of the query box.
+     * @param ymin The minimum y of the query box.
+     * @param xmax The maximum x of the query box.
+     * @param ymax The maximum y of the query box.
+     * @param found The bits for the indexes of the items found are set in
+     * this.
+     * @return found
+     */
+    public BitSet query(double xmin, double ymin, double xmax, double ymax,
+            BitSet found) {
+        int n = items.size();
+        if (n - nIndexed > Math.max(nodeCapacity, nIndexed / 4)) {
+            build();
+        }
+        // Search the tree.
+        if (nIndexed > 0) {
+            int top = children.length - 1;
+            int[] stackLevel = new int[64 * nodeCapacity];
+            int[] stackNode = new int[stackLevel.length];
+            int sp = 0;
+            for (int j = 0; j < nodeBounds[top].length / 4; j++) {
+                if (intersects(nodeBounds[top], j, xmin, ymin, xmax, ymax)) {
+                    stackLevel[sp] = top;
+                    stackNode[sp] = j;
+                    sp++;
+                }
+            }
+            while (sp > 0) {
+                sp--;
+                int level = stackLevel[sp];
+                int node = stackNode[sp];
+                int[] c = children[level];
+                int end = Math.min(c.length, (node + 1) * nodeCapacity);
+                for (int k = node * nodeCapacity; k < end; k++) {
+                    int child = c[k];
+                    if (level == 0) {
+                        if (intersects(bounds, child, xmin, ymin, xmax, ymax)) {
+                            found.set(child);
+                        }
+                    } else if (intersects(nodeBounds[level - 1], child, xmin,
+                            ymin, xmax, ymax)) {
+                        if (sp == stackLevel.length) {
+                            stackLevel = Arrays.copyOf(stackLevel, sp * 2);
+                            stackNode = Arrays.copyOf(stackNode, sp * 2);
+                        }
+                        stackLevel[sp] = level - 1;
+                        stackNode[sp] = child;
+                        sp++;
+                    }
+                }
+            }
+        }
+        // Check the items added since the tree was built.
+        for (int i = nIndexed; i < n; i++) {
+            if (intersects(bounds, i, xmin, ymin, xmax, ymax)) {
+                found.set(i);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return {@code true} if box i in b intersects the closed query box.
+     */
+    private static boolean intersects(double[] b, int i, double xmin,
+            double ymin, double xmax, double ymax) {
+        int o = 4 * i;
+        return b[o] <= xmax && b[o + 2] >= xmin && b[o + 1] <= ymax
+                && b[o + 3] >= ymin;
+    }
+
+    /**
+     * Builds the tree over all the items.
+     */
+    public void build() {
+        int n = items.size();
+        nIndexed = n;
+        ArrayList<int[]> cs = new ArrayList<>();
+        ArrayList<double[]> bs = new ArrayList<>();
+        double[] b = bounds;
+        int nb = n;
+        do {
+            int[] c = pack(b, nb);
+            int nn = (nb + nodeCapacity - 1) / nodeCapacity;
+            double[] nbs = new double[4 * nn];
+            for (int j = 0; j < nn; j++) {
+                int end = Math.min(nb, (j + 1) * nodeCapacity);
+                double x0 = Double.POSITIVE_INFINITY;
+                double y0 = Double.POSITIVE_INFINITY;
+                double x1 = Double.NEGATIVE_INFINITY;
+                double y1 = Double.NEGATIVE_INFINITY;
+                for (int k = j * nodeCapacity; k < end; k++) {
+                    int o = 4 * c[k];
+                    x0 = Math.min(x0, b[o]);
+                    y0 = Math.min(y0, b[o + 1]);
+                    x1 = Math.max(x1, b[o + 2]);
+                    y1 = Math.max(y1, b[o + 3]);
+                }
+                nbs[4 * j] = x0;
+                nbs[4 * j + 1] = y0;
+                nbs[4 * j + 2] = x1;
+                nbs[4 * j + 3] = y1;
+            }
+            cs.add(c);
+            bs.add(nbs);
+            b = nbs;
+            nb = nn;
+        } while (nb > nodeCapacity);
+        children = cs.toArray(int[][]::new);
+        nodeBounds = bs.toArray(double[][]::new);
+    }
+
+    /**
+     * Sets the tree to one built before over the same items in the same
+     * order, such as one read from a file.
+     *
+     * @param children What {@link #children} is set to.
+     * @param nodeBounds What {@link #nodeBounds} is set to.
+     */
+    void setTree(int[][] children, double[][] nodeBounds) {
+        this.children = children;
+        this.nodeBounds = nodeBounds;
+        nIndexed = items.size();
+    }
+
+    /**
+     * Orders boxes using STR: the boxes are sorted into vertical slices by
+     * the x of their centres and then each slice is sorted by the y of their
+     * centres, so that consecutive runs of {@link #nodeCapacity} boxes are
+     * close together.
+     *
+     * @param b The boxes in the layout of {@link #bounds}.
+     * @param n The number of boxes.
+     * @return The indexes of the boxes in STR order.
+     */
+    private int[] pack(double[] b, int n) {
+        int nLeaves = (n + nodeCapacity - 1) / nodeCapacity;
+        int nSlices = (int) Math.ceil(Math.sqrt(nLeaves));
+        int sliceSize = nSlices * nodeCapacity;
+        // Sort keys pack the centre coordinate as a float in the high bits
+        // and the index in the low bits so a primitive sort can be used. The
+        // reduced precision only affects how good the packing is.
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = key(b[4 * i] + b[4 * i + 2], i);
+        }
+        Arrays.sort(keys);
+        for (int s = 0; s < n; s += sliceSize) {
+            int end = Math.min(n, s + sliceSize);
+            for (int k = s; k < end; k++) {
+                int i = (int) keys[k];
+                keys[k] = key(b[4 * i + 1] + b[4 * i + 3], i);
+            }
+            Arrays.sort(keys, s, end);
+        }
+        int[] r = new int[n];
+        for (int k = 0; k < n; k++) {
+            r[k] = (int) keys[k];
+        }
+        return r;
+    }
+
+    /**
+     * @param v The value to sort by.
+     * @param i The index.
+     * @return A key that sorts in the order of v.
+     */
+    private static long key(double v, int i) {
+        int bits = Float.floatToIntBits((float) v);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return ((long) bits << 32) | (i & 0xffffffffL);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.util.Arrays;
+
+/**
+ * For filling polygons using an active edge table scanline algorithm.
+ *
+ * Coordinates are fractional pixel coordinates: x is the column and y is the
+ * row with row 0 at the bottom of the image. A pixel is filled if its centre
+ * is inside the polygon according to the even-odd rule, so rings for internal
+ * holes are simply passed in alongside the external ring. Crossings are
+ * calculated directly for each row rather than accumulated, so whether a
+ * pixel is filled does not depend on the clip rectangle of the raster.
+ *
+ * @author Andy Turner
+ */
+public class ScanlineFill_d {
+
+    /**
+     * Create a new instance.
+     */
+    public ScanlineFill_d() {
+    }
+
+    /**
+     * Fills the polygon defined by the rings into raster.
+     *
+     * @param xs The x (column) coordinates of each ring.
+     * @param ys The y (row) coordinates of each ring.
+     * @param raster The raster to fill into.
+     * @param rgb The colour to fill with.
+     */
+    public static void fill(double[][] xs, double[][] ys, Raster_d raster,
+            int rgb) {
+        // Count the edges.
+        int m = 0;
+        for (double[] x : xs) {
+            m += x.length;
+        }
+        if (m == 0) {
+            return;
+        }
+        // For each edge store the x and y of the lower end, the change in x
+        // per row and the first and last row indexes crossed.
+        double[] ex = new double[m];
+        double[] ey = new double[m];
+        double[] edx = new double[m];
+        int[] eEnd = new int[m];
+        int[] eStart = new int[m];
+        int minr = Integer.MAX_VALUE;
+        int maxr = Integer.MIN_VALUE;
+        int ne = 0;
+        for (int ring = 0; ring < xs.length; ring++) {
+            double[] x = xs[ring];
+            double[] y = ys[ring];
+            int n = x.length;
+            for (int i = 0; i < n; i++) {
+                int j = (i + 1) % n;
+                double x0 = x[i];
+                double y0 = y[i];
+                double x1 = x[j];
+                double y1 = y[j];
+                if (y0 == y1) {
+                    // Horizontal edges do not cross any pixel centre row.
+                    continue;
+                }
+                if (y0 > y1) {
+                    double t = x0;
+                    x0 = x1;
+                    x1 = t;
+                    t = y0;
+                    y0 = y1;
+                    y1 = t;
+                }
+                // Rows with centres in [y0, y1).
+                int rs = (int) Math.ceil(y0 - 0.5d);
+                int re = (int) Math.ceil(y1 - 0.5d) - 1;
+                if (rs < raster.minr) {
+                    rs = raster.minr;
+                }
+                if (re > raster.maxr) {
+                    re = raster.maxr;
+                }
+                if (rs > re) {
+                    continue;
+                }
+                double dxdy = (x1 - x0) / (y1 - y0);
+                ex[ne] = x0;
+                ey[ne] = y0;
+                edx[ne] = dxdy;
+                eStart[ne] = rs;
+                eEnd[ne] = re;
+                minr = Math.min(minr, rs);
+                maxr = Math.max(maxr, re);
+                ne++;
+            }
+        }
+        if (ne == 0) {
+            return;
+        }
+        // Bucket the edges by start row.
+        int nr = maxr - minr + 1;
+        int[] head = new int[nr];
+        Arrays.fill(head, -1);
+        int[] next = new int[ne];
+        for (int e = ne - 1; e >= 0; e--) {
+            int b = eStart[e] - minr;
+            next[e] = head[b];
+            head[b] = e;
+        }
+        // The active edge table and crossings.
+        int[] aet = new int[ne];
+        double[] cross = new double[ne];
+        int na = 0;
+        for (int r = minr; r <= maxr; r++) {
+            // Remove edges that have ended and add new ones.
+            int k = 0;
+            for (int a = 0; a < na; a++) {
+                int e = aet[a];
+                if (eEnd[e] >= r) {
+                    aet[k] = e;
+                    k++;
+                }
+            }
+            na = k;
+            for (int e = head[r - minr]; e != -1; e = next[e]) {
+                aet[na] = e;
+                na++;
+            }
+            // Calculate crossings.
+            for (int a = 0; a < na; a++) {
+                int e = aet[a];
+                cross[a] = ex[e] + ((r + 0.5d) - ey[e]) * edx[e];
+            }
+            Arrays.sort(cross, 0, na);
+            // Fill spans between pairs of crossings.
+            for (int a = 0; a + 1 < na; a += 2) {
+                int c0 = (int) Math.ceil(cross[a] - 0.5d);
+                int c1 = (int) Math.ceil(cross[a + 1] - 0.5d) - 1;
+                raster.setSpan(r, c0, c1, rgb);
+            }
+        }
+    }
+}
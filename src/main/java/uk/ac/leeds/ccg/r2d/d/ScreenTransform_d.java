@@ -0,0 +1,201 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Point_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Vector_d;
+
+/**
+ * An affine transform between world coordinates and fractional pixel
+ * coordinates for a window. The window has lower left corner p, a vector pqv
+ * the height of a row of pixels and a vector qrv the width of a column of
+ * pixels. Column 0 and row 0 are at p and rows increase towards the top of
+ * the window. The pixel (row, col) covers the fractional coordinates
+ * [col, col + 1) x [row, row + 1).
+ *
+ * Points outside the window map to fractional coordinates outside
+ * [0, ncols) x [0, nrows), including negative ones, rather than being
+ * reflected back in as they would be if distances were used.
+ *
+ * @author Andy Turner
+ */
+public class ScreenTransform_d {
+
+    /**
+     * The x coordinate of the lower left corner of the window.
+     */
+    public final double px;
+
+    /**
+     * The y coordinate of the lower left corner of the window.
+     */
+    public final double py;
+
+    /**
+     * The change in x and y for a change of one column.
+     */
+    public final double qrx, qry;
+
+    /**
+     * The change in x and y for a change of one row.
+     */
+    public final double pqx, pqy;
+
+    /**
+     * The coefficients of x and y for calculating fractional columns.
+     */
+    public final double cx, cy;
+
+    /**
+     * The coefficients of x and y for calculating fractional rows.
+     */
+    public final double rx, ry;
+
+    /**
+     * Create a new instance.
+     *
+     * @param p The lower left corner of the window.
+     * @param pqv The vector from the bottom to the top of a row of pixels.
+     * @param qrv The vector from the left to the right of a column of pixels.
+     */
+    public ScreenTransform_d(V2D_Point_d p, V2D_Vector_d pqv,
+            V2D_Vector_d qrv) {
+        this(p.getX(), p.getY(), pqv.dx, pqv.dy, qrv.dx, qrv.dy);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param px The x coordinate of the lower left corner of the window.
+     * @param py The y coordinate of the lower left corner of the window.
+     * @param pqx The change in x for a change of one row.
+     * @param pqy The change in y for a change of one row.
+     * @param qrx The change in x for a change of one column.
+     * @param qry The change in y for a change of one column.
+     */
+    public ScreenTransform_d(double px, double py, double pqx, double pqy,
+            double qrx, double qry) {
+        this.px = px;
+        this.py = py;
+        this.pqx = pqx;
+        this.pqy = pqy;
+        this.qrx = qrx;
+        this.qry = qry;
+        // Invert the matrix with columns (qrx, qry) and (pqx, pqy). For an
+        // axis aligned or rotated window the columns are orthogonal and this
+        // is the same as projecting onto each vector and dividing by its
+        // magnitude squared.
+        double det = qrx * pqy - pqx * qry;
+        this.cx = pqy / det;
+        this.cy = -pqx / det;
+        this.rx = -qry / det;
+        this.ry = qrx / det;
+    }
+
+    /**
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The fractional column index for (x, y).
+     */
+    public double getCol(double x, double y) {
+        return (x - px) * cx + (y - py) * cy;
+    }
+
+    /**
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The fractional row index for (x, y).
+     */
+    public double getRow(double x, double y) {
+        return (x - px) * rx + (y - py) * ry;
+    }
+
+    /**
+     * @param p The point.
+     * @return The fractional column index for p.
+     */
+    public double getCol(V2D_Point_d p) {
+        return getCol(p.getX(), p.getY());
+    }
+
+    /**
+     * @param p The point.
+     * @return The fractional row index for p.
+     */
+    public double getRow(V2D_Point_d p) {
+        return getRow(p.getX(), p.getY());
+    }
+
+    /**
+     * The inverse transform.
+     *
+     * @param col The fractional column index.
+     * @param row The fractional row index.
+     * @return The x coordinate for (col, row).
+     */
+    public double getX(double col, double row) {
+        return px + col * qrx + row * pqx;
+    }
+
+    /**
+     * The inverse transform.
+     *
+     * @param col The fractional column index.
+     * @param row The fractional row index.
+     * @return The y coordinate for (col, row).
+     */
+    public double getY(double col, double row) {
+        return py + col * qry + row * pqy;
+    }
+
+    /**
+     * Transforms all the points in pts.
+     *
+     * @param pts The points.
+     * @param cols Output for the fractional column indexes. The length must
+     * be at least that of pts.
+     * @param rows Output for the fractional row indexes. The length must be
+     * at least that of pts.
+     */
+    public void transform(V2D_Point_d[] pts, double[] cols, double[] rows) {
+        for (int i = 0; i < pts.length; i++) {
+            double dx = pts[i].getX() - px;
+            double dy = pts[i].getY() - py;
+            cols[i] = dx * cx + dy * cy;
+            rows[i] = dx * rx + dy * ry;
+        }
+    }
+
+    /**
+     * Transforms n coordinates from xs and ys starting at off.
+     *
+     * @param xs The x coordinates.
+     * @param ys The y coordinates.
+     * @param off The index of the first coordinate to transform.
+     * @param n The number of coordinates to transform.
+     * @param cols Output for the fractional column indexes from index 0.
+     * @param rows Output for the fractional row indexes from index 0.
+     */
+    public void transform(double[] xs, double[] ys, int off, int n,
+            double[] cols, double[] rows) {
+        for (int i = 0; i < n; i++) {
+            double dx = xs[off + i] - px;
+            double dy = ys[off + i] - py;
+            cols[i] = dx * cx + dy * cy;
+            rows[i] = dx * rx + dy * ry;
+        }
+    }
+}
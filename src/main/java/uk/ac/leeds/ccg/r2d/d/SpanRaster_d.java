@@ -0,0 +1,354 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import uk.ac.leeds.ccg.r2d.io.PNGRowWriter;
+
+/**
+ * A target for rasterizing into that stores each row as runs of a colour
+ * rather than as pixels. The runs (spans) of a row are in order of column,
+ * do not overlap and adjacent spans of the same colour are merged. Setting
+ * pixels overwrites what is there as for pixels, so the result is the same
+ * as rendering into pixels. Pixels not in any span are 0. {@link #pix} is
+ * null.
+ *
+ * Rows are resolved to pixels at the end with {@link #toPixels()},
+ * {@link #getRow(int, int[])} or {@link #write(PNGRowWriter)}. For scenes
+ * with long runs of a colour this takes much less memory than pixels. If
+ * there are few colours, rows can be resolved to palette indexes from
+ * {@link #getPalette()} instead and written as an indexed colour PNG with
+ * {@link #write(PNGRowWriter, Palette_d)}.
+ *
+ * Rows are locked while set, so instances from
+ * {@link #clip(int, int, int, int)} can be used concurrently.
+ *
+ * @author Andy Turner
+ */
+public class SpanRaster_d extends Raster_d {
+
+    /**
+     * The spans of a row.
+     */
+    static final class Row {
+
+        /**
+         * The number of spans.
+         */
+        int n;
+
+        /**
+         * The first and last columns and the colours of the spans. These
+         * are null until a span is set.
+         */
+        int[] start, end, colour;
+
+        /**
+         * Sets the pixels from column c0 to column c1 inclusive to rgb.
+         */
+        synchronized void set(int c0, int c1, int rgb) {
+            if (start == null) {
+                start = new int[4];
+                end = new int[4];
+                colour = new int[4];
+            }
+            // The spans i to j - 1 overlap c0 to c1.
+            int i = firstEndAtOrAfter(c0);
+            int j = i;
+            while (j < n && start[j] <= c1) {
+                j++;
+            }
+            int s = c0;
+            int e = c1;
+            boolean left = false;
+            boolean right = false;
+            int ls = 0, lc = 0, re = 0, rc = 0;
+            if (i < j && start[i] < c0) {
+                if (colour[i] == rgb) {
+                    s = start[i];
+                } else {
+                    left = true;
+                    ls = start[i];
+                    lc = colour[i];
+                }
+            }
+            if (i < j && end[j - 1] > c1) {
+                if (colour[j - 1] == rgb) {
+                    e = end[j - 1];
+                } else {
+                    right = true;
+                    re = end[j - 1];
+                    rc = colour[j - 1];
+                }
+            }
+            // Merge with adjacent spans of the same colour.
+            if (!left && i > 0 && end[i - 1] == s - 1
+                    && colour[i - 1] == rgb) {
+                i--;
+                s = start[i];
+            }
+            if (!right && j < n && start[j] == e + 1 && colour[j] == rgb) {
+                e = end[j];
+                j++;
+            }
+            int k = 1 + (left ? 1 : 0) + (right ? 1 : 0);
+            replace(i, j, k);
+            int p = i;
+            if (left) {
+                put(p++, ls, s - 1, lc);
+            }
+            put(p++, s, e, rgb);
+            if (right) {
+                put(p, e + 1, re, rc);
+            }
+        }
+
+        /**
+         * @return The index of the first span with an end at or after c or
+         * {@link #n} if there is none.
+         */
+        private int firstEndAtOrAfter(int c) {
+            int lo = 0;
+            int hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (end[mid] < c) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Replaces the spans i to j - 1 with k spans to be put.
+         */
+        private void replace(int i, int j, int k) {
+            int m = n - (j - i) + k;
+            if (m > start.length) {
+                int cap = Math.max(m, start.length * 2);
+                start = Arrays.copyOf(start, cap);
+                end = Arrays.copyOf(end, cap);
+                colour = Arrays.copyOf(colour, cap);
+            }
+            if (j - i != k) {
+                System.arraycopy(start, j, start, i + k, n - j);
+                System.arraycopy(end, j, end, i + k, n - j);
+                System.arraycopy(colour, j, colour, i + k, n - j);
+            }
+            n = m;
+        }
+
+        private void put(int i, int s, int e, int rgb) {
+            start[i] = s;
+            end[i] = e;
+            colour[i] = rgb;
+        }
+
+        /**
+         * Fills dst from off with the pixels of the row.
+         */
+        synchronized void fill(int[] dst, int off, int ncols) {
+            Arrays.fill(dst, off, off + ncols, 0);
+            for (int i = 0; i < n; i++) {
+                Arrays.fill(dst, off + start[i], off + end[i] + 1, colour[i]);
+            }
+        }
+
+        /**
+         * Fills dst from off with the palette indexes of the row.
+         */
+        synchronized void fill(byte[] dst, int off, int ncols,
+                Palette_d palette) {
+            Arrays.fill(dst, off, off + ncols, (byte) 0);
+            for (int i = 0; i < n; i++) {
+                Arrays.fill(dst, off + start[i], off + end[i] + 1,
+                        (byte) palette.getIndex(colour[i]));
+            }
+        }
+    }
+
+    /**
+     * The rows from the top.
+     */
+    final Row[] rows;
+
+    /**
+     * Create a new instance for the whole image.
+     *
+     * @param nrows What {@link #nrows} is set to.
+     * @param ncols What {@link #ncols} is set to.
+     */
+    public SpanRaster_d(int nrows, int ncols) {
+        super(null, nrows, ncols);
+        rows = new Row[nrows];
+        for (int i = 0; i < nrows; i++) {
+            rows[i] = new Row();
+        }
+    }
+
+    /**
+     * Create a new instance sharing rows.
+     */
+    private SpanRaster_d(Row[] rows, int nrows, int ncols, int minr,
+            int maxr, int minc, int maxc, int top) {
+        super(null, nrows, ncols, minr, maxr, minc, maxc, top);
+        this.rows = rows;
+    }
+
+    @Override
+    public SpanRaster_d clip(int minr, int maxr, int minc, int maxc) {
+        return new SpanRaster_d(rows, nrows, ncols,
+                Math.max(this.minr, minr), Math.min(this.maxr, maxr),
+                Math.max(this.minc, minc), Math.min(this.maxc, maxc), top);
+    }
+
+    @Override
+    public void set(int r, int c, int rgb) {
+        if (r >= minr && r <= maxr && c >= minc && c <= maxc) {
+            rows[nrows - r - 1].set(c, c, rgb);
+        }
+    }
+
+    @Override
+    public void setSpan(int r, int c0, int c1, int rgb) {
+        if (r < minr || r > maxr) {
+            return;
+        }
+        c0 = Math.max(c0, minc);
+        c1 = Math.min(c1, maxc);
+        if (c0 <= c1) {
+            rows[nrows - r - 1].set(c0, c1, rgb);
+        }
+    }
+
+    /**
+     * @return The number of spans.
+     */
+    public long getSpanCount() {
+        long s = 0L;
+        for (Row row : rows) {
+            s += row.n;
+        }
+        return s;
+    }
+
+    /**
+     * @return The approximate number of bytes used by the spans.
+     */
+    public long getBytes() {
+        long b = 0L;
+        for (Row row : rows) {
+            b += 32L;
+            if (row.start != null) {
+                b += 3L * (16L + 4L * row.start.length);
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Gets the pixels of a row.
+     *
+     * @param i The row counting from the top.
+     * @param dst The array to fill with {@link #ncols} pixels.
+     */
+    public void getRow(int i, int[] dst) {
+        rows[i].fill(dst, 0, ncols);
+    }
+
+    /**
+     * Gets the palette indexes of a row.
+     *
+     * @param i The row counting from the top.
+     * @param dst The array to fill with {@link #ncols} indexes.
+     * @param palette The palette, which must have all the colours of the
+     * spans and the background as colour 0. See {@link #getPalette()}.
+     */
+    public void getRow(int i, byte[] dst, Palette_d palette) {
+        rows[i].fill(dst, 0, ncols, palette);
+    }
+
+    /**
+     * @return A palette of transparent black for the background and the
+     * colours of the spans or null if there are more than
+     * {@link Palette_d#MAX_SIZE} colours.
+     */
+    public Palette_d getPalette() {
+        LinkedHashSet<Integer> s = new LinkedHashSet<>();
+        s.add(0);
+        for (Row row : rows) {
+            synchronized (row) {
+                for (int i = 0; i < row.n; i++) {
+                    s.add(row.colour[i]);
+                }
+            }
+            if (s.size() > Palette_d.MAX_SIZE) {
+                return null;
+            }
+        }
+        return new Palette_d(s.stream().mapToInt(Integer::intValue)
+                .toArray());
+    }
+
+    /**
+     * @return The pixels with row 0 at the top.
+     */
+    public int[] toPixels() {
+        if ((long) ncols * nrows > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException(ncols + "x" + nrows
+                    + " is too large for an array");
+        }
+        int[] r = new int[ncols * nrows];
+        for (int i = 0; i < nrows; i++) {
+            rows[i].fill(r, i * ncols, ncols);
+        }
+        return r;
+    }
+
+    /**
+     * Writes the rows from the top a row at a time.
+     *
+     * @param w The writer.
+     * @throws IOException If w cannot write.
+     */
+    public void write(PNGRowWriter w) throws IOException {
+        int[] row = new int[ncols];
+        for (int i = 0; i < nrows; i++) {
+            getRow(i, row);
+            w.write(row, 1);
+        }
+    }
+
+    /**
+     * Writes the palette indexes of the rows from the top a row at a time.
+     *
+     * @param w The writer of an indexed colour PNG with the colours of
+     * palette.
+     * @param palette The palette. See {@link #getPalette()}.
+     * @throws IOException If w cannot write.
+     */
+    public void write(PNGRowWriter w, Palette_d palette) throws IOException {
+        byte[] row = new byte[ncols];
+        for (int i = 0; i < nrows; i++) {
+            getRow(i, row, palette);
+            w.write(row, 1);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+/**
+ * For rasterizing line segments by walking the pixels they pass through.
+ *
+ * Coordinates are fractional pixel coordinates: x is the column and y is the
+ * row with row 0 at the bottom of the image. Each pixel is the half open unit
+ * square [col, col + 1) x [row, row + 1). The segment is first clipped to the
+ * image and then walked from pixel to pixel by stepping across whichever of
+ * the next column or row boundary is nearest (a DDA). Where the segment passes
+ * exactly through a pixel corner both pixels either side of the corner are
+ * visited, so the walk is a conservative supercover: every pixel the segment
+ * touches is rendered and the cost is proportional to the number of them.
+ * The segment is always clipped to the whole image, not the clip rectangle
+ * of the raster, so the pixels visited do not depend on that.
+ *
+ * @author Andy Turner
+ */
+public class Supercover_d {
+
+    /**
+     * Create a new instance.
+     */
+    public Supercover_d() {
+    }
+
+    /**
+     * Renders the line segment from (x0, y0) to (x1, y1) into raster.
+     *
+     * @param x0 The x (column) coordinate of the start.
+     * @param y0 The y (row) coordinate of the start.
+     * @param x1 The x (column) coordinate of the end.
+     * @param y1 The y (row) coordinate of the end.
+     * @param raster The raster to render into.
+     * @param rgb The colour for the line.
+     */
+    public static void render(double x0, double y0, double x1, double y1,
+            Raster_d raster, int rgb) {
+        if (Math.max(x0, x1) < raster.minc
+                || Math.min(x0, x1) >= raster.maxc + 1
+                || Math.max(y0, y1) < raster.minr
+                || Math.min(y0, y1) >= raster.maxr + 1) {
+            return;
+        }
+        int nrows = raster.nrows;
+        int ncols = raster.ncols;
+        // Clip to the image (Liang-Barsky).
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double t0 = 0d;
+        double t1 = 1d;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x0, ncols - x0, y0, nrows - y0};
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0d) {
+                if (q[i] < 0d) {
+                    return;
+                }
+            } else {
+                double t = q[i] / p[i];
+                if (p[i] < 0d) {
+                    if (t > t1) {
+                        return;
+                    }
+                    if (t > t0) {
+                        t0 = t;
+                    }
+                } else {
+                    if (t < t0) {
+                        return;
+                    }
+                    if (t < t1) {
+                        t1 = t;
+                    }
+                }
+            }
+        }
+        double sx = x0 + t0 * dx;
+        double sy = y0 + t0 * dy;
+        double ex = x0 + t1 * dx;
+        double ey = y0 + t1 * dy;
+        int c = (int) Math.floor(sx);
+        int r = (int) Math.floor(sy);
+        int c1 = (int) Math.floor(ex);
+        int r1 = (int) Math.floor(ey);
+        // Step directions and parametric distances to the next boundaries.
+        int stepc = Integer.compare(c1, c);
+        int stepr = Integer.compare(r1, r);
+        double tMaxX;
+        double tDeltaX;
+        if (dx > 0d) {
+            tMaxX = (c + 1 - sx) / dx;
+            tDeltaX = 1d / dx;
+        } else if (dx < 0d) {
+            tMaxX = (sx - c) / -dx;
+            tDeltaX = -1d / dx;
+        } else {
+            tMaxX = Double.POSITIVE_INFINITY;
+            tDeltaX = 0d;
+        }
+        double tMaxY;
+        double tDeltaY;
+        if (dy > 0d) {
+            tMaxY = (r + 1 - sy) / dy;
+            tDeltaY = 1d / dy;
+        } else if (dy < 0d) {
+            tMaxY = (sy - r) / -dy;
+            tDeltaY = -1d / dy;
+        } else {
+            tMaxY = Double.POSITIVE_INFINITY;
+            tDeltaY = 0d;
+        }
+        int nc = Math.abs(c1 - c);
+        int nr = Math.abs(r1 - r);
+        raster.set(r, c, rgb);
+        // The walk ends in the pixel containing the end point regardless of
+        // rounding, because an axis is only stepped while it has steps left.
+        while (nc > 0 || nr > 0) {
+            if (nc > 0 && nr > 0 && tMaxX == tMaxY) {
+                // Through a corner: render both neighbouring pixels.
+                raster.set(r, c + stepc, rgb);
+                raster.set(r + stepr, c, rgb);
+                c += stepc;
+                r += stepr;
+                tMaxX += tDeltaX;
+                tMaxY += tDeltaY;
+                nc--;
+                nr--;
+            } else if (nr == 0 || (nc > 0 && tMaxX < tMaxY)) {
+                c += stepc;
+                tMaxX += tDeltaX;
+                nc--;
+            } else {
+                r += stepr;
+                tMaxY += tDeltaY;
+                nr--;
+            }
+            raster.set(r, c, rgb);
+        }
+    }
+}
@@ -0,0 +1,491 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import uk.ac.leeds.ccg.r2d.d.entities.PolygonNoInternalHoles_d;
+import uk.ac.leeds.ccg.r2d.d.entities.Polygon_d;
+import uk.ac.leeds.ccg.r2d.d.entities.Triangle_t;
+import uk.ac.leeds.ccg.r2d.io.IO;
+import uk.ac.leeds.ccg.v2d.core.d.V2D_Environment_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_AABB_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Point_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Rectangle_d;
+
+/**
+ * For rendering a universe into a pyramid of square tiles written as
+ * {@code z/x/y.png} under a directory, as used by slippy maps.
+ *
+ * The tiles are squares in the coordinates of the universe, so the scheme
+ * is equirectangular (like the EPSG:4326 tile matrix sets) rather than Web
+ * Mercator, which the affine transforms of {@link RenderImage_d} cannot
+ * render. At zoom 0 there are {@link #nx0} by {@link #ny0} tiles of
+ * {@link #span} by {@link #span} with the top left corner at
+ * ({@link #west}, {@link #north}) and each zoom level halves the span. Tile
+ * columns x increase eastwards and tile rows y increase southwards from 0.
+ *
+ * The universe is prepared once and the tiles are rendered concurrently
+ * each with its own {@link RenderImage_d}. Grids are not rendered.
+ *
+ * Rendering a tile creates geometry with {@link #env}. This only reads env:
+ * areas take an id from {@link V2D_Environment_d#getNextID()}, which only
+ * changes env if an id has been freed by
+ * {@link V2D_Environment_d#remove(int)}, and nothing here adds or removes
+ * shapes. So tiles are rendered concurrently without a lock provided env
+ * is not added to or removed from meanwhile.
+ *
+ * @author Andy Turner
+ */
+public class TilePyramid_d {
+
+    /**
+     * The maximum zoom level for {@link #isTile(int, int, int)}, so the
+     * numbers of tile columns and rows fit in an int.
+     */
+    public static final int MAX_ZOOM = 24;
+
+    /**
+     * The universe.
+     */
+    final Universe_d universe;
+
+    /**
+     * The environment.
+     */
+    final V2D_Environment_d env;
+
+    /**
+     * The x of the west edge of the tiles.
+     */
+    final double west;
+
+    /**
+     * The y of the north edge of the tiles.
+     */
+    final double north;
+
+    /**
+     * The width and height of tiles at zoom 0.
+     */
+    final double span;
+
+    /**
+     * The number of tile columns and rows at zoom 0.
+     */
+    final int nx0, ny0;
+
+    /**
+     * The width and height of tiles in pixels, typically 256 or 512.
+     */
+    final int tileSize;
+
+    /**
+     * The tolerance within which two vectors are regarded as equal.
+     */
+    final double epsilon;
+
+    /**
+     * If true tiles are rendered exactly, otherwise they are rasterized. See
+     * {@link RenderImage_d#exact}.
+     */
+    final boolean exact;
+
+    /**
+     * Create a new instance.
+     *
+     * @param universe What {@link #universe} is set to.
+     * @param env What {@link #env} is set to.
+     * @param west What {@link #west} is set to.
+     * @param north What {@link #north} is set to.
+     * @param span What {@link #span} is set to.
+     * @param nx0 What {@link #nx0} is set to.
+     * @param ny0 What {@link #ny0} is set to.
+     * @param tileSize What {@link #tileSize} is set to.
+     * @param epsilon What {@link #epsilon} is set to.
+     * @param exact What {@link #exact} is set to.
+     */
+    public TilePyramid_d(Universe_d universe, V2D_Environment_d env,
+            double west, double north, double span, int nx0, int ny0,
+            int tileSize, double epsilon, boolean exact) {
+        if (!universe.grids.isEmpty()) {
+            throw new IllegalArgumentException("Grids are not supported");
+        }
+        this.universe = universe;
+        this.env = env;
+        this.west = west;
+        this.north = north;
+        this.span = span;
+        this.nx0 = nx0;
+        this.ny0 = ny0;
+        this.tileSize = tileSize;
+        this.epsilon = epsilon;
+        this.exact = exact;
+    }
+
+    /**
+     * Create a new instance for longitude and latitude multiplied by scale
+     * with two tiles of 180 degrees at zoom 0 covering longitudes from west.
+     * GSHHG longitudes are from 0 to 360 degrees, so west would be 0 for
+     * these.
+     *
+     * @param universe What {@link #universe} is set to.
+     * @param env What {@link #env} is set to.
+     * @param scale The scale of the coordinates.
+     * @param west The west longitude in degrees.
+     * @param tileSize What {@link #tileSize} is set to.
+     * @param epsilon What {@link #epsilon} is set to.
+     * @param exact What {@link #exact} is set to.
+     */
+    public TilePyramid_d(Universe_d universe, V2D_Environment_d env,
+            int scale, double west, int tileSize, double epsilon,
+            boolean exact) {
+        this(universe, env, west * scale, 90d * scale, 180d * scale, 2, 1,
+                tileSize, epsilon, exact);
+    }
+
+    /**
+     * @param z The zoom level.
+     * @return The width and height of tiles at zoom z.
+     */
+    public double getSpan(int z) {
+        return span / (1L << z);
+    }
+
+    /**
+     * Computes the tiles to render at a zoom level.
+     *
+     * @param z The zoom level.
+     * @param envelope The envelope to render tiles over or null for all.
+     * @return The minimum and maximum tile columns and rows, which are empty
+     * if max &lt; min.
+     */
+    public int[] getTileRange(int z, V2D_AABB_d envelope) {
+        int nx = nx0 << z;
+        int ny = ny0 << z;
+        if (envelope == null) {
+            return new int[]{0, nx - 1, 0, ny - 1};
+        }
+        double s = getSpan(z);
+        return new int[]{
+            Math.max(0, (int) Math.floor((envelope.getXMin() - west) / s)),
+            Math.min(nx - 1, (int) Math.floor((envelope.getXMax() - west) / s)),
+            Math.max(0, (int) Math.floor((north - envelope.getYMax()) / s)),
+            Math.min(ny - 1, (int) Math.floor((north - envelope.getYMin()) / s))};
+    }
+
+    /**
+     * Computes the caches of the entities and builds the indexes of the
+     * universe, so that tiles can be rendered concurrently only reading
+     * them. This is as is done in {@link RenderImage_d#renderTiles}.
+     */
+    void prepare() {
+        universe.triangleIndex.build();
+        universe.pnihIndex.build();
+        universe.polygonIndex.build();
+        for (Triangle_t t : universe.triangles) {
+            t.triangle.getPQ();
+            t.triangle.getQR();
+            t.triangle.getRP();
+        }
+        for (PolygonNoInternalHoles_d p : universe.pnih) {
+            p.getEdges();
+            p.getXs();
+            p.getBounds();
+            if (exact) {
+                p.getEdgeIndex();
+            }
+        }
+        for (Polygon_d p : universe.polygons) {
+            p.getEdges();
+            p.getHoleEdges();
+            p.getXs();
+            p.getBounds();
+            if (exact) {
+                p.getEdgeIndex();
+            }
+        }
+        for (Polygons_d store : universe.polygonStores) {
+            store.query(0d, 0d, 0d, 0d);
+            if (exact) {
+                for (int i = 0; i < store.size(); i++) {
+                    store.getEdgeIndex(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders the tiles over envelope for zoom levels minZoom to maxZoom and
+     * writes them to dir. The number of tiles rendered and the tiles per
+     * second are printed for each zoom level and in total.
+     *
+     * @param dir The directory to write to.
+     * @param minZoom The minimum zoom level.
+     * @param maxZoom The maximum zoom level.
+     * @param envelope The envelope to render tiles over or null for all.
+     * @param nThreads The number of threads to render with.
+     * @return The number of tiles rendered.
+     * @throws IOException If a tile cannot be written.
+     */
+    public long run(Path dir, int minZoom, int maxZoom, V2D_AABB_d envelope,
+            int nThreads) throws IOException {
+        long t0 = System.nanoTime();
+        prepare();
+        long n = 0L;
+        ForkJoinPool pool = new ForkJoinPool(nThreads);
+        try {
+            for (int z = minZoom; z <= maxZoom; z++) {
+                long t1 = System.nanoTime();
+                long nz = run(pool, nThreads, dir, z, envelope);
+                n += nz;
+                report("Zoom " + z, nz, System.nanoTime() - t1);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        report("Total", n, System.nanoTime() - t0);
+        return n;
+    }
+
+    /**
+     * Prints the number of tiles and tiles per second.
+     */
+    private static void report(String s, long n, long nanos) {
+        double seconds = nanos / 1e9d;
+        System.out.println(s + ": " + n + " tiles in "
+                + String.format("%.3f", seconds) + " s ("
+                + String.format("%.1f", n / Math.max(seconds, 1e-9d))
+                + " tiles/s)");
+    }
+
+    /**
+     * Renders the tiles of zoom level z.
+     *
+     * @return The number of tiles rendered.
+     */
+    private long run(ForkJoinPool pool, int nThreads, Path dir, int z,
+            V2D_AABB_d envelope) throws IOException {
+        int[] r = getTileRange(z, envelope);
+        int nx = r[1] - r[0] + 1;
+        int ny = r[3] - r[2] + 1;
+        if (nx <= 0 || ny <= 0) {
+            return 0L;
+        }
+        long nt = (long) nx * ny;
+        for (int x = r[0]; x <= r[1]; x++) {
+            Files.createDirectories(getPath(dir, z, x, 0).getParent());
+        }
+        // Workers claim tiles in row major order so each renders a run of
+        // neighbouring tiles.
+        AtomicLong next = new AtomicLong();
+        ArrayList<Callable<Long>> tasks = new ArrayList<>(nThreads);
+        for (int t = 0; t < nThreads; t++) {
+            tasks.add(() -> {
+                long count = 0L;
+                for (long i = next.getAndIncrement(); i < nt;
+                        i = next.getAndIncrement()) {
+                    int y = r[2] + (int) (i / nx);
+                    int x = r[0] + (int) (i % nx);
+                    int[] pix = render(z, x, y);
+                    write(pix, getPath(dir, z, x, y));
+                    count++;
+                }
+                return count;
+            });
+        }
+        long n = 0L;
+        try {
+            for (Future<Long> f : pool.invokeAll(tasks)) {
+                n += f.get();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        return n;
+    }
+
+    /**
+     * @param dir The directory of the pyramid.
+     * @param z The zoom level.
+     * @param x The tile column.
+     * @param y The tile row.
+     * @return The path of the tile.
+     */
+    public static Path getPath(Path dir, int z, int x, int y) {
+        return Paths.get(dir.toString(), Integer.toString(z),
+                Integer.toString(x), y + ".png");
+    }
+
+    /**
+     * @param z The zoom level.
+     * @param x The tile column.
+     * @param y The tile row.
+     * @return {@code true} if the tile is in the pyramid up to
+     * {@link #MAX_ZOOM}.
+     */
+    public boolean isTile(int z, int x, int y) {
+        return z >= 0 && z <= MAX_ZOOM && x >= 0 && y >= 0
+                && x < (nx0 << z) && y < (ny0 << z);
+    }
+
+    /**
+     * @param z The zoom level.
+     * @param x The tile column.
+     * @param y The tile row.
+     * @return The bounds of the tile: xmin, ymin, xmax, ymax.
+     */
+    public double[] getBounds(int z, int x, int y) {
+        double s = getSpan(z);
+        return new double[]{west + x * s, north - (y + 1) * s,
+            west + (x + 1) * s, north - y * s};
+    }
+
+    /**
+     * @param dataset The name of the dataset.
+     * @param style The name of the style.
+     * @param z The zoom level.
+     * @param x The tile column.
+     * @param y The tile row.
+     * @return A key for the tile in a {@link RenderCache_d}.
+     */
+    public RenderCache_d.Key getKey(String dataset, String style, int z,
+            int x, int y) {
+        double[] b = getBounds(z, x, y);
+        return new RenderCache_d.Key(dataset, b[0], b[1], b[2], b[3],
+                tileSize, tileSize, style,
+                RenderCache_d.Key.TRIANGLES
+                | RenderCache_d.Key.POLYGONS_NO_INTERNAL_HOLES
+                | RenderCache_d.Key.POLYGONS
+                | (exact ? RenderCache_d.Key.EXACT : 0));
+    }
+
+    /**
+     * Renders a tile.
+     *
+     * @param z The zoom level.
+     * @param x The tile column.
+     * @param y The tile row.
+     * @return The ARGB pixels of the tile in rows from the top.
+     */
+    public int[] render(int z, int x, int y) {
+        double[] b = getBounds(z, x, y);
+        V2D_Rectangle_d window = new V2D_Rectangle_d(
+                new V2D_Point_d(env, b[0], b[1]),
+                new V2D_Point_d(env, b[0], b[3]),
+                new V2D_Point_d(env, b[2], b[3]),
+                new V2D_Point_d(env, b[2], b[1]));
+        RenderImage_d ri = new RenderImage_d(universe, env, window, tileSize,
+                tileSize, epsilon, false, null, new ArrayList<>(), true, false,
+                true, true, exact, 1);
+        return ri.render();
+    }
+
+    /**
+     * Writes pixels as a PNG.
+     *
+     * @param pix The ARGB pixels of a tile.
+     * @param p The path to write to.
+     * @throws IOException If p cannot be written.
+     */
+    void write(int[] pix, Path p) throws IOException {
+        ImageIO.write(getImage(pix), "png", p.toFile());
+    }
+
+    /**
+     * Encodes pixels as a PNG.
+     *
+     * @param pix The ARGB pixels of a tile.
+     * @return The bytes of the PNG.
+     * @throws IOException If encoding fails.
+     */
+    public byte[] toPNG(int[] pix) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(getImage(pix), "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param pix The ARGB pixels of a tile.
+     * @return An image backed by pix.
+     */
+    BufferedImage getImage(int[] pix) {
+        return IO.toImage(pix, tileSize, tileSize);
+    }
+
+    /**
+     * Renders a pyramid of GSHHG tiles.
+     *
+     * @param args The arguments:
+     * <ul>
+     * <li>args[0] "tiles"</li>
+     * <li>args[1] path to the data directory</li>
+     * <li>args[2] the filename for the gshhs data set ("gshhs_c", "gshhs_l,
+     * "gshhs_i", "gshhs_h", "gshhs_f")</li>
+     * <li>args[3] the maximum zoom level</li>
+     * <li>args[4] the tile size (256 or 512)</li>
+     * </ul>
+     */
+    public static void main(String[] args) {
+        String directory = args.length > 1 ? args[1] : ".";
+        String gshhs_name = args.length > 2 ? args[2] : "gshhs_c";
+        int maxZoom = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        int tileSize = args.length > 4 ? Integer.parseInt(args[4]) : 256;
+        double epsilon = 1d / 10000d;
+        int scale = 1;
+        V2D_Environment_d env = new V2D_Environment_d(epsilon);
+        Universe_d universe = new Universe_d(new V2D_AABB_d(env, 0d, 0d));
+        long t0 = System.nanoTime();
+        try {
+            RenderImage_d.addPolygons3(universe, env,
+                    Paths.get(directory, "data", "input"), gshhs_name, scale,
+                    null);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Loaded " + universe.polygonStores.get(0).size()
+                + " polygons in " + (System.nanoTime() - t0) / 1000000L
+                + " ms");
+        Path dir = Paths.get(directory, "data", "output", "d", "tiles",
+                gshhs_name + "_" + tileSize);
+        TilePyramid_d tp = new TilePyramid_d(universe, env, scale, 0d,
+                tileSize, epsilon, false);
+        try {
+            tp.run(dir, 0, maxZoom, null,
+                    Runtime.getRuntime().availableProcessors());
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
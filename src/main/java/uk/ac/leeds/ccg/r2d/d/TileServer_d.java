@@ -0,0 +1,372 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import uk.ac.leeds.ccg.v2d.core.d.V2D_Environment_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_AABB_d;
+
+/**
+ * An HTTP server of PNG tiles at {@code /z/x/y.png} rendered on request
+ * from a universe held in memory by a {@link TilePyramid_d}.
+ *
+ * Each request is handled on its own virtual thread. Rendering is CPU bound,
+ * so at most {@link #maxRenders} tiles are rendered and encoded at once and
+ * other requests wait for a permit. Concurrent requests for the same tile
+ * are coalesced so that the tile is rendered once and all of them are sent
+ * the same bytes. If a {@link RenderCache_d} is given, rendered pixels are
+ * cached in it and only encoded on a hit.
+ *
+ * @author Andy Turner
+ */
+public class TileServer_d {
+
+    /**
+     * The tiles.
+     */
+    final TilePyramid_d pyramid;
+
+    /**
+     * For caching rendered pixels or null.
+     */
+    final RenderCache_d cache;
+
+    /**
+     * The name of the dataset for keys in {@link #cache}.
+     */
+    final String dataset;
+
+    /**
+     * The maximum number of tiles rendered at once.
+     */
+    final int maxRenders;
+
+    /**
+     * For bounding the number of tiles rendered at once.
+     */
+    final Semaphore permits;
+
+    /**
+     * The PNG bytes of tiles being rendered keyed by path.
+     */
+    final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight;
+
+    /**
+     * The number of tile requests.
+     */
+    final AtomicLong requests = new AtomicLong();
+
+    /**
+     * The number of tiles rendered.
+     */
+    final AtomicLong renders = new AtomicLong();
+
+    /**
+     * The number of tile requests that waited on the render of another.
+     */
+    final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * The server or null if not started.
+     */
+    HttpServer server;
+
+    /**
+     * The executor of the server or null if not started.
+     */
+    ExecutorService executor;
+
+    /**
+     * Create a new instance.
+     *
+     * @param pyramid What {@link #pyramid} is set to.
+     * @param cache What {@link #cache} is set to.
+     * @param dataset What {@link #dataset} is set to.
+     * @param maxRenders What {@link #maxRenders} is set to.
+     */
+    public TileServer_d(TilePyramid_d pyramid, RenderCache_d cache,
+            String dataset, int maxRenders) {
+        this.pyramid = pyramid;
+        this.cache = cache;
+        this.dataset = dataset;
+        this.maxRenders = maxRenders;
+        this.permits = new Semaphore(maxRenders);
+        this.inFlight = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Prepares {@link #pyramid} and starts serving.
+     *
+     * @param address The address to listen on.
+     * @throws IOException If the server cannot be created.
+     */
+    public synchronized void start(InetSocketAddress address)
+            throws IOException {
+        pyramid.prepare();
+        server = HttpServer.create(address, 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Stops serving.
+     *
+     * @param delay The maximum time in seconds to wait for exchanges to
+     * finish.
+     */
+    public synchronized void stop(int delay) {
+        if (server != null) {
+            server.stop(delay);
+            executor.shutdown();
+            server = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * @return The address listened on or null if not started.
+     */
+    public synchronized InetSocketAddress getAddress() {
+        return server == null ? null : server.getAddress();
+    }
+
+    /**
+     * Handles a request. Only GET and HEAD of {@code /z/x/y.png} for tiles in
+     * {@link #pyramid} are served, otherwise 404 or 405 is sent.
+     *
+     * @param ex The exchange.
+     * @throws IOException If the response cannot be sent.
+     */
+    void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            String method = ex.getRequestMethod();
+            boolean head = method.equalsIgnoreCase("HEAD");
+            if (!head && !method.equalsIgnoreCase("GET")) {
+                ex.getResponseHeaders().set("Allow", "GET, HEAD");
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            int[] zxy = parse(ex.getRequestURI().getPath());
+            if (zxy == null || !pyramid.isTile(zxy[0], zxy[1], zxy[2])) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            requests.incrementAndGet();
+            byte[] png;
+            try {
+                png = getPNG(zxy[0], zxy[1], zxy[2]);
+            } catch (RuntimeException e) {
+                System.err.println(e.getMessage());
+                ex.sendResponseHeaders(500, -1);
+                return;
+            }
+            ex.getResponseHeaders().set("Content-Type", "image/png");
+            if (head) {
+                ex.sendResponseHeaders(200, -1);
+                return;
+            }
+            ex.sendResponseHeaders(200, png.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(png);
+            }
+        }
+    }
+
+    /**
+     * Parses a path of the form {@code /z/x/y.png}.
+     *
+     * @param path The path.
+     * @return z, x and y or null if path is not of the form.
+     */
+    static int[] parse(String path) {
+        if (path == null || !path.startsWith("/") || !path.endsWith(".png")) {
+            return null;
+        }
+        String[] parts = path.substring(1, path.length() - 4).split("/", -1);
+        if (parts.length != 3) {
+            return null;
+        }
+        int[] r = new int[3];
+        try {
+            for (int i = 0; i < 3; i++) {
+                r[i] = Integer.parseInt(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return r;
+    }
+
+    /**
+     * Gets the PNG bytes of a tile. If the tile is already being rendered for
+     * another request this waits for that, otherwise it renders the tile.
+     *
+     * @param z The zoom level.
+     * @param x The tile column.
+     * @param y The tile row.
+     * @return The PNG bytes of the tile.
+     */
+    public byte[] getPNG(int z, int x, int y) {
+        String k = z + "/" + x + "/" + y;
+        CompletableFuture<byte[]> f = new CompletableFuture<>();
+        CompletableFuture<byte[]> other = inFlight.putIfAbsent(k, f);
+        if (other != null) {
+            coalesced.incrementAndGet();
+            try {
+                return other.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        try {
+            byte[] png = renderPNG(z, x, y);
+            f.complete(png);
+            return png;
+        } catch (RuntimeException e) {
+            f.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(k, f);
+        }
+    }
+
+    /**
+     * Renders and encodes a tile holding a permit.
+     */
+    private byte[] renderPNG(int z, int x, int y) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        try {
+            int[] pix = null;
+            RenderCache_d.Key key = null;
+            if (cache != null) {
+                key = pyramid.getKey(dataset, "default", z, x, y);
+                pix = cache.get(key);
+            }
+            if (pix == null) {
+                pix = pyramid.render(z, x, y);
+                renders.incrementAndGet();
+                if (cache != null) {
+                    cache.put(key, pix);
+                }
+            }
+            return pyramid.toPNG(pix);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return The number of tile requests.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return The number of tiles rendered.
+     */
+    public long getRenders() {
+        return renders.get();
+    }
+
+    /**
+     * @return The number of tile requests that waited on the render of
+     * another.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TileServer_d(requests=" + requests + ", renders=" + renders
+                + ", coalesced=" + coalesced + ", maxRenders=" + maxRenders
+                + ")";
+    }
+
+    /**
+     * Serves GSHHG tiles.
+     *
+     * @param args The arguments:
+     * <ul>
+     * <li>args[0] "serve"</li>
+     * <li>args[1] path to the data directory</li>
+     * <li>args[2] the filename for the gshhs data set ("gshhs_c", "gshhs_l,
+     * "gshhs_i", "gshhs_h", "gshhs_f")</li>
+     * <li>args[3] the port</li>
+     * <li>args[4] the tile size (256 or 512)</li>
+     * </ul>
+     */
+    public static void main(String[] args) {
+        String directory = args.length > 1 ? args[1] : ".";
+        String gshhs_name = args.length > 2 ? args[2] : "gshhs_c";
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 8080;
+        int tileSize = args.length > 4 ? Integer.parseInt(args[4]) : 256;
+        double epsilon = 1d / 10000d;
+        int scale = 1;
+        V2D_Environment_d env = new V2D_Environment_d(epsilon);
+        Universe_d universe = new Universe_d(new V2D_AABB_d(env, 0d, 0d));
+        long t0 = System.nanoTime();
+        try {
+            RenderImage_d.addPolygons3(universe, env,
+                    Paths.get(directory, "data", "input"), gshhs_name, scale,
+                    null);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Loaded " + universe.polygonStores.get(0).size()
+                + " polygons in " + (System.nanoTime() - t0) / 1000000L
+                + " ms");
+        TilePyramid_d tp = new TilePyramid_d(universe, env, scale, 0d,
+                tileSize, epsilon, false);
+        RenderCache_d cache = new RenderCache_d(256L * 1024L * 1024L, null);
+        TileServer_d ts = new TileServer_d(tp, cache, gshhs_name,
+                Runtime.getRuntime().availableProcessors());
+        try {
+            ts.start(new InetSocketAddress(port));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Serving " + gshhs_name + " tiles at http://"
+                + "localhost:" + port + "/{z}/{x}/{y}.png");
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+/**
+ * For rasterizing triangles using edge functions (half-spaces).
+ *
+ * Coordinates are fractional pixel coordinates: x is the column and y is the
+ * row with row 0 at the bottom of the image. The pixels tested are in the
+ * columns floor(xmin) to floor(xmax) and the rows floor(ymin) to floor(ymax)
+ * inclusive, where xmin, xmax, ymin and ymax bound the triangle. So a
+ * triangle with xmin an integer renders nothing in column xmin - 1, and
+ * likewise for rows. A pixel tested is rendered if its closed unit square
+ * intersects the triangle.
+ *
+ * The edge functions are evaluated at the lower left corner of each pixel
+ * tested, the row terms once per row and the column terms with a
+ * multiply-add per pixel, so the result for a pixel does not depend on the
+ * clip rectangle of the raster. The maximum of an edge function over the
+ * four corners of a pixel is then an addition away, and the closed square
+ * intersects the triangle if the maximum of every edge function is non
+ * negative. The edges are rendered afterwards with {@link Supercover_d}.
+ *
+ * @author Andy Turner
+ */
+public class TriangleRaster_d {
+
+    /**
+     * Create a new instance.
+     */
+    public TriangleRaster_d() {
+    }
+
+    /**
+     * Renders the triangle PQR into raster. Pixels intersecting the triangle
+     * are given rgb and then pixels touching the edges PQ, QR and RP are
+     * given rgbPQ, rgbQR and rgbRP respectively in that order.
+     *
+     * @param x0 The x (column) coordinate of P.
+     * @param y0 The y (row) coordinate of P.
+     * @param x1 The x (column) coordinate of Q.
+     * @param y1 The y (row) coordinate of Q.
+     * @param x2 The x (column) coordinate of R.
+     * @param y2 The y (row) coordinate of R.
+     * @param raster The raster to render into.
+     * @param rgb The colour for the triangle.
+     * @param rgbPQ The colour for the PQ edge.
+     * @param rgbQR The colour for the QR edge.
+     * @param rgbRP The colour for the RP edge.
+     */
+    public static void render(double x0, double y0, double x1, double y1,
+            double x2, double y2, Raster_d raster, int rgb, int rgbPQ,
+            int rgbQR, int rgbRP) {
+        // Bounding box of pixels that may intersect.
+        double xmin = Math.min(x0, Math.min(x1, x2));
+        double xmax = Math.max(x0, Math.max(x1, x2));
+        double ymin = Math.min(y0, Math.min(y1, y2));
+        double ymax = Math.max(y0, Math.max(y1, y2));
+        int minc = Math.max(raster.minc, (int) Math.floor(xmin));
+        int maxc = Math.min(raster.maxc, (int) Math.floor(xmax));
+        int minr = Math.max(raster.minr, (int) Math.floor(ymin));
+        int maxr = Math.min(raster.maxr, (int) Math.floor(ymax));
+        // Edge function coefficients: E(x, y) = a * x + b * y + c.
+        double a0 = y1 - y0, b0 = x0 - x1, c0 = -(a0 * x0 + b0 * y0);
+        double a1 = y2 - y1, b1 = x1 - x2, c1 = -(a1 * x1 + b1 * y1);
+        double a2 = y0 - y2, b2 = x2 - x0, c2 = -(a2 * x2 + b2 * y2);
+        // Orient so that the inside is non negative.
+        double area = a0 * x2 + b0 * y2 + c0;
+        boolean fill = area != 0d;
+        if (area < 0d) {
+            a0 = -a0;
+            b0 = -b0;
+            c0 = -c0;
+            a1 = -a1;
+            b1 = -b1;
+            c1 = -c1;
+            a2 = -a2;
+            b2 = -b2;
+            c2 = -c2;
+        }
+        // Offsets from the lower left corner to the corner max.
+        double max0 = Math.max(a0, 0d) + Math.max(b0, 0d);
+        double max1 = Math.max(a1, 0d) + Math.max(b1, 0d);
+        double max2 = Math.max(a2, 0d) + Math.max(b2, 0d);
+        if (fill) {
+            for (int r = minr; r <= maxr; r++) {
+                double e0r = b0 * r + c0 + max0;
+                double e1r = b1 * r + c1 + max1;
+                double e2r = b2 * r + c2 + max2;
+                for (int c = minc; c <= maxc; c++) {
+                    if (a0 * c + e0r >= 0d && a1 * c + e1r >= 0d
+                            && a2 * c + e2r >= 0d) {
+                        raster.set(r, c, rgb);
+                    }
+                }
+            }
+        }
+        // Edges
+        Supercover_d.render(x0, y0, x1, y1, raster, rgbPQ);
+        Supercover_d.render(x1, y1, x2, y2, raster, rgbQR);
+        Supercover_d.render(x2, y2, x0, y0, raster, rgbRP);
+    }
+}
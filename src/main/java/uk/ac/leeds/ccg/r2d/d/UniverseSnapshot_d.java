@@ -0,0 +1,410 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.d;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import uk.ac.leeds.ccg.r2d.d.entities.PolygonNoInternalHoles_d;
+import uk.ac.leeds.ccg.r2d.d.entities.Polygon_d;
+import uk.ac.leeds.ccg.r2d.d.entities.Triangle_t;
+import uk.ac.leeds.ccg.v2d.core.d.V2D_Environment_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_AABB_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Point_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_PolygonNoInternalHoles_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Triangle_d;
+
+/**
+ * For writing a prepared {@link Universe_d} to a binary snapshot file and
+ * reading it back through a memory mapping, so a render can start without
+ * parsing and building the geometry again.
+ *
+ * The file is little endian. It starts with {@link #MAGIC},
+ * {@link #VERSION}, the flags and an int of padding then the envelope as
+ * four doubles (xmin, xmax, ymin, ymax). Then there are sections each
+ * preceded by its length in bytes as a long and padded to a multiple of 8
+ * bytes:
+ * <ol>
+ * <li>The triangles: the number n as an int and an int of padding, the
+ * coordinates in six columns of n doubles (px, py, qx, qy, rx, ry), then
+ * the colour and the PQ, QR and RP edge colours as 4 * n ints.</li>
+ * <li>The polygons with no internal holes in the layout of
+ * {@link OffHeapPolygonStore_d}.</li>
+ * <li>The polygons and the polygons of all the stores in the layout of
+ * {@link OffHeapPolygonStore_d}.</li>
+ * <li>If {@link #HULLS} is set, the convex hulls of these polygons as
+ * polygons with one ring in the same layout.</li>
+ * <li>If {@link #INDEXES} is set, the STR tree of these polygons: the number
+ * of levels as an int and an int of padding, then for each level the number
+ * of children and of node bounds as ints, the children as ints padded to 8
+ * bytes and the node bounds as doubles.</li>
+ * </ol>
+ *
+ * When read, the triangles and the polygons with no internal holes are
+ * added to the universe as entities, while the polygons are added as one
+ * {@link OffHeapPolygonStore_d} which is a view of the mapping, so their
+ * coordinates are not read until they are rendered. Ids are reassigned and
+ * grids are not included.
+ *
+ * @author Andy Turner
+ */
+public class UniverseSnapshot_d {
+
+    /**
+     * Identifies a snapshot file.
+     */
+    static final int MAGIC = 0x52324453;
+
+    /**
+     * The version of the file format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The flag for the convex hulls being included.
+     */
+    public static final int HULLS = 1;
+
+    /**
+     * The flag for the spatial index being included.
+     */
+    public static final int INDEXES = 2;
+
+    /**
+     * The number of bytes before the sections.
+     */
+    static final int PREAMBLE_BYTES = 16 + 32;
+
+    /**
+     * Create a new instance.
+     */
+    public UniverseSnapshot_d() {
+    }
+
+    /**
+     * Writes a snapshot of u to a temporary file which is then moved to p.
+     *
+     * @param u The universe.
+     * @param env The environment.
+     * @param p The path to write to.
+     * @param flags Any of {@link #HULLS} and {@link #INDEXES}.
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal, for computing the convex hulls.
+     * @throws IOException If p cannot be written.
+     */
+    public static void write(Universe_d u, V2D_Environment_d env, Path p,
+            int flags, double epsilon) throws IOException {
+        ArrayList<ByteBuffer> sections = new ArrayList<>();
+        sections.add(getTriangles(u.triangles));
+        PolygonStore_d pnih = new PolygonStore_d(env);
+        for (PolygonNoInternalHoles_d x : u.pnih) {
+            Color ce = x.getColorExternalEdge();
+            pnih.add(x.getXs(), x.getYs(), x.color, ce, ce);
+        }
+        sections.add(getPolygons(pnih));
+        PolygonStore_d all = new PolygonStore_d(env);
+        for (Polygon_d x : u.polygons) {
+            all.add(x.getXs(), x.getYs(), x.color, x.getColorExternalEdge(),
+                    x.getColorInternalEdge());
+        }
+        for (Polygons_d s : u.polygonStores) {
+            add(all, s);
+        }
+        sections.add(getPolygons(all));
+        if ((flags & HULLS) != 0) {
+            sections.add(getPolygons(getHulls(all, epsilon)));
+        }
+        if ((flags & INDEXES) != 0) {
+            all.index.build();
+            sections.add(getIndex(all.index));
+        }
+        ByteBuffer b = ByteBuffer.allocate(PREAMBLE_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(0);
+        b.putDouble(u.envelope.getXMin()).putDouble(u.envelope.getXMax())
+                .putDouble(u.envelope.getYMin()).putDouble(u.envelope.getYMax());
+        Path tmp = p.resolveSibling(p.getFileName().toString() + ".tmp");
+        try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeFully(fc, b.flip());
+            for (ByteBuffer s : sections) {
+                int length = s.capacity();
+                int pad = (8 - length % 8) % 8;
+                ByteBuffer l = ByteBuffer.allocate(8)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                writeFully(fc, l.putLong(length + pad).flip());
+                writeFully(fc, s.rewind());
+                writeFully(fc, ByteBuffer.allocate(pad));
+            }
+        }
+        Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Writes all of b to fc.
+     */
+    private static void writeFully(FileChannel fc, ByteBuffer b)
+            throws IOException {
+        while (b.hasRemaining()) {
+            fc.write(b);
+        }
+    }
+
+    /**
+     * Adds the polygons of s to store.
+     */
+    private static void add(PolygonStore_d store, Polygons_d s) {
+        for (int i = 0; i < s.size(); i++) {
+            int r0 = s.getRingStart(i);
+            int r1 = s.getRingStart(i + 1);
+            double[][] x = new double[r1 - r0][];
+            double[][] y = new double[r1 - r0][];
+            for (int r = r0; r < r1; r++) {
+                int p0 = s.getPointStart(r);
+                int p1 = s.getPointStart(r + 1);
+                x[r - r0] = new double[p1 - p0];
+                y[r - r0] = new double[p1 - p0];
+                for (int j = p0; j < p1; j++) {
+                    x[r - r0][j - p0] = s.getX(j);
+                    y[r - r0][j - p0] = s.getY(j);
+                }
+            }
+            store.add(x, y, new Color(s.getColor(i), true),
+                    new Color(s.getColorExternalEdge(i), true),
+                    new Color(s.getColorInternalEdge(i), true));
+        }
+    }
+
+    /**
+     * @return The convex hulls of the polygons of s as polygons with one
+     * ring.
+     */
+    private static PolygonStore_d getHulls(PolygonStore_d s, double epsilon) {
+        PolygonStore_d r = new PolygonStore_d(s.env);
+        for (int i = 0; i < s.size(); i++) {
+            V2D_Point_d[] pts = s.getPolygon(i, epsilon)
+                    .getConvexArea(epsilon).getPointsArray();
+            double[][] x = new double[1][pts.length];
+            double[][] y = new double[1][pts.length];
+            for (int j = 0; j < pts.length; j++) {
+                x[0][j] = pts[j].getX();
+                y[0][j] = pts[j].getY();
+            }
+            r.add(x, y, Color.black, Color.black, Color.black);
+        }
+        return r;
+    }
+
+    /**
+     * @return The triangles section.
+     */
+    private static ByteBuffer getTriangles(ArrayList<Triangle_t> ts) {
+        int n = ts.size();
+        ByteBuffer b = allocate(8L + 48L * n + 16L * n);
+        b.putInt(n).putInt(0);
+        for (int c = 0; c < 6; c++) {
+            for (Triangle_t t : ts) {
+                V2D_Point_d pt = switch (c / 2) {
+                    case 0 -> t.triangle.getP();
+                    case 1 -> t.triangle.getQ();
+                    default -> t.triangle.getR();
+                };
+                b.putDouble(c % 2 == 0 ? pt.getX() : pt.getY());
+            }
+        }
+        for (Triangle_t t : ts) {
+            b.putInt(t.color.getRGB());
+            b.putInt(t.getColorPQ().getRGB());
+            b.putInt(t.getColorQR().getRGB());
+            b.putInt(t.getColorRP().getRGB());
+        }
+        return b;
+    }
+
+    /**
+     * @return A polygons section.
+     */
+    private static ByteBuffer getPolygons(Polygons_d s) {
+        ByteBuffer b = allocate(OffHeapPolygonStore_d.getSize(s));
+        OffHeapPolygonStore_d.put(s, b);
+        return b;
+    }
+
+    /**
+     * @return The index section.
+     */
+    private static ByteBuffer getIndex(STRTree_d<?> index) {
+        int[][] cs = index.children;
+        double[][] bs = index.nodeBounds;
+        long size = 8;
+        for (int l = 0; l < cs.length; l++) {
+            size += 8 + 4L * (cs[l].length + cs[l].length % 2)
+                    + 8L * bs[l].length;
+        }
+        ByteBuffer b = allocate(size);
+        b.putInt(cs.length).putInt(0);
+        for (int l = 0; l < cs.length; l++) {
+            b.putInt(cs[l].length).putInt(bs[l].length);
+            for (int c : cs[l]) {
+                b.putInt(c);
+            }
+            if (cs[l].length % 2 == 1) {
+                b.putInt(0);
+            }
+            for (double v : bs[l]) {
+                b.putDouble(v);
+            }
+        }
+        return b;
+    }
+
+    /**
+     * @return A little endian heap buffer.
+     */
+    private static ByteBuffer allocate(long size) {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Section too large");
+        }
+        return ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Maps a snapshot and creates a universe from it. The mapping remains
+     * valid after this returns.
+     *
+     * @param env The environment.
+     * @param p The path of the snapshot.
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal, for creating the polygons with no internal holes.
+     * @return A new universe.
+     * @throws IOException If p cannot be read or is not a snapshot.
+     */
+    public static Universe_d read(V2D_Environment_d env, Path p,
+            double epsilon) throws IOException {
+        ByteBuffer b;
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = fc.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map " + p);
+            }
+            b = fc.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        try {
+            if (b.capacity() < PREAMBLE_BYTES || b.getInt(0) != MAGIC) {
+                throw new IOException("Not a snapshot " + p);
+            }
+            if (b.getInt(4) != VERSION) {
+                throw new IOException("Unsupported snapshot version "
+                        + b.getInt(4) + " " + p);
+            }
+            int flags = b.getInt(8);
+            Universe_d u = new Universe_d(new V2D_AABB_d(env, b.getDouble(16),
+                    b.getDouble(24), b.getDouble(32), b.getDouble(40)));
+            b.position(PREAMBLE_BYTES);
+            readTriangles(u, env, section(b));
+            OffHeapPolygonStore_d pnih = new OffHeapPolygonStore_d(env,
+                    section(b));
+            for (int i = 0; i < pnih.size(); i++) {
+                PolygonNoInternalHoles_d x = u.addPolygonNoInternalHoles(
+                        new V2D_PolygonNoInternalHoles_d(
+                                pnih.getPoints(pnih.getRingStart(i)),
+                                epsilon));
+                x.color = new Color(pnih.getColor(i), true);
+                x.colorEdge = new Color(pnih.getColorExternalEdge(i), true);
+                x.setColorExternalEdge(x.colorEdge);
+            }
+            OffHeapPolygonStore_d polygons = new OffHeapPolygonStore_d(env,
+                    section(b));
+            if ((flags & HULLS) != 0) {
+                polygons.setHulls(new OffHeapPolygonStore_d(env, section(b)));
+            }
+            if ((flags & INDEXES) != 0) {
+                readIndex(polygons.index, section(b));
+            }
+            u.addPolygonStore(polygons);
+            return u;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt snapshot " + p + " "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The next section of b which is moved past it.
+     */
+    private static ByteBuffer section(ByteBuffer b) {
+        long length = b.getLong();
+        if (length < 0 || length > b.remaining()) {
+            throw new IllegalArgumentException("Truncated section");
+        }
+        ByteBuffer r = b.slice(b.position(), (int) length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        b.position(b.position() + (int) length);
+        return r;
+    }
+
+    /**
+     * Adds the triangles in b to u.
+     */
+    private static void readTriangles(Universe_d u, V2D_Environment_d env,
+            ByteBuffer b) {
+        int n = b.getInt(0);
+        int c = 8 + 48 * n;
+        for (int i = 0; i < n; i++) {
+            int o = 8 + 8 * i;
+            V2D_Triangle_d t = new V2D_Triangle_d(
+                    new V2D_Point_d(env, b.getDouble(o),
+                            b.getDouble(o + 8 * n)),
+                    new V2D_Point_d(env, b.getDouble(o + 16 * n),
+                            b.getDouble(o + 24 * n)),
+                    new V2D_Point_d(env, b.getDouble(o + 32 * n),
+                            b.getDouble(o + 40 * n)));
+            int k = c + 16 * i;
+            u.addTriangle(t, new Color(b.getInt(k), true),
+                    new Color(b.getInt(k + 4), true),
+                    new Color(b.getInt(k + 8), true),
+                    new Color(b.getInt(k + 12), true));
+        }
+    }
+
+    /**
+     * Sets the tree of index from b.
+     */
+    private static void readIndex(STRTree_d<?> index, ByteBuffer b) {
+        int nLevels = b.getInt();
+        b.getInt();
+        int[][] cs = new int[nLevels][];
+        double[][] bs = new double[nLevels][];
+        for (int l = 0; l < nLevels; l++) {
+            cs[l] = new int[b.getInt()];
+            bs[l] = new double[b.getInt()];
+            b.asIntBuffer().get(cs[l]);
+            b.position(b.position() + 4 * (cs[l].length + cs[l].length % 2));
+            b.asDoubleBuffer().get(bs[l]);
+            b.position(b.position() + 8 * bs[l].length);
+        }
+        index.setTree(cs, bs);
+    }
+}
@@ -58,6 +58,27 @@ public class Universe_d {
      * The grids to render.
      */
     public ArrayList<Grids_GridDouble> grids;
+
+    /**
+     * Stores of polygons with packed coordinates. These are rendered after
+     * {@link #polygons}.
+     */
+    public ArrayList<Polygons_d> polygonStores;
+
+    /**
+     * A spatial index of {@link #triangles}.
+     */
+    STRTree_d<Triangle_t> triangleIndex;
+
+    /**
+     * A spatial index of {@link #pnih}.
+     */
+    STRTree_d<PolygonNoInternalHoles_d> pnihIndex;
+
+    /**
+     * A spatial index of {@link #polygons}.
+     */
+    STRTree_d<Polygon_d> polygonIndex;
         
     /**
      * long
@@ -75,6 +96,10 @@ public class Universe_d {
         pnih = new ArrayList<>();
         polygons = new ArrayList<>();
         grids = new ArrayList<>();
+        polygonStores = new ArrayList<>();
+        triangleIndex = new STRTree_d<>();
+        pnihIndex = new STRTree_d<>();
+        polygonIndex = new STRTree_d<>();
         this.envelope = envelope;
     }
 
@@ -95,7 +120,7 @@ public class Universe_d {
     public Triangle_t addTriangle(V2D_Triangle_d triangle){
         Triangle_t t = new Triangle_t(triangle, getNextID());
         triangles.add(t);
-        envelope = envelope.union(triangle.getAABB());
+        add(triangleIndex, t, triangle.getAABB());
         return t;
     }
     
@@ -109,7 +134,7 @@ public class Universe_d {
     public Triangle_t addTriangle(V2D_Triangle_d triangle, Color color, Color colorEdge){
         Triangle_t t = new Triangle_t(triangle, getNextID(), color, colorEdge);
         triangles.add(t);
-        envelope = envelope.union(triangle.getAABB());
+        add(triangleIndex, t, triangle.getAABB());
         return t;
     }
     
@@ -127,7 +152,7 @@ public class Universe_d {
         Triangle_t t = new Triangle_t(triangle, getNextID(), color, 
                 colorPQ, colorQR, colorRP);
         triangles.add(t);
-        envelope = envelope.union(triangle.getAABB());
+        add(triangleIndex, t, triangle.getAABB());
         return t;
     }
     
@@ -140,7 +165,8 @@ public class Universe_d {
             V2D_PolygonNoInternalHoles_d polygon){
         PolygonNoInternalHoles_d p = new PolygonNoInternalHoles_d(polygon, getNextID());
         pnih.add(p);
-        envelope = envelope.union(polygon.getAABB());
+        add(pnihIndex, p, polygon.getAABB());
+        p.setUniverse(this);
         return p;
     }
     
@@ -152,7 +178,8 @@ public class Universe_d {
     public Polygon_d addPolygon(V2D_Polygon_d polygon){
         Polygon_d t = new Polygon_d(polygon, getNextID());
         polygons.add(t);
-        envelope = envelope.union(polygon.getAABB());
+        add(polygonIndex, t, polygon.getAABB());
+        t.setUniverse(this);
         return t;
     }
     
@@ -166,7 +193,8 @@ public class Universe_d {
     public Polygon_d addPolygon(V2D_Polygon_d polygon, Color color, Color colorEdge){
         Polygon_d t = new Polygon_d(polygon, getNextID(), color, colorEdge);
         polygons.add(t);
-        envelope = envelope.union(polygon.getAABB());
+        add(polygonIndex, t, polygon.getAABB());
+        t.setUniverse(this);
         return t;
     }
     
@@ -183,10 +211,111 @@ public class Universe_d {
         Polygon_d t = new Polygon_d(polygon, getNextID(), color, 
                 colorInternalEdge, colorExternalEdge);
         polygons.add(t);
-        envelope = envelope.union(polygon.getAABB());
+        add(polygonIndex, t, polygon.getAABB());
+        t.setUniverse(this);
         return t;
     }
     
+    /**
+     * Adds the entity to the index and extends the envelope.
+     *
+     * @param index The index.
+     * @param entity The entity.
+     * @param aabb The AABB of the entity.
+     */
+    private <T> void add(STRTree_d<T> index, T entity, V2D_AABB_d aabb) {
+        index.add(entity, aabb.getXMin(), aabb.getYMin(), aabb.getXMax(),
+                aabb.getYMax());
+        envelope = envelope.union(aabb);
+    }
+
+    /**
+     * Updates the index and extends the envelope for the geometry of p
+     * having been set.
+     *
+     * @param p The polygon.
+     */
+    public void update(PolygonNoInternalHoles_d p) {
+        update(pnihIndex, p, p.getPolygon().getAABB());
+    }
+
+    /**
+     * Updates the index and extends the envelope for the geometry of p
+     * having been set.
+     *
+     * @param p The polygon.
+     */
+    public void update(Polygon_d p) {
+        update(polygonIndex, p, p.getPolygon().getAABB());
+    }
+
+    /**
+     * Updates the entity in the index and extends the envelope.
+     *
+     * @param index The index.
+     * @param entity The entity.
+     * @param aabb The AABB of the entity.
+     */
+    private <T> void update(STRTree_d<T> index, T entity, V2D_AABB_d aabb) {
+        if (index.update(entity, aabb.getXMin(), aabb.getYMin(),
+                aabb.getXMax(), aabb.getYMax())) {
+            envelope = envelope.union(aabb);
+        }
+    }
+
+    /**
+     * @param aabb The window.
+     * @return The triangles with an AABB intersecting aabb in the order they
+     * were added.
+     */
+    public ArrayList<Triangle_t> getTriangles(V2D_AABB_d aabb) {
+        return query(triangleIndex, aabb);
+    }
+
+    /**
+     * @param aabb The window.
+     * @return The polygons with no internal holes with an AABB intersecting
+     * aabb in the order they were added.
+     */
+    public ArrayList<PolygonNoInternalHoles_d> getPolygonsNoInternalHoles(
+            V2D_AABB_d aabb) {
+        return query(pnihIndex, aabb);
+    }
+
+    /**
+     * @param aabb The window.
+     * @return The polygons with an AABB intersecting aabb in the order they
+     * were added.
+     */
+    public ArrayList<Polygon_d> getPolygons(V2D_AABB_d aabb) {
+        return query(polygonIndex, aabb);
+    }
+
+    /**
+     * @param index The index.
+     * @param aabb The window.
+     * @return The entities in index with an AABB intersecting aabb.
+     */
+    private static <T> ArrayList<T> query(STRTree_d<T> index,
+            V2D_AABB_d aabb) {
+        return index.query(aabb.getXMin(), aabb.getYMin(), aabb.getXMax(),
+                aabb.getYMax());
+    }
+
+    /**
+     * Adds the store of polygons and extends the envelope. Polygons should
+     * not be added to the store afterwards.
+     *
+     * @param store The store to add.
+     */
+    public void addPolygonStore(Polygons_d store) {
+        polygonStores.add(store);
+        V2D_AABB_d aabb = store.getEnvelope();
+        if (aabb != null) {
+            envelope = envelope.union(aabb);
+        }
+    }
+
     /**
      * Adds the grid.
      * @param grid The grid to add. 
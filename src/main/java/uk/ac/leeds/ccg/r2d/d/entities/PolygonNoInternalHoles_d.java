@@ -5,8 +5,15 @@
 package uk.ac.leeds.ccg.r2d.d.entities;
 
 import java.awt.Color;
+import java.util.HashMap;
 import uk.ac.leeds.ccg.data.id.Data_ID_long;
+import uk.ac.leeds.ccg.r2d.d.EdgeIndex_d;
+import uk.ac.leeds.ccg.r2d.d.Universe_d;
 import uk.ac.leeds.ccg.r2d.entities.PolygonNoInternalHolesEntity;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_AABB_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_ConvexArea_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_LineSegment_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Point_d;
 import uk.ac.leeds.ccg.v2d.geometry.d.V2D_PolygonNoInternalHoles_d;
 
 /**
@@ -20,8 +27,52 @@ public class PolygonNoInternalHoles_d extends PolygonNoInternalHolesEntity {
     /**
      * The polygon geometry
      */
-    public V2D_PolygonNoInternalHoles_d polygon;
+    private V2D_PolygonNoInternalHoles_d polygon;
     
+    /**
+     * The x and y coordinates of the points of {@link #polygon}. These and
+     * the other things derived from {@link #polygon} below are created when
+     * first needed and cleared by {@link #invalidate()} holding the lock of
+     * this, so they can be got from several threads.
+     */
+    transient double[][] xs, ys;
+
+    /**
+     * The coordinates of the edges of {@link #polygon}. For each edge these
+     * are the x and y of the start and the x and y of the end.
+     */
+    transient double[] edges;
+
+    /**
+     * The bounds of {@link #polygon}: xmin, ymin, xmax, ymax.
+     */
+    transient double[] bounds;
+
+    /**
+     * The convex hull of {@link #polygon} for {@link #convexAreaEpsilon}.
+     */
+    transient V2D_ConvexArea_d convexArea;
+
+    /**
+     * The epsilon {@link #convexArea} was created with.
+     */
+    transient double convexAreaEpsilon;
+
+    /**
+     * The points of {@link #convexArea}.
+     */
+    transient V2D_Point_d[] convexAreaPoints;
+
+    /**
+     * An index of the edges of {@link #polygon} for testing pixels.
+     */
+    transient EdgeIndex_d edgeIndex;
+
+    /**
+     * The universe this was added to or null.
+     */
+    private transient Universe_d universe;
+
     /**
      * Create a new instance.
      *
@@ -48,4 +99,187 @@ public class PolygonNoInternalHoles_d extends PolygonNoInternalHolesEntity {
         super(id, color, colorEdge);
         this.polygon = polygon;
     }
+
+    /**
+     * @return {@link #polygon}
+     */
+    public synchronized V2D_PolygonNoInternalHoles_d getPolygon() {
+        return polygon;
+    }
+
+    /**
+     * Sets {@link #polygon}, clears everything derived from it and updates
+     * the index of the universe this was added to.
+     *
+     * @param polygon What {@link #polygon} is set to.
+     */
+    public void setPolygon(V2D_PolygonNoInternalHoles_d polygon) {
+        synchronized (this) {
+            this.polygon = polygon;
+            invalidate();
+        }
+        if (universe != null) {
+            universe.update(this);
+        }
+    }
+
+    /**
+     * For {@link Universe_d} to set the universe this was added to so that
+     * {@link #setPolygon} updates its index.
+     *
+     * @param universe What {@link #universe} is set to.
+     */
+    public void setUniverse(Universe_d universe) {
+        this.universe = universe;
+    }
+
+    /**
+     * Clears everything derived from {@link #polygon}. This must be called
+     * if the geometry of {@link #polygon} is changed.
+     */
+    public synchronized void invalidate() {
+        xs = null;
+        ys = null;
+        edges = null;
+        bounds = null;
+        convexArea = null;
+        convexAreaPoints = null;
+        edgeIndex = null;
+    }
+
+    /**
+     * @return {@link #xs} initialising it first if it is null.
+     */
+    public synchronized double[][] getXs() {
+        if (xs == null) {
+            initRings();
+        }
+        return xs;
+    }
+
+    /**
+     * @return {@link #ys} initialising it first if it is null.
+     */
+    public synchronized double[][] getYs() {
+        if (ys == null) {
+            initRings();
+        }
+        return ys;
+    }
+
+    /**
+     * Initialises {@link #xs} and {@link #ys}.
+     */
+    private void initRings() {
+        double[][] x = new double[1][];
+        double[][] y = new double[1][];
+        setRing(polygon.getPointsArray(), x, y, 0);
+        ys = y;
+        xs = x;
+    }
+
+    /**
+     * @return {@link #edges} initialising it first if it is null.
+     */
+    public synchronized double[] getEdges() {
+        if (edges == null) {
+            edges = getEdges(polygon.getEdges());
+        }
+        return edges;
+    }
+
+    /**
+     * @return {@link #bounds} initialising it first if it is null.
+     */
+    public synchronized double[] getBounds() {
+        if (bounds == null) {
+            bounds = getBounds(polygon.getAABB());
+        }
+        return bounds;
+    }
+
+    /**
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal.
+     * @return {@link #convexArea} initialising it first if it is null or was
+     * created with a different epsilon.
+     */
+    public synchronized V2D_ConvexArea_d getConvexArea(double epsilon) {
+        if (convexArea == null || convexAreaEpsilon != epsilon) {
+            convexAreaPoints = null;
+            convexAreaEpsilon = epsilon;
+            convexArea = polygon.getConvexArea(epsilon);
+        }
+        return convexArea;
+    }
+
+    /**
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal.
+     * @return {@link #convexAreaPoints} initialising it first if it is null.
+     */
+    public synchronized V2D_Point_d[] getConvexAreaPoints(double epsilon) {
+        V2D_ConvexArea_d ch = getConvexArea(epsilon);
+        if (convexAreaPoints == null) {
+            convexAreaPoints = ch.getPointsArray();
+        }
+        return convexAreaPoints;
+    }
+
+    /**
+     * @return {@link #edgeIndex} initialising it first if it is null.
+     */
+    public synchronized EdgeIndex_d getEdgeIndex() {
+        if (edgeIndex == null) {
+            edgeIndex = new EdgeIndex_d(getXs(), getYs());
+        }
+        return edgeIndex;
+    }
+
+    /**
+     * Sets xs[i] and ys[i] to the coordinates of pts.
+     *
+     * @param pts The points of a ring.
+     * @param xs The x coordinates of rings.
+     * @param ys The y coordinates of rings.
+     * @param i The index of the ring to set.
+     */
+    static void setRing(V2D_Point_d[] pts, double[][] xs, double[][] ys,
+            int i) {
+        double[] x = new double[pts.length];
+        double[] y = new double[pts.length];
+        for (int j = 0; j < pts.length; j++) {
+            x[j] = pts[j].getX();
+            y[j] = pts[j].getY();
+        }
+        xs[i] = x;
+        ys[i] = y;
+    }
+
+    /**
+     * @param edges The edges.
+     * @return The coordinates of the edges in the layout of {@link #edges}.
+     */
+    static double[] getEdges(HashMap<Integer, V2D_LineSegment_d> edges) {
+        double[] r = new double[edges.size() * 4];
+        int i = 0;
+        for (V2D_LineSegment_d e : edges.values()) {
+            V2D_Point_d p = e.getP();
+            V2D_Point_d q = e.getQ();
+            r[i++] = p.getX();
+            r[i++] = p.getY();
+            r[i++] = q.getX();
+            r[i++] = q.getY();
+        }
+        return r;
+    }
+
+    /**
+     * @param aabb The AABB.
+     * @return The bounds of aabb in the layout of {@link #bounds}.
+     */
+    static double[] getBounds(V2D_AABB_d aabb) {
+        return new double[]{aabb.getXMin(), aabb.getYMin(), aabb.getXMax(),
+            aabb.getYMax()};
+    }
 }
@@ -17,8 +17,13 @@ package uk.ac.leeds.ccg.r2d.d.entities;
 
 import java.awt.Color;
 import uk.ac.leeds.ccg.data.id.Data_ID_long;
+import uk.ac.leeds.ccg.r2d.d.EdgeIndex_d;
+import uk.ac.leeds.ccg.r2d.d.Universe_d;
 import uk.ac.leeds.ccg.r2d.entities.PolygonEntity;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_ConvexArea_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Point_d;
 import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Polygon_d;
+import uk.ac.leeds.ccg.v2d.geometry.d.V2D_PolygonNoInternalHoles_d;
 
 /**
  * For representing a polygon entity.
@@ -32,8 +37,59 @@ public class Polygon_d extends PolygonEntity {
     /**
      * The polygon geometry
      */
-    public V2D_Polygon_d polygon;
+    private V2D_Polygon_d polygon;
     
+    /**
+     * The x and y coordinates of the points of {@link #polygon} with those
+     * of the external ring first followed by those of each internal hole.
+     * These and the other things derived from {@link #polygon} below are
+     * created when first needed and cleared by {@link #invalidate()}
+     * holding the lock of this, so they can be got from several threads.
+     */
+    transient double[][] xs, ys;
+
+    /**
+     * The coordinates of the external edges of {@link #polygon}. For each
+     * edge these are the x and y of the start and the x and y of the end.
+     */
+    transient double[] edges;
+
+    /**
+     * The coordinates of the edges of each internal hole of
+     * {@link #polygon} in the layout of {@link #edges}.
+     */
+    transient double[][] holeEdges;
+
+    /**
+     * The bounds of {@link #polygon}: xmin, ymin, xmax, ymax.
+     */
+    transient double[] bounds;
+
+    /**
+     * The convex hull of {@link #polygon} for {@link #convexAreaEpsilon}.
+     */
+    transient V2D_ConvexArea_d convexArea;
+
+    /**
+     * The epsilon {@link #convexArea} was created with.
+     */
+    transient double convexAreaEpsilon;
+
+    /**
+     * The points of {@link #convexArea}.
+     */
+    transient V2D_Point_d[] convexAreaPoints;
+
+    /**
+     * An index of the edges of {@link #polygon} for testing pixels.
+     */
+    transient EdgeIndex_d edgeIndex;
+
+    /**
+     * The universe this was added to or null.
+     */
+    private transient Universe_d universe;
+
     /**
      * Create a new instance.
      *
@@ -73,4 +129,163 @@ public class Polygon_d extends PolygonEntity {
         super(id, color, colorInternalEdge, colorExternalEdge);
         this.polygon = polygon;
     }
+
+    /**
+     * @return {@link #polygon}
+     */
+    public synchronized V2D_Polygon_d getPolygon() {
+        return polygon;
+    }
+
+    /**
+     * Sets {@link #polygon}, clears everything derived from it and updates
+     * the index of the universe this was added to.
+     *
+     * @param polygon What {@link #polygon} is set to.
+     */
+    public void setPolygon(V2D_Polygon_d polygon) {
+        synchronized (this) {
+            this.polygon = polygon;
+            invalidate();
+        }
+        if (universe != null) {
+            universe.update(this);
+        }
+    }
+
+    /**
+     * For {@link Universe_d} to set the universe this was added to so that
+     * {@link #setPolygon} updates its index.
+     *
+     * @param universe What {@link #universe} is set to.
+     */
+    public void setUniverse(Universe_d universe) {
+        this.universe = universe;
+    }
+
+    /**
+     * Clears everything derived from {@link #polygon}. This must be called
+     * if the geometry of {@link #polygon} is changed.
+     */
+    public synchronized void invalidate() {
+        xs = null;
+        ys = null;
+        edges = null;
+        holeEdges = null;
+        bounds = null;
+        convexArea = null;
+        convexAreaPoints = null;
+        edgeIndex = null;
+    }
+
+    /**
+     * @return {@link #xs} initialising it first if it is null.
+     */
+    public synchronized double[][] getXs() {
+        if (xs == null) {
+            initRings();
+        }
+        return xs;
+    }
+
+    /**
+     * @return {@link #ys} initialising it first if it is null.
+     */
+    public synchronized double[][] getYs() {
+        if (ys == null) {
+            initRings();
+        }
+        return ys;
+    }
+
+    /**
+     * Initialises {@link #xs} and {@link #ys}.
+     */
+    private void initRings() {
+        double[][] x = new double[polygon.internalHoles.size() + 1][];
+        double[][] y = new double[x.length][];
+        PolygonNoInternalHoles_d.setRing(polygon.getPointsArray(), x, y, 0);
+        int i = 1;
+        for (V2D_PolygonNoInternalHoles_d h : polygon.internalHoles.values()) {
+            PolygonNoInternalHoles_d.setRing(h.getPointsArray(), x, y, i);
+            i++;
+        }
+        ys = y;
+        xs = x;
+    }
+
+    /**
+     * @return {@link #edges} initialising it first if it is null.
+     */
+    public synchronized double[] getEdges() {
+        if (edges == null) {
+            edges = PolygonNoInternalHoles_d.getEdges(polygon.getEdges());
+        }
+        return edges;
+    }
+
+    /**
+     * @return {@link #holeEdges} initialising it first if it is null.
+     */
+    public synchronized double[][] getHoleEdges() {
+        if (holeEdges == null) {
+            double[][] r = new double[polygon.internalHoles.size()][];
+            int i = 0;
+            for (V2D_PolygonNoInternalHoles_d h
+                    : polygon.internalHoles.values()) {
+                r[i] = PolygonNoInternalHoles_d.getEdges(h.getEdges());
+                i++;
+            }
+            holeEdges = r;
+        }
+        return holeEdges;
+    }
+
+    /**
+     * @return {@link #bounds} initialising it first if it is null.
+     */
+    public synchronized double[] getBounds() {
+        if (bounds == null) {
+            bounds = PolygonNoInternalHoles_d.getBounds(polygon.getAABB());
+        }
+        return bounds;
+    }
+
+    /**
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal.
+     * @return {@link #convexArea} initialising it first if it is null or was
+     * created with a different epsilon.
+     */
+    public synchronized V2D_ConvexArea_d getConvexArea(double epsilon) {
+        if (convexArea == null || convexAreaEpsilon != epsilon) {
+            convexAreaPoints = null;
+            convexAreaEpsilon = epsilon;
+            convexArea = polygon.getConvexArea(epsilon);
+        }
+        return convexArea;
+    }
+
+    /**
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal.
+     * @return {@link #convexAreaPoints} initialising it first if it is null.
+     */
+    public synchronized V2D_Point_d[] getConvexAreaPoints(double epsilon) {
+        V2D_ConvexArea_d ch = getConvexArea(epsilon);
+        if (convexAreaPoints == null) {
+            convexAreaPoints = ch.getPointsArray();
+        }
+        return convexAreaPoints;
+    }
+
+    /**
+     * @return {@link #edgeIndex} initialising it first if it is null.
+     */
+    public synchronized EdgeIndex_d getEdgeIndex() {
+        if (edgeIndex == null) {
+            edgeIndex = new EdgeIndex_d(getXs(), getYs());
+        }
+        return edgeIndex;
+    }
 }
@@ -16,8 +16,15 @@
 package uk.ac.leeds.ccg.r2d.entities;
 
 import java.awt.Color;
+import java.math.RoundingMode;
 import uk.ac.leeds.ccg.data.id.Data_ID_long;
+import uk.ac.leeds.ccg.r2d.Universe;
+import uk.ac.leeds.ccg.v2d.geometry.V2D_AABB;
+import uk.ac.leeds.ccg.v2d.geometry.V2D_ConvexArea;
+import uk.ac.leeds.ccg.v2d.geometry.V2D_LineSegment;
+import uk.ac.leeds.ccg.v2d.geometry.V2D_Point;
 import uk.ac.leeds.ccg.v2d.geometry.V2D_Polygon;
+import uk.ac.leeds.ccg.v2d.geometry.V2D_PolygonNoInternalHoles;
 
 /**
  * For representing a polygon entity.
@@ -31,7 +38,52 @@ public class Polygon extends PolygonEntity {
     /**
      * The polygon geometry
      */
-    public V2D_Polygon polygon;
+    private V2D_Polygon polygon;
+
+    /**
+     * The Order of Magnitude for the precision that the things derived from
+     * {@link #polygon} below were created with. These
+     * are created when first needed and cleared by {@link #invalidate()} or
+     * if they are needed with a different precision, holding the lock of
+     * this so they can be got from several threads.
+     */
+    transient int oom;
+
+    /**
+     * The RoundingMode that the things derived from {@link #polygon} were
+     * created with, or null if there are none.
+     */
+    transient RoundingMode rm;
+
+    /**
+     * The convex hull of {@link #polygon}.
+     */
+    transient V2D_ConvexArea convexHull;
+
+    /**
+     * The points of {@link #convexHull}.
+     */
+    transient V2D_Point[] convexHullPoints;
+
+    /**
+     * The external edges of {@link #polygon}.
+     */
+    transient V2D_LineSegment[] edges;
+
+    /**
+     * The edges of each internal hole of {@link #polygon}.
+     */
+    transient V2D_LineSegment[][] holeEdges;
+
+    /**
+     * The AABB of {@link #polygon}.
+     */
+    transient V2D_AABB aabb;
+
+    /**
+     * The universe this was added to or null.
+     */
+    private transient Universe universe;
     
     /**
      * Create a new instance.
@@ -72,4 +124,140 @@ public class Polygon extends PolygonEntity {
         super(id, color, colorInternalEdge, colorExternalEdge);
         this.polygon = polygon;
     }
+
+    /**
+     * @return {@link #polygon}
+     */
+    public synchronized V2D_Polygon getPolygon() {
+        return polygon;
+    }
+
+    /**
+     * Sets {@link #polygon}, clears everything derived from it and updates
+     * the index of the universe this was added to.
+     *
+     * @param polygon What {@link #polygon} is set to.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     */
+    public void setPolygon(V2D_Polygon polygon, int oom, RoundingMode rm) {
+        synchronized (this) {
+            this.polygon = polygon;
+            invalidate();
+        }
+        if (universe != null) {
+            universe.update(this, oom, rm);
+        }
+    }
+
+    /**
+     * For {@link Universe} to set the universe this was added to so that
+     * {@link #setPolygon} updates its index.
+     *
+     * @param universe What {@link #universe} is set to.
+     */
+    public void setUniverse(Universe universe) {
+        this.universe = universe;
+    }
+
+    /**
+     * Clears everything derived from {@link #polygon}. This must be called
+     * if the geometry of {@link #polygon} is changed.
+     */
+    public synchronized void invalidate() {
+        rm = null;
+        convexHull = null;
+        convexHullPoints = null;
+        edges = null;
+        holeEdges = null;
+        aabb = null;
+    }
+
+    /**
+     * Clears everything derived from {@link #polygon} if it was created with
+     * a different precision.
+     *
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     */
+    private void check(int oom, RoundingMode rm) {
+        if (this.oom != oom || this.rm != rm) {
+            invalidate();
+            this.oom = oom;
+            this.rm = rm;
+        }
+    }
+
+    /**
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return {@link #convexHull} initialising it first if it is null.
+     */
+    public synchronized V2D_ConvexArea getConvexHull(int oom, RoundingMode rm) {
+        check(oom, rm);
+        if (convexHull == null) {
+            convexHull = polygon.getConvexHull(oom, rm);
+        }
+        return convexHull;
+    }
+
+    /**
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return {@link #convexHullPoints} initialising it first if it is null.
+     */
+    public synchronized V2D_Point[] getConvexHullPoints(int oom, RoundingMode rm) {
+        V2D_ConvexArea ch = getConvexHull(oom, rm);
+        if (convexHullPoints == null) {
+            convexHullPoints = ch.getPointsArray(oom, rm);
+        }
+        return convexHullPoints;
+    }
+
+    /**
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return {@link #edges} initialising it first if it is null.
+     */
+    public synchronized V2D_LineSegment[] getEdges(int oom, RoundingMode rm) {
+        check(oom, rm);
+        if (edges == null) {
+            edges = PolygonNoInternalHoles.getEdges(polygon.getEdges(oom, rm));
+        }
+        return edges;
+    }
+
+    /**
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return {@link #holeEdges} initialising it first if it is null.
+     */
+    public synchronized V2D_LineSegment[][] getHoleEdges(int oom, RoundingMode rm) {
+        check(oom, rm);
+        if (holeEdges == null) {
+            V2D_LineSegment[][] r
+                    = new V2D_LineSegment[polygon.internalHoles.size()][];
+            int i = 0;
+            for (V2D_PolygonNoInternalHoles h
+                    : polygon.internalHoles.values()) {
+                r[i] = PolygonNoInternalHoles.getEdges(h.getEdges(oom, rm));
+                i++;
+            }
+            holeEdges = r;
+        }
+        return holeEdges;
+    }
+
+    /**
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return {@link #aabb} initialising it first if it is null.
+     */
+    public synchronized V2D_AABB getAABB(int oom, RoundingMode rm) {
+        check(oom, rm);
+        if (aabb == null) {
+            aabb = polygon.getAABB(oom, rm);
+        }
+        return aabb;
+    }
 }
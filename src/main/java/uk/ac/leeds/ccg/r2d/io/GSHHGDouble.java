@@ -15,14 +15,16 @@
  */
 package uk.ac.leeds.ccg.r2d.io;
 
-import java.io.DataInputStream;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import uk.ac.leeds.ccg.v2d.core.d.V2D_Environment_d;
 import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Point_d;
 import uk.ac.leeds.ccg.v2d.geometry.d.V2D_Polygon_d;
@@ -40,192 +42,173 @@ public class GSHHGDouble {
      * equal.
      */
     public GSHHGDouble(Path p, V2D_Environment_d env, int scale, double epsilon) {
+        this(p, env, scale, epsilon, new GSHHGReader.Query(),
+                new GSHHGReader.Metrics() {});
+    }
 
-        polygons = new HashMap<>();
+    /**
+     * @param p The path to the GSHHS file.
+     * @param env The environment.
+     * @param scale The scale to multiply x coordinate values by.
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal.
+     * @param query For selecting the polygons to load.
+     */
+    public GSHHGDouble(Path p, V2D_Environment_d env, int scale,
+            double epsilon, GSHHGReader.Query query) {
+        this(p, env, scale, epsilon, query, new GSHHGReader.Metrics() {});
+    }
 
-        /**
-         * For looking up polygons from their id. Key are id, values are
-         * position in collection.
-         */
-        HashMap<Integer, Integer> lookup = new HashMap<>();
+    /**
+     * @param p The path to the GSHHS file.
+     * @param env The environment.
+     * @param scale The scale to multiply x coordinate values by.
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal.
+     * @param query For selecting the polygons to load.
+     * @param metrics For reporting progress.
+     */
+    public GSHHGDouble(Path p, V2D_Environment_d env, int scale, double epsilon,
+            GSHHGReader.Query query, GSHHGReader.Metrics metrics) {
+        this(p, env, scale, epsilon, query, metrics,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * The polygons are loaded in three phases. First the headers of the
+     * polygons selected are read. Then the coordinates of these are decoded
+     * and the polygons are created in parallel. Lastly the polygons are put
+     * together into {@link #polygons} on one thread in the order they are in
+     * the file, so the result is the same for any number of threads. env
+     * should not be added to or removed from by anything else while loading.
+     *
+     * @param p The path to the GSHHS file.
+     * @param env The environment.
+     * @param scale The scale to multiply x coordinate values by.
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal.
+     * @param query For selecting the polygons to load.
+     * @param metrics For reporting progress.
+     * @param nThreads The number of threads to use.
+     */
+    public GSHHGDouble(Path p, V2D_Environment_d env, int scale, double epsilon,
+            GSHHGReader.Query query, GSHHGReader.Metrics metrics,
+            int nThreads) {
+        this(p, env, scale, epsilon, query, metrics, nThreads, null);
+    }
 
-        /**
-         * For storing the collection of contained polygons.
-         */
-        HashSet<Integer> contained = new HashSet<>();
+    /**
+     * @param p The path to the GSHHS file.
+     * @param env The environment.
+     * @param scale The scale to multiply x coordinate values by.
+     * @param epsilon The tolerance within which two vectors are regarded as
+     * equal.
+     * @param query For selecting the polygons to load.
+     * @param metrics For reporting progress.
+     * @param nThreads The number of threads to use.
+     * @param indexDir The directory to cache the index of p in (see
+     * {@link GSHHGIndex#get(Path, Path)}) or null to not cache it.
+     */
+    public GSHHGDouble(Path p, V2D_Environment_d env, int scale, double epsilon,
+            GSHHGReader.Query query, GSHHGReader.Metrics metrics,
+            int nThreads, Path indexDir) {
 
-        try {
-            int xmin = Integer.MAX_VALUE;
-            int ymin = Integer.MAX_VALUE;
-            int xmax = -Integer.MAX_VALUE;
-            int ymax = -Integer.MAX_VALUE;
-            try (DataInputStream in = new DataInputStream(new FileInputStream(p.toFile()))) {
-                byte[] data = in.readNBytes(4);
-                while (data[0] != -1) {
-                    /*
-                    * Global Self-consistent Hierarchical High-resolution Shorelines
-                    * int id; Unique polygon id number, starting at 0
-                    * int n; Number of points in this polygon
-                    * int flag; = level + version << 8 + greenwich << 16 + source << 24 + river << 25
-                    * flag contains 5 items, as follows:
-                    * low byte: level = flag & 255: Values: 1 land, 2 lake, 3 island_in_lake, 4 pond_in_island_in_lake
-                    * 2nd byte: version = (flag >> 8) & 255: Values: Should be 12 for GSHHG release 12 (i.e., version 2.2)
-                    * 3rd byte: greenwich = (flag >> 16) & 1: Values: Greenwich is 1 if Greenwich is crossed
-                    * 4th byte: source = (flag >> 24) & 1: Values: 0 = CIA WDBII, 1 = WVS
-                    * 4th byte: river = (flag >> 25) & 1: Values: 0 = not set, 1 = river-lake and level = 2
-                    * int west, east, south, north; min/max extent in micro-degrees
-                    * int area; Area of polygon in 1/10 km^2
-                    * int area_full; Area of original full-resolution polygon in 1/10 km^2
-                    * int container; Id of container polygon that encloses this polygon (-1 if none)
-                    * int ancestor; Id of ancestor polygon in the full resolution set that was the source of this polygon (-1 if none)
-                     */
-                    int id = ByteBuffer.wrap(data).getInt();
-                    System.out.println("Creating Polygon id=" + id);
-                    int n = in.readInt();
-                    System.out.println("n=" + n);
-                    int flag = in.readInt();
-                    System.out.println("flag=" + flag);
-                    int west = in.readInt();
-                    System.out.println("west=" + west);
-                    int east = in.readInt();
-                    System.out.println("east=" + east);
-                    int south = in.readInt();
-                    System.out.println("south=" + south);
-                    int north = in.readInt();
-                    System.out.println("north=" + north);
-                    int area = in.readInt();
-                    System.out.println("area=" + area);
-                    int area_full = in.readInt();
-                    System.out.println("area_full=" + area_full);
-                    int container = in.readInt();
-                    System.out.println("container=" + container);
-                    int ancestor = in.readInt();
-                    System.out.println("ancestor=" + ancestor);
-                    
-                    // Skip some polygons
-                    //if (//west > 4300000 || east < -4800000 || 
-                    //        south > 55000000 || north < 54000000 || id == 0) {
-                    if (id != 464) {
-                    for (int i = 0; i < n; i ++) {
-                            in.readInt();
-                            in.readInt();
-                        }
-                    } else {
-                        
-                        
-                    V2D_Point_d[] points = new V2D_Point_d[n];                        
-                    int x00 = in.readInt();
-                    int y00 = in.readInt();
-                    int x0 = x00;
-                    int y0 = y00;
-                    if (n > 1) {
-                        points[0] = new V2D_Point_d(env, (double) (x0 * scale) / 1000000d, (double) (y0 * scale) / 1000000d);
-                        xmin = Math.min(xmin, x0);
-                        xmax = Math.max(xmax, x0);
-                        ymin = Math.min(ymin, y0);
-                        ymax = Math.max(ymax, y0);
-                        int x1 = in.readInt();
-                        int y1 = in.readInt();
-                        if (x0 > 180000000 && x1 < 180000000) {
-                            //System.out.println("Crossleft i = " + i);
-                            x1 = x1 + 360000000;
-                        }
-                        if (x0 < 180000000 && x1 > 180000000) {
-                            //System.out.println("Crossright i = " + i);
-                            x1 = x1 - 360000000;
-                        }
-                        points[1] = new V2D_Point_d(env, (double) (x1 * scale) / 1000000d, (double) (y1 * scale) / 1000000d);
-                        xmin = Math.min(xmin, x1);
-                        xmax = Math.max(xmax, x1);
-                        ymin = Math.min(ymin, y1);
-                        ymax = Math.max(ymax, y1);
-                        //externalEdges.put(externalEdges.size(), new V2D_LineSegmentDouble(points[0], points[1]));
-                        for (int i = 2; i < n; i++) {
-                            //if (id == 2 || id == 6) {
-                            //    System.out.println("i=" + i + " out of " + n);
-                           // }
-                            x0 = x1;
-                            y0 = y1;
-                            x1 = in.readInt();
-                            y1 = in.readInt();
-                            if (x0 > 180000000 && x1 < 180000000) {
-                                //System.out.println("Crossleft i = " + i);
-                                x1 = x1 + 360000000;
-                            }
-                            if (x0 < 180000000 && x1 > 180000000) {
-                                //System.out.println("Crossright i = " + i);
-                                x1 = x1 - 360000000;
-                            }
-                            points[i] = new V2D_Point_d(env, (double) (x1 * scale) / 1000000d, (double) (y1 * scale) / 1000000d);
-                            xmin = Math.min(xmin, x1);
-                            xmax = Math.max(xmax, x1);
-                            ymin = Math.min(ymin, y1);
-                            ymax = Math.max(ymax, y1);
-                            //externalEdges.put(externalEdges.size(), new V2D_LineSegmentDouble(points[i - 1], points[i]));
-                        }
-//                        if (x1 != x00) {
-//                            // This happens with the antarctic polygon.
-//                            int debug = 1;
-//                        } else {
-                           if (id == 2) {
-                            int debug = 1;
-                           }
-                             try {
-                                V2D_PolygonNoInternalHoles_d polygon = new V2D_PolygonNoInternalHoles_d(points, epsilon);
-//                                // GB
-//                                V2D_Point_d pP0P52 = new V2D_Point_d(env, 0, 52);
-//                                if (polygon.contains(pP0P52, epsilon)) {
-//                                    System.out.println("gb id=" + id);
-//                                }
+        polygons = new HashMap<>();
 
-                                // IOM
-                                V2D_Point_d pN4520083P54239143 = new V2D_Point_d(env, 360d -4.520083d, 54.239143);
-                                if (polygon.contains(pN4520083P54239143, epsilon)) {
-                                    System.out.println("iom id=" + id);
-                                }
+        GSHHGHierarchy<V2D_PolygonNoInternalHoles_d> hierarchy
+                = new GSHHGHierarchy<>(new GSHHGHierarchy.Listener<>() {
+                    @Override
+                    public void polygon(V2D_PolygonNoInternalHoles_d polygon,
+                            int position) {
+                        polygons.put(position, new V2D_Polygon_d(polygon,
+                                epsilon));
+                    }
 
-                                if (container == -1 || contained.contains(container)) {
-                                    
-                                    if (container == 15) {
-                                        System.out.println("GB contains id=" + id);
-                                    }
-                                    
-                                    HashMap<Integer, V2D_PolygonNoInternalHoles_d> internalHoles = new HashMap<>();
-                                    int id2 = polygons.size();
-                                    lookup.put(id, id2);
-                                    polygons.put(id2, new V2D_Polygon_d(polygon, epsilon));
-                                } else {
-                                    int id2 = lookup.get(container);
-                                    if (polygons.containsKey(id2)) {
-                                        V2D_Polygon_d containerPolygon = polygons.get(id2);
-                                        containerPolygon.internalHoles.put(containerPolygon.internalHoles.size(), polygon);
-                                        contained.add(id);
-                                    } else {
-                                        System.out.println("Container polygon not yet formulated!");
-                                        // Store the polygon to be added as and when...
-                                        int debug = 1;
-                                    }
-                                }
-                            } catch (Exception e) {
-                                int debug = 1;
-                            }
-//                        }
+                    @Override
+                    public void hole(V2D_PolygonNoInternalHoles_d hole,
+                            int position) {
+                        V2D_Polygon_d containerPolygon = polygons.get(position);
+                        containerPolygon.internalHoles.put(containerPolygon.internalHoles.size(), hole);
                     }
+                });
+
+        try {
+            GSHHGReader r = new GSHHGReader(p, metrics);
+            GSHHGIndex index = GSHHGIndex.get(p, indexDir);
+            // Read the headers.
+            GSHHGReader.Header h = r.header;
+            int m = 0;
+            int[] ids = new int[16];
+            int[] ns = new int[16];
+            int[] offsets = new int[16];
+            int[] containers = new int[16];
+            while (r.next(index, query)) {
+                if (h.n < 2) {
+                    continue;
+                }
+                if (m == ids.length) {
+                    ids = Arrays.copyOf(ids, m * 2);
+                    ns = Arrays.copyOf(ns, m * 2);
+                    offsets = Arrays.copyOf(offsets, m * 2);
+                    containers = Arrays.copyOf(containers, m * 2);
+                }
+                ids[m] = h.id;
+                ns[m] = h.n;
+                offsets[m] = h.offset;
+                containers[m] = query.getContainer(h);
+                m++;
+            }
+            // Decode the coordinates and create the polygons in parallel.
+            // Creating geometry only reads env (see TilePyramid_d).
+            V2D_PolygonNoInternalHoles_d[] built
+                    = new V2D_PolygonNoInternalHoles_d[m];
+            int nPolygons = m;
+            int[] polygonNs = ns;
+            int[] polygonOffsets = offsets;
+            AtomicInteger next = new AtomicInteger();
+            Callable<Void> task = () -> {
+                int[] xs = new int[0];
+                int[] ys = new int[0];
+                for (int k = next.getAndIncrement(); k < nPolygons;
+                        k = next.getAndIncrement()) {
+                    int n = polygonNs[k];
+                    if (xs.length < n) {
+                        xs = new int[n];
+                        ys = new int[n];
                     }
-                    //in.readInt();
-                    //in.readInt();
-                    data = in.readNBytes(4);
-                    if (data.length == 0) {
-                        break;
+                    r.getCoordinates(polygonOffsets[k], n, xs, ys);
+                    V2D_Point_d[] points = new V2D_Point_d[n];
+                    for (int i = 0; i < n; i++) {
+                        points[i] = new V2D_Point_d(env,
+                                ((long) xs[i] * scale) / 1000000d,
+                                ((long) ys[i] * scale) / 1000000d);
                     }
+                    built[k] = new V2D_PolygonNoInternalHoles_d(points,
+                            epsilon);
                 }
+                return null;
+            };
+            int nTasks = Math.max(1, Math.min(nThreads, m));
+            ArrayList<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < nTasks; t++) {
+                tasks.add(task);
             }
-            System.out.println("xmin " + xmin);
-            System.out.println("xmax " + xmax);
-            System.out.println("ymin " + ymin);
-            System.out.println("ymax " + ymax);
-        } catch (FileNotFoundException e) {
-            System.err.println(e.getMessage());
+            ForkJoinPool pool = new ForkJoinPool(nTasks);
+            try {
+                for (Future<Void> f : pool.invokeAll(tasks)) {
+                    f.get();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            } finally {
+                pool.shutdown();
+            }
+            // Put the polygons together in file order.
+            for (int k = 0; k < m; k++) {
+                hierarchy.add(built[k], ids[k], containers[k]);
+                built[k] = null;
+            }
+            hierarchy.finish();
         } catch (IOException e) {
             System.err.println(e.getMessage());
         }
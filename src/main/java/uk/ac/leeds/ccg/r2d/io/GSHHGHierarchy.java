@@ -0,0 +1,170 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * For putting GSHHG polygons together into polygons with holes. A polygon
+ * with no container, or whose container is a hole, is a new polygon (land,
+ * or an island in a lake). Otherwise it is a hole of its container (a lake,
+ * or a pond in an island in a lake).
+ *
+ * Polygons are added in one pass. Those whose container has not been added
+ * yet are kept aside and placed in {@link #finish()} once all the others
+ * have been, so only these are held in addition to the result. Polygons
+ * whose container is never added are dropped.
+ *
+ * @author Andy Turner
+ * @param <T> The type of polygon.
+ */
+class GSHHGHierarchy<T> {
+
+    /**
+     * For receiving the placed polygons.
+     *
+     * @param <T> The type of polygon.
+     */
+    interface Listener<T> {
+
+        /**
+         * Called for each new polygon.
+         *
+         * @param polygon The polygon.
+         * @param position The position of the polygon counting from 0.
+         */
+        void polygon(T polygon, int position);
+
+        /**
+         * Called for each hole.
+         *
+         * @param hole The hole.
+         * @param position The position of the polygon it is a hole of.
+         */
+        void hole(T hole, int position);
+    }
+
+    /**
+     * The state of holes in {@link #placed}.
+     */
+    static final int HOLE = -1;
+
+    /**
+     * For receiving the placed polygons.
+     */
+    final Listener<T> listener;
+
+    /**
+     * Keys are the ids of the polygons placed. Values are the positions of
+     * the new polygons or {@link #HOLE}.
+     */
+    final IntIntMap placed;
+
+    /**
+     * The number of new polygons.
+     */
+    int nPolygons;
+
+    /**
+     * The polygons whose container has not been placed.
+     */
+    final ArrayList<T> orphans;
+
+    /**
+     * The ids and then the container ids of {@link #orphans}.
+     */
+    int[] orphanIds;
+
+    /**
+     * Create a new instance.
+     *
+     * @param listener What {@link #listener} is set to.
+     */
+    GSHHGHierarchy(Listener<T> listener) {
+        this.listener = listener;
+        this.placed = new IntIntMap();
+        this.orphans = new ArrayList<>();
+        this.orphanIds = new int[16];
+    }
+
+    /**
+     * Adds a polygon. If the listener fails for it then nothing is placed.
+     *
+     * @param polygon The polygon.
+     * @param id The id of the polygon.
+     * @param container The id of the container or -1 if none.
+     */
+    void add(T polygon, int id, int container) {
+        if (!place(polygon, id, container)) {
+            int i = 2 * orphans.size();
+            if (i == orphanIds.length) {
+                orphanIds = Arrays.copyOf(orphanIds, i * 2);
+            }
+            orphanIds[i] = id;
+            orphanIds[i + 1] = container;
+            orphans.add(polygon);
+        }
+    }
+
+    /**
+     * @return {@code false} if container has not been placed.
+     */
+    private boolean place(T polygon, int id, int container) {
+        int state = container == -1 ? HOLE : placed.get(container);
+        if (state == IntIntMap.NO_VALUE) {
+            return false;
+        }
+        // The listener is called first so nothing is placed if it fails.
+        if (state == HOLE) {
+            listener.polygon(polygon, nPolygons);
+            placed.put(id, nPolygons);
+            nPolygons++;
+        } else {
+            listener.hole(polygon, state);
+            placed.put(id, HOLE);
+        }
+        return true;
+    }
+
+    /**
+     * Places the polygons whose container was added after them. This goes
+     * through them in the order they were added until no more can be placed.
+     * Any that the listener fails for are dropped.
+     */
+    void finish() {
+        int n = orphans.size();
+        boolean[] done = new boolean[n];
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int i = 0; i < n; i++) {
+                if (!done[i]) {
+                    try {
+                        if (place(orphans.get(i), orphanIds[2 * i],
+                                orphanIds[2 * i + 1])) {
+                            done[i] = true;
+                            progress = true;
+                        }
+                    } catch (RuntimeException e) {
+                        done[i] = true;
+                    }
+                }
+            }
+        }
+        orphans.clear();
+    }
+}
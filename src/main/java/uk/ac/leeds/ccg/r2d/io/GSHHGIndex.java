@@ -0,0 +1,314 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * An index of the polygon records in a GSHHG binary file. For each polygon
+ * the header values and the byte offset of the record in the file are held,
+ * so polygons can be selected and fetched without reading the file from the
+ * start.
+ *
+ * The index can be cached in a file in a directory chosen by the caller (see
+ * {@link #get(Path, Path)}), which may be that of the data file. The file
+ * records the size and last modified time of the data file it was built from
+ * and is rebuilt if these differ. Nothing is written unless a directory is
+ * given.
+ *
+ * @author Andy Turner
+ */
+public class GSHHGIndex {
+
+    /**
+     * Identifies an index file.
+     */
+    static final int MAGIC = 0x47494458;
+
+    /**
+     * The version of the index file format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The number of bytes before the entries in an index file.
+     */
+    static final int PREAMBLE_BYTES = 4 + 4 + 8 + 8 + 4;
+
+    /**
+     * The number of bytes of each entry in an index file.
+     */
+    static final int ENTRY_BYTES = GSHHGReader.HEADER_INTS * 4 + 8;
+
+    /**
+     * The size in bytes of the data file indexed.
+     */
+    public final long dataSize;
+
+    /**
+     * The last modified time in milliseconds of the data file indexed.
+     */
+    public final long dataModified;
+
+    /**
+     * The number of polygons.
+     */
+    public final int size;
+
+    /**
+     * The header values of the polygons in file order. For polygon i these
+     * are at {@link GSHHGReader#HEADER_INTS} * i.
+     */
+    final int[] headers;
+
+    /**
+     * The byte offsets of the polygon records in the data file.
+     */
+    final long[] offsets;
+
+    /**
+     * Create a new instance.
+     *
+     * @param dataSize What {@link #dataSize} is set to.
+     * @param dataModified What {@link #dataModified} is set to.
+     * @param size What {@link #size} is set to.
+     * @param headers What {@link #headers} is set to.
+     * @param offsets What {@link #offsets} is set to.
+     */
+    GSHHGIndex(long dataSize, long dataModified, int size, int[] headers,
+            long[] offsets) {
+        this.dataSize = dataSize;
+        this.dataModified = dataModified;
+        this.size = size;
+        this.headers = headers;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @param data The path to the data file.
+     * @param dir The directory of the index file.
+     * @return The path of the index file for data in dir.
+     */
+    public static Path getPath(Path data, Path dir) {
+        return dir.resolve(data.getFileName().toString() + ".idx");
+    }
+
+    /**
+     * Builds the index of data. Nothing is written.
+     *
+     * @param data The path to the data file.
+     * @return The index.
+     * @throws IOException If data cannot be read.
+     */
+    public static GSHHGIndex get(Path data) throws IOException {
+        return get(data, null);
+    }
+
+    /**
+     * Reads the index of data cached in dir if it is valid, otherwise builds
+     * it and writes it to dir. An index file that cannot be read or that was
+     * built from a different version of data is replaced.
+     *
+     * @param data The path to the data file.
+     * @param dir The directory to cache the index in or null to only build
+     * it.
+     * @return The index.
+     * @throws IOException If data cannot be read or if the index cannot be
+     * written to dir.
+     */
+    public static GSHHGIndex get(Path data, Path dir) throws IOException {
+        if (dir == null) {
+            return build(data);
+        }
+        long dataSize = Files.size(data);
+        long dataModified = Files.getLastModifiedTime(data).toMillis();
+        Path p = getPath(data, dir);
+        if (Files.exists(p)) {
+            try {
+                GSHHGIndex index = read(p);
+                if (index.dataSize == dataSize
+                        && index.dataModified == dataModified) {
+                    return index;
+                }
+            } catch (IOException e) {
+                // Not a valid index so it is rebuilt.
+            }
+        }
+        GSHHGIndex index = build(data);
+        Files.createDirectories(dir);
+        index.write(p);
+        return index;
+    }
+
+    /**
+     * Builds an index by reading all the headers of data.
+     *
+     * @param data The path to the data file.
+     * @return The index.
+     * @throws IOException If data cannot be read.
+     */
+    public static GSHHGIndex build(Path data) throws IOException {
+        long dataModified = Files.getLastModifiedTime(data).toMillis();
+        GSHHGReader r = new GSHHGReader(data, new GSHHGReader.Metrics() {});
+        GSHHGReader.Header h = r.header;
+        int n = 0;
+        int[] headers = new int[GSHHGReader.HEADER_INTS * 1024];
+        long[] offsets = new long[1024];
+        while (r.next()) {
+            if (n == offsets.length) {
+                headers = Arrays.copyOf(headers, headers.length * 2);
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            int o = GSHHGReader.HEADER_INTS * n;
+            headers[o] = h.id;
+            headers[o + 1] = h.n;
+            headers[o + 2] = h.flag;
+            headers[o + 3] = h.west;
+            headers[o + 4] = h.east;
+            headers[o + 5] = h.south;
+            headers[o + 6] = h.north;
+            headers[o + 7] = h.area;
+            headers[o + 8] = h.areaFull;
+            headers[o + 9] = h.container;
+            headers[o + 10] = h.ancestor;
+            offsets[n] = (h.offset - GSHHGReader.HEADER_INTS) * 4L;
+            n++;
+        }
+        return new GSHHGIndex(r.size, dataModified, n,
+                Arrays.copyOf(headers, GSHHGReader.HEADER_INTS * n),
+                Arrays.copyOf(offsets, n));
+    }
+
+    /**
+     * Reads an index file.
+     *
+     * @param p The path to the index file.
+     * @return The index.
+     * @throws IOException If p cannot be read or is not an index file.
+     */
+    public static GSHHGIndex read(Path p) throws IOException {
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            long fileSize = fc.size();
+            if (fileSize < PREAMBLE_BYTES) {
+                throw new IOException("Not a GSHHG index " + p);
+            }
+            ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (b.getInt() != MAGIC || b.getInt() != VERSION) {
+                throw new IOException("Not a GSHHG index " + p);
+            }
+            long dataSize = b.getLong();
+            long dataModified = b.getLong();
+            int n = b.getInt();
+            if (n < 0 || fileSize != PREAMBLE_BYTES + (long) n * ENTRY_BYTES) {
+                throw new IOException("Truncated GSHHG index " + p);
+            }
+            int[] headers = new int[GSHHGReader.HEADER_INTS * n];
+            long[] offsets = new long[n];
+            for (int i = 0; i < n; i++) {
+                int o = GSHHGReader.HEADER_INTS * i;
+                for (int j = 0; j < GSHHGReader.HEADER_INTS; j++) {
+                    headers[o + j] = b.getInt();
+                }
+                offsets[i] = b.getLong();
+            }
+            return new GSHHGIndex(dataSize, dataModified, n, headers, offsets);
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file which is then moved to p.
+     *
+     * @param p The path to write to.
+     * @throws IOException If p cannot be written.
+     */
+    public void write(Path p) throws IOException {
+        Path tmp = p.resolveSibling(p.getFileName().toString() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dataSize);
+            out.writeLong(dataModified);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                int o = GSHHGReader.HEADER_INTS * i;
+                for (int j = 0; j < GSHHGReader.HEADER_INTS; j++) {
+                    out.writeInt(headers[o + j]);
+                }
+                out.writeLong(offsets[i]);
+            }
+        }
+        Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param i The index of the polygon in file order.
+     * @return The byte offset of the record of polygon i in the data file.
+     */
+    public long getOffset(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * Sets the values of h from the index apart from the offset.
+     *
+     * @param i The index of the polygon in file order.
+     * @param h The header to set.
+     */
+    public void getHeader(int i, GSHHGReader.Header h) {
+        int o = GSHHGReader.HEADER_INTS * i;
+        h.id = headers[o];
+        h.n = headers[o + 1];
+        h.flag = headers[o + 2];
+        h.west = headers[o + 3];
+        h.east = headers[o + 4];
+        h.south = headers[o + 5];
+        h.north = headers[o + 6];
+        h.area = headers[o + 7];
+        h.areaFull = headers[o + 8];
+        h.container = headers[o + 9];
+        h.ancestor = headers[o + 10];
+    }
+
+    /**
+     * @param query The query.
+     * @return The indexes in file order of the polygons selected by query.
+     */
+    public int[] select(GSHHGReader.Query query) {
+        GSHHGReader.Header h = new GSHHGReader.Header();
+        int[] r = new int[16];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            getHeader(i, h);
+            if (query.accept(h)) {
+                if (n == r.length) {
+                    r = Arrays.copyOf(r, n * 2);
+                }
+                r[n++] = i;
+            }
+        }
+        return Arrays.copyOf(r, n);
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * For reading Global Self-consistent Hierarchical High-resolution Geography
+ * (GSHHG) binary files. The file is memory mapped and the big-endian ints of
+ * the headers and coordinates are decoded straight from an {@link IntBuffer}
+ * view of it, so nothing is copied through streams.
+ *
+ * Each polygon is a header of {@link #HEADER_INTS} ints followed by n pairs of
+ * x and y coordinates in micro-degrees. {@link #next()} moves from header to
+ * header and the coordinates of the current polygon can then be read with
+ * {@link #getCoordinates(int[], int[])} or skipped. {@link #next(Query)}
+ * uses the extents and flag in the headers to skip the polygons that are not
+ * wanted without looking at their coordinates. With a {@link GSHHGIndex}
+ * polygons can be fetched directly with {@link #seek(GSHHGIndex, int)} or
+ * selected with {@link #next(GSHHGIndex, Query)} without reading the headers
+ * in the file.
+ *
+ * @author Andy Turner
+ */
+public class GSHHGReader {
+
+    /**
+     * The number of ints in a header.
+     */
+    public static final int HEADER_INTS = 11;
+
+    /**
+     * The level of land polygons.
+     */
+    public static final int LAND = 1;
+
+    /**
+     * The level of lake polygons.
+     */
+    public static final int LAKE = 2;
+
+    /**
+     * The level of island in lake polygons.
+     */
+    public static final int ISLAND_IN_LAKE = 3;
+
+    /**
+     * The level of pond in island in lake polygons.
+     */
+    public static final int POND_IN_ISLAND_IN_LAKE = 4;
+
+    /**
+     * The number of micro-degrees in 360 degrees.
+     */
+    static final long M360 = 360000000L;
+
+    /**
+     * For reporting progress without writing to stdout.
+     */
+    public interface Metrics {
+
+        /**
+         * Called for each header read.
+         *
+         * @param header The header.
+         * @param position The number of bytes read including the coordinates
+         * of the polygon.
+         * @param size The size of the file in bytes.
+         */
+        default void header(Header header, long position, long size) {
+        }
+
+        /**
+         * Called once all the headers have been read.
+         *
+         * @param nPolygons The number of polygon headers read.
+         * @param nPoints The total number of points of the polygons.
+         * @param size The size of the file in bytes.
+         * @param nanos The time taken from opening the file in nanoseconds.
+         */
+        default void done(int nPolygons, long nPoints, long size, long nanos) {
+        }
+    }
+
+    /**
+     * A polygon header.
+     */
+    public static class Header {
+
+        /**
+         * Unique polygon id number, starting at 0.
+         */
+        public int id;
+
+        /**
+         * Number of points in this polygon.
+         */
+        public int n;
+
+        /**
+         * level + version << 8 + greenwich << 16 + source << 24 + river << 25.
+         */
+        public int flag;
+
+        /**
+         * Min/max extent in micro-degrees.
+         */
+        public int west, east, south, north;
+
+        /**
+         * Area of polygon in 1/10 km^2.
+         */
+        public int area;
+
+        /**
+         * Area of original full-resolution polygon in 1/10 km^2.
+         */
+        public int areaFull;
+
+        /**
+         * Id of container polygon that encloses this polygon (-1 if none).
+         */
+        public int container;
+
+        /**
+         * Id of ancestor polygon in the full resolution set that was the
+         * source of this polygon (-1 if none).
+         */
+        public int ancestor;
+
+        /**
+         * The index of the first coordinate int in the file.
+         */
+        public int offset;
+
+        /**
+         * Create a new instance.
+         */
+        public Header() {
+        }
+
+        /**
+         * @return The level: 1 land, 2 lake, 3 island_in_lake,
+         * 4 pond_in_island_in_lake.
+         */
+        public int getLevel() {
+            return flag & 255;
+        }
+
+        /**
+         * @return {@code true} if Greenwich is crossed.
+         */
+        public boolean isGreenwich() {
+            return ((flag >> 16) & 1) == 1;
+        }
+    }
+
+    /**
+     * For selecting polygons by level and by the intersection of their extent
+     * with an envelope. Longitudes are compared modulo 360 degrees. A polygon
+     * whose container is at a level that is not selected is loaded as a
+     * polygon rather than as a hole (see {@link #getContainer(Header)}), so
+     * selecting {@link GSHHGReader#LAND} and
+     * {@link GSHHGReader#ISLAND_IN_LAKE} loads land without lakes and islands
+     * in lakes as land.
+     */
+    public static class Query {
+
+        /**
+         * The envelope in micro-degrees.
+         */
+        public final long west, south, east, north;
+
+        /**
+         * Bit (1 &lt;&lt; level) is set for each level selected.
+         */
+        public final int levels;
+
+        /**
+         * Create a new instance which selects everything.
+         */
+        public Query() {
+            this(-180d, -90d, 180d, 90d);
+        }
+
+        /**
+         * Create a new instance.
+         *
+         * @param west The minimum longitude of the envelope in degrees.
+         * @param south The minimum latitude of the envelope in degrees.
+         * @param east The maximum longitude of the envelope in degrees.
+         * @param north The maximum latitude of the envelope in degrees.
+         * @param levels The levels to select. If there are none then all
+         * levels are selected. A polygon whose container is at a level that
+         * is not selected is loaded as a polygon rather than as a hole.
+         */
+        public Query(double west, double south, double east, double north,
+                int... levels) {
+            this.west = (long) Math.floor(west * 1000000d);
+            this.south = (long) Math.floor(south * 1000000d);
+            this.east = (long) Math.ceil(east * 1000000d);
+            this.north = (long) Math.ceil(north * 1000000d);
+            int l = 0;
+            for (int level : levels) {
+                l |= 1 << level;
+            }
+            this.levels = levels.length == 0 ? -1 : l;
+        }
+
+        /**
+         * @param h The header.
+         * @return {@code true} if the polygon of h is selected.
+         */
+        public boolean accept(Header h) {
+            if ((levels & (1 << h.getLevel())) == 0) {
+                return false;
+            }
+            if (h.south > north || h.north < south) {
+                return false;
+            }
+            for (long shift = -M360; shift <= M360; shift += M360) {
+                if (h.west + shift <= east && h.east + shift >= west) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * The level of the container of a polygon is one less than the level
+         * of the polygon.
+         *
+         * @param h The header.
+         * @return The id of the container of the polygon of h, or -1 if it has
+         * none or if the level of the container is not selected, in which case
+         * the polygon is loaded as a polygon rather than as a hole.
+         */
+        public int getContainer(Header h) {
+            if ((levels & (1 << (h.getLevel() - 1))) == 0) {
+                return -1;
+            }
+            return h.container;
+        }
+    }
+
+    /**
+     * The ints of the file.
+     */
+    final IntBuffer ints;
+
+    /**
+     * The size of the file in bytes.
+     */
+    public final long size;
+
+    /**
+     * For reporting progress.
+     */
+    final Metrics metrics;
+
+    /**
+     * The time the file was opened.
+     */
+    final long t0;
+
+    /**
+     * The index of the next header.
+     */
+    int position;
+
+    /**
+     * The index of the next polygon to check in
+     * {@link #next(GSHHGIndex, Query)}.
+     */
+    int entry;
+
+    /**
+     * The number of headers read.
+     */
+    int nPolygons;
+
+    /**
+     * The total number of points of the polygons read.
+     */
+    long nPoints;
+
+    /**
+     * The current header.
+     */
+    public final Header header;
+
+    /**
+     * Create a new instance.
+     *
+     * @param p The path to the GSHHG file.
+     * @param metrics For reporting progress.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public GSHHGReader(Path p, Metrics metrics) throws IOException {
+        this.t0 = System.nanoTime();
+        this.metrics = metrics;
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            size = fc.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map " + p);
+            }
+            MappedByteBuffer mbb = fc.map(FileChannel.MapMode.READ_ONLY, 0,
+                    size);
+            ints = mbb.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        }
+        header = new Header();
+        position = 0;
+    }
+
+    /**
+     * Reads the next header.
+     *
+     * @return {@code false} if there are no more.
+     * @throws EOFException If the file ends part way through a polygon.
+     */
+    public boolean next() throws EOFException {
+        int limit = ints.limit();
+        if (position >= limit || ints.get(position) >>> 24 == 0xFF) {
+            metrics.done(nPolygons, nPoints, size, System.nanoTime() - t0);
+            return false;
+        }
+        if (position + HEADER_INTS > limit) {
+            throw new EOFException("Truncated header at " + position * 4L);
+        }
+        Header h = header;
+        int i = position;
+        h.id = ints.get(i++);
+        h.n = ints.get(i++);
+        h.flag = ints.get(i++);
+        h.west = ints.get(i++);
+        h.east = ints.get(i++);
+        h.south = ints.get(i++);
+        h.north = ints.get(i++);
+        h.area = ints.get(i++);
+        h.areaFull = ints.get(i++);
+        h.container = ints.get(i++);
+        h.ancestor = ints.get(i++);
+        h.offset = i;
+        long end = (long) i + 2L * h.n;
+        if (h.n < 0 || end > limit) {
+            throw new EOFException("Truncated polygon id=" + h.id);
+        }
+        position = (int) end;
+        nPolygons++;
+        nPoints += h.n;
+        metrics.header(h, end * 4L, size);
+        return true;
+    }
+
+    /**
+     * Reads headers until one is selected by query. The coordinates of the
+     * polygons skipped are not read.
+     *
+     * @param query The query.
+     * @return {@code false} if there are no more.
+     * @throws EOFException If the file ends part way through a polygon.
+     */
+    public boolean next(Query query) throws EOFException {
+        while (next()) {
+            if (query.accept(header)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the current header to that of polygon i of index.
+     *
+     * @param index The index of the file.
+     * @param i The index of the polygon in file order.
+     * @throws EOFException If the polygon is not in the file.
+     */
+    public void seek(GSHHGIndex index, int i) throws EOFException {
+        Header h = header;
+        index.getHeader(i, h);
+        long o = index.getOffset(i) / 4L + HEADER_INTS;
+        long end = o + 2L * h.n;
+        if (h.n < 0 || end > ints.limit()) {
+            throw new EOFException("Truncated polygon id=" + h.id);
+        }
+        h.offset = (int) o;
+        nPolygons++;
+        nPoints += h.n;
+        metrics.header(h, end * 4L, size);
+    }
+
+    /**
+     * Moves to the next polygon of index selected by query.
+     *
+     * @param index The index of the file.
+     * @param query The query.
+     * @return {@code false} if there are no more.
+     * @throws EOFException If a polygon is not in the file.
+     */
+    public boolean next(GSHHGIndex index, Query query) throws EOFException {
+        Header h = header;
+        while (entry < index.size) {
+            index.getHeader(entry, h);
+            if (query.accept(h)) {
+                seek(index, entry++);
+                return true;
+            }
+            entry++;
+        }
+        metrics.done(nPolygons, nPoints, size, System.nanoTime() - t0);
+        return false;
+    }
+
+    /**
+     * Reads the coordinates of the current polygon in micro-degrees. Where
+     * consecutive x coordinates are either side of 180 degrees the second is
+     * shifted by 360 degrees so that polygons crossing that line are
+     * continuous. The first point is not shifted.
+     *
+     * @param xs For the x coordinates. The length must be at least n.
+     * @param ys For the y coordinates. The length must be at least n.
+     */
+    public void getCoordinates(int[] xs, int[] ys) {
+        getCoordinates(header.offset, header.n, xs, ys);
+    }
+
+    /**
+     * Reads the coordinates of a polygon in micro-degrees as in
+     * {@link #getCoordinates(int[], int[])}. This does not change the state
+     * of the reader so polygons can be read concurrently.
+     *
+     * @param offset The index of the first coordinate int of the polygon.
+     * @param n The number of points of the polygon.
+     * @param xs For the x coordinates. The length must be at least n.
+     * @param ys For the y coordinates. The length must be at least n.
+     */
+    public void getCoordinates(int offset, int n, int[] xs, int[] ys) {
+        int i = offset;
+        int x0 = 0;
+        for (int j = 0; j < n; j++) {
+            int x1 = ints.get(i++);
+            int y1 = ints.get(i++);
+            if (j > 0) {
+                if (x0 > 180000000 && x1 < 180000000) {
+                    x1 = x1 + 360000000;
+                }
+                if (x0 < 180000000 && x1 > 180000000) {
+                    x1 = x1 - 360000000;
+                }
+            }
+            xs[j] = x1;
+            ys[j] = y1;
+            x0 = x1;
+        }
+    }
+}
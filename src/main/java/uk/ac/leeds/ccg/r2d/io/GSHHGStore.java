@@ -0,0 +1,144 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.io;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import uk.ac.leeds.ccg.r2d.d.PolygonStore_d;
+import uk.ac.leeds.ccg.v2d.core.d.V2D_Environment_d;
+
+/**
+ * For loading GSHHG polygons into a {@link PolygonStore_d}. The coordinates
+ * are decoded straight into arrays, so no points or polygons are created.
+ *
+ * The headers of the polygons selected are read first and put together into
+ * polygons with holes by their ids. Then the rings of each polygon are
+ * decoded and added to the store in turn, so besides the store only the
+ * coordinates of one polygon are held. The point that repeats the first point
+ * to close a ring is not added.
+ *
+ * @author Andy Turner
+ */
+public class GSHHGStore {
+
+    /**
+     * The store the polygons are loaded into.
+     */
+    public final PolygonStore_d store;
+
+    /**
+     * @param p The path to the GSHHS file.
+     * @param env The environment.
+     * @param scale The scale to multiply coordinate values by.
+     * @param query For selecting the polygons to load.
+     * @param color The colour of the polygons.
+     * @param colorExternalEdge The colour of the external edges.
+     * @param colorInternalEdge The colour of the edges of internal holes.
+     * @throws IOException If p cannot be read.
+     */
+    public GSHHGStore(Path p, V2D_Environment_d env, int scale,
+            GSHHGReader.Query query, Color color, Color colorExternalEdge,
+            Color colorInternalEdge) throws IOException {
+        this(p, env, scale, query, color, colorExternalEdge,
+                colorInternalEdge, new GSHHGReader.Metrics() {}, null);
+    }
+
+    /**
+     * @param p The path to the GSHHS file.
+     * @param env The environment.
+     * @param scale The scale to multiply coordinate values by.
+     * @param query For selecting the polygons to load.
+     * @param color The colour of the polygons.
+     * @param colorExternalEdge The colour of the external edges.
+     * @param colorInternalEdge The colour of the edges of internal holes.
+     * @param metrics For reporting progress.
+     * @param indexDir The directory to cache the index of p in (see
+     * {@link GSHHGIndex#get(Path, Path)}) or null to not cache it.
+     * @throws IOException If p cannot be read or the index cannot be cached.
+     */
+    public GSHHGStore(Path p, V2D_Environment_d env, int scale,
+            GSHHGReader.Query query, Color color, Color colorExternalEdge,
+            Color colorInternalEdge, GSHHGReader.Metrics metrics,
+            Path indexDir) throws IOException {
+        store = new PolygonStore_d(env);
+        // The rings of each polygon by their position in the headers read.
+        ArrayList<ArrayList<Integer>> rings = new ArrayList<>();
+        GSHHGHierarchy<Integer> hierarchy
+                = new GSHHGHierarchy<>(new GSHHGHierarchy.Listener<>() {
+                    @Override
+                    public void polygon(Integer polygon, int position) {
+                        ArrayList<Integer> r = new ArrayList<>();
+                        r.add(polygon);
+                        rings.add(r);
+                    }
+
+                    @Override
+                    public void hole(Integer hole, int position) {
+                        rings.get(position).add(hole);
+                    }
+                });
+        GSHHGReader r = new GSHHGReader(p, metrics);
+        GSHHGIndex index = GSHHGIndex.get(p, indexDir);
+        // Read the headers and put the polygons together.
+        GSHHGReader.Header h = r.header;
+        int m = 0;
+        int[] ns = new int[16];
+        int[] offsets = new int[16];
+        while (r.next(index, query)) {
+            if (h.n < 2) {
+                continue;
+            }
+            if (m == ns.length) {
+                ns = Arrays.copyOf(ns, m * 2);
+                offsets = Arrays.copyOf(offsets, m * 2);
+            }
+            ns[m] = h.n;
+            offsets[m] = h.offset;
+            hierarchy.add(m, h.id, query.getContainer(h));
+            m++;
+        }
+        hierarchy.finish();
+        // Decode the rings of each polygon and add it.
+        int[] xs = new int[0];
+        int[] ys = new int[0];
+        for (ArrayList<Integer> polygon : rings) {
+            double[][] x = new double[polygon.size()][];
+            double[][] y = new double[x.length][];
+            for (int i = 0; i < x.length; i++) {
+                int k = polygon.get(i);
+                int n = ns[k];
+                if (xs.length < n) {
+                    xs = new int[n];
+                    ys = new int[n];
+                }
+                r.getCoordinates(offsets[k], n, xs, ys);
+                if (xs[n - 1] == xs[0] && ys[n - 1] == ys[0]) {
+                    n--;
+                }
+                x[i] = new double[n];
+                y[i] = new double[n];
+                for (int j = 0; j < n; j++) {
+                    x[i][j] = ((long) xs[j] * scale) / 1000000d;
+                    y[i][j] = ((long) ys[j] * scale) / 1000000d;
+                }
+            }
+            store.add(x, y, color, colorExternalEdge, colorInternalEdge);
+        }
+    }
+}
@@ -19,7 +19,12 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Panel;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -53,11 +58,62 @@ public class IO {
         RenderedImage ri = (RenderedImage) bi;
         g2d.dispose();
         try {
-            Files.createDirectories(p.getParent());
+            Path dir = p.getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
             ImageIO.write(ri, format, p.toFile());
         } catch (IOException e) {
             System.out.println("Format not recognised: " + format);
         }
     }
+
+    /**
+     * Wraps pixels in an image without copying them, so changes to pix are
+     * seen in the image. This does not need a display, so works with
+     * {@code java.awt.headless=true}.
+     *
+     * @param pix The ARGB pixels in rows from the top.
+     * @param ncols The number of columns.
+     * @param nrows The number of rows.
+     * @return An image of type {@link BufferedImage#TYPE_INT_ARGB} backed by
+     * pix.
+     */
+    public static BufferedImage toImage(int[] pix, int ncols, int nrows) {
+        if (pix.length < ncols * nrows) {
+            throw new IllegalArgumentException("pix.length " + pix.length
+                    + " < " + ncols + " * " + nrows);
+        }
+        DirectColorModel cm = (DirectColorModel) ColorModel.getRGBdefault();
+        WritableRaster raster = Raster.createPackedRaster(
+                new DataBufferInt(pix, ncols * nrows), ncols, nrows, ncols,
+                cm.getMasks(), null);
+        return new BufferedImage(cm, raster, false, null);
+    }
+
+    /**
+     * For writing out pixels as an image without copying them.
+     *
+     * @param pix The ARGB pixels in rows from the top.
+     * @param ncols The number of columns.
+     * @param nrows The number of rows.
+     * @param format The format e.g. "png", ...
+     * @param p The path of the file to write to.
+     */
+    public static void imageToFile(int[] pix, int ncols, int nrows,
+            String format, Path p) {
+        try {
+            Path dir = p.getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            if (!ImageIO.write(toImage(pix, ncols, nrows), format,
+                    p.toFile())) {
+                System.out.println("Format not recognised: " + format);
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
     
 }
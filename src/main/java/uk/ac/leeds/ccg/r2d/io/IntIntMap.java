@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.io;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from int keys to int values using open addressing with linear
+ * probing, so keys and values are not boxed. {@link #NO_KEY} cannot be used
+ * as a key.
+ *
+ * @author Andy Turner
+ */
+class IntIntMap {
+
+    /**
+     * The key of empty slots.
+     */
+    static final int NO_KEY = Integer.MIN_VALUE;
+
+    /**
+     * The value returned by {@link #get(int)} for keys not in the map.
+     */
+    static final int NO_VALUE = Integer.MIN_VALUE;
+
+    /**
+     * The keys. The length is a power of 2.
+     */
+    int[] keys;
+
+    /**
+     * The values.
+     */
+    int[] values;
+
+    /**
+     * The number of keys.
+     */
+    int size;
+
+    /**
+     * Create a new instance.
+     */
+    IntIntMap() {
+        keys = new int[16];
+        Arrays.fill(keys, NO_KEY);
+        values = new int[16];
+    }
+
+    /**
+     * @param key The key.
+     * @return The slot to start looking for key in.
+     */
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (keys.length - 1);
+    }
+
+    /**
+     * @param key The key.
+     * @return The value for key or {@link #NO_VALUE}.
+     */
+    int get(int key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == NO_KEY) {
+                return NO_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Sets the value for key.
+     *
+     * @param key The key.
+     * @param value The value.
+     */
+    void put(int key, int value) {
+        if (2 * (size + 1) > keys.length) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            Arrays.fill(keys, NO_KEY);
+            values = new int[keys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != NO_KEY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        int mask = keys.length - 1;
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                values[i] = value;
+                return;
+            }
+            if (k == NO_KEY) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * For writing ARGB pixels as a PNG a strip of rows at a time, so the whole
+ * image need not be held in memory. Rows are filtered as by
+ * {@link PNGWriter} and compressed into one zlib stream as they are given,
+ * and the compressed data is written out in IDAT chunks of up to
+ * {@link #CHUNK} bytes. Only a row of the image is kept between strips.
+ * Palette indexes can be written likewise to an indexed colour PNG.
+ *
+ * @author Andy Turner
+ */
+public class PNGRowWriter implements Closeable {
+
+    /**
+     * The maximum length of the IDAT chunks written.
+     */
+    static final int CHUNK = 1 << 16;
+
+    /**
+     * The stream written to.
+     */
+    final OutputStream os;
+
+    /**
+     * The number of columns.
+     */
+    final int ncols;
+
+    /**
+     * The number of rows.
+     */
+    final int nrows;
+
+    /**
+     * The number of bytes per pixel, 3 for RGB, 4 for RGBA or 0 if indexed.
+     */
+    final int bpp;
+
+    /**
+     * The bit depth of palette indexes or 0 if not indexed.
+     */
+    final int depth;
+
+    /**
+     * For compressing.
+     */
+    final Deflater deflater;
+
+    /**
+     * For filtering or null if indexed.
+     */
+    final PNGWriter.Filter filter;
+
+    /**
+     * A filtered or packed row.
+     */
+    final byte[] row;
+
+    /**
+     * The compressed data not yet written.
+     */
+    final byte[] chunk;
+
+    /**
+     * The number of bytes in {@link #chunk}.
+     */
+    int n;
+
+    /**
+     * The number of rows written.
+     */
+    int written;
+
+    /**
+     * Create a new instance and write the header of the PNG.
+     *
+     * @param os What {@link #os} is set to. This is closed by
+     * {@link #close()}.
+     * @param ncols What {@link #ncols} is set to.
+     * @param nrows What {@link #nrows} is set to.
+     * @param alpha If true the image is written as RGBA, otherwise as RGB.
+     * @param level The compression level from 0 (none) to 9 (most) or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     * @throws IOException If os cannot be written.
+     */
+    public PNGRowWriter(OutputStream os, int ncols, int nrows, boolean alpha,
+            int level) throws IOException {
+        if (ncols < 1 || nrows < 1 || (long) ncols * 4 + 1 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(ncols + "x" + nrows);
+        }
+        this.os = os;
+        this.ncols = ncols;
+        this.nrows = nrows;
+        this.bpp = alpha ? 4 : 3;
+        this.depth = 0;
+        this.deflater = new Deflater(level);
+        this.filter = new PNGWriter.Filter(null, ncols, bpp);
+        this.row = new byte[1 + ncols * bpp];
+        this.chunk = new byte[CHUNK];
+        os.write(PNGWriter.SIGNATURE);
+        byte[] ihdr = new byte[13];
+        PNGWriter.putInt(ihdr, 0, ncols);
+        PNGWriter.putInt(ihdr, 4, nrows);
+        ihdr[8] = 8;
+        ihdr[9] = (byte) (alpha ? 6 : 2);
+        PNGWriter.writeChunk(os, "IHDR", ihdr);
+        filter.start(0);
+    }
+
+    /**
+     * Create a new instance and write the header of an indexed colour PNG.
+     * The bit depth is the least of 1, 2, 4 or 8 that can index palette.
+     *
+     * @param os What {@link #os} is set to. This is closed by
+     * {@link #close()}.
+     * @param ncols What {@link #ncols} is set to.
+     * @param nrows What {@link #nrows} is set to.
+     * @param palette The ARGB colours of the palette, at most 256.
+     * @param level The compression level from 0 (none) to 9 (most) or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     * @throws IOException If os cannot be written.
+     */
+    public PNGRowWriter(OutputStream os, int ncols, int nrows, int[] palette,
+            int level) throws IOException {
+        if (ncols < 1 || nrows < 1) {
+            throw new IllegalArgumentException(ncols + "x" + nrows);
+        }
+        this.os = os;
+        this.ncols = ncols;
+        this.nrows = nrows;
+        this.bpp = 0;
+        this.depth = PNGWriter.writeIndexedHeader(os, palette, ncols, nrows);
+        this.filter = null;
+        this.row = new byte[1 + (int) (((long) ncols * depth + 7) / 8)];
+        this.deflater = new Deflater(level);
+        this.chunk = new byte[CHUNK];
+    }
+
+    /**
+     * Writes the next rows.
+     *
+     * @param pix The ARGB pixels of the rows from the top.
+     * @param rows The number of rows in pix to write.
+     * @throws IOException If more rows are given than the image has or if
+     * the stream cannot be written.
+     */
+    public void write(int[] pix, int rows) throws IOException {
+        if (filter == null) {
+            throw new IllegalStateException("Writing pixels to indexed");
+        }
+        check(rows);
+        filter.follow(pix);
+        for (int r = 0; r < rows; r++) {
+            filter.next(row, 0);
+            deflate(row);
+        }
+        written += rows;
+    }
+
+    /**
+     * Writes the next rows of an indexed colour PNG.
+     *
+     * @param index The palette indexes of the rows from the top.
+     * @param rows The number of rows in index to write.
+     * @throws IOException If more rows are given than the image has or if
+     * the stream cannot be written.
+     */
+    public void write(byte[] index, int rows) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("Writing indexes to ARGB");
+        }
+        check(rows);
+        PNGWriter.Indexed in = new PNGWriter.Indexed(index, ncols, depth);
+        in.start(0);
+        for (int r = 0; r < rows; r++) {
+            in.next(row, 0);
+            deflate(row);
+        }
+        written += rows;
+    }
+
+    /**
+     * @return true if this writes an indexed colour PNG.
+     */
+    public boolean isIndexed() {
+        return depth != 0;
+    }
+
+    private void check(int rows) throws IOException {
+        if (written + rows > nrows) {
+            throw new IOException("Writing " + rows + " rows after "
+                    + written + " of " + nrows);
+        }
+    }
+
+    /**
+     * Compresses a row.
+     */
+    private void deflate(byte[] b) throws IOException {
+        deflater.setInput(b);
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+    }
+
+    /**
+     * Compresses into {@link #chunk} writing it out when it is full.
+     */
+    private void deflate() throws IOException {
+        n += deflater.deflate(chunk, n, CHUNK - n);
+        if (n == CHUNK) {
+            PNGWriter.writeChunk(os, "IDAT", chunk);
+            n = 0;
+        }
+    }
+
+    /**
+     * Finishes the PNG and closes {@link #os}.
+     *
+     * @throws IOException If not all the rows were written or if the stream
+     * cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try (os) {
+            if (written != nrows) {
+                throw new IOException("Only " + written + " of " + nrows
+                        + " rows written");
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            if (n > 0) {
+                PNGWriter.writeChunk(os, "IDAT",
+                        Arrays.copyOf(chunk, n));
+            }
+            PNGWriter.writeChunk(os, "IEND", new byte[0]);
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,769 @@
+/*
+ * Copyright 2026 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r2d.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * For writing ARGB pixels as a PNG, filtering and compressing bands of rows
+ * concurrently.
+ *
+ * The image data of a PNG is a single zlib stream. Here each band of rows is
+ * filtered and deflated independently into raw deflate blocks ending on a
+ * byte boundary (with a sync flush), so the blocks of the bands can be
+ * joined in order into one stream. Each band is primed with the last 32KB
+ * of the filtered rows before it as a dictionary, so matches can still reach
+ * back across bands. The Adler-32 checksum of the whole stream is combined
+ * from those of the bands. This is as done by pigz for gzip.
+ *
+ * Rows are filtered adaptively, choosing for each row the filter with the
+ * smallest sum of absolute differences as recommended in the PNG
+ * specification. If all the pixels are opaque the image is written as RGB,
+ * otherwise as RGBA, with 8 bits per sample. Palette indexes can also be
+ * written as an indexed colour PNG.
+ *
+ * @author Andy Turner
+ */
+public class PNGWriter {
+
+    /**
+     * The PNG signature.
+     */
+    static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+    /**
+     * The target number of bytes of filtered rows in a band.
+     */
+    static final int BAND_BYTES = 1 << 20;
+
+    /**
+     * The size of the deflate window and so the most dictionary used.
+     */
+    static final int WINDOW = 32768;
+
+    /**
+     * The compression level from 0 (none) to 9 (most) or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    final int level;
+
+    /**
+     * The number of threads to filter and compress with.
+     */
+    final int nThreads;
+
+    /**
+     * Create a new instance.
+     *
+     * @param level What {@link #level} is set to.
+     * @param nThreads What {@link #nThreads} is set to.
+     */
+    public PNGWriter(int level, int nThreads) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("level " + level);
+        }
+        this.level = level;
+        this.nThreads = Math.max(1, nThreads);
+    }
+
+    /**
+     * Writes pixels as a PNG file.
+     *
+     * @param pix The ARGB pixels in rows from the top.
+     * @param ncols The number of columns.
+     * @param nrows The number of rows.
+     * @param p The path of the file to write to.
+     * @throws IOException If p cannot be written.
+     */
+    public void write(int[] pix, int ncols, int nrows, Path p)
+            throws IOException {
+        Path parent = p.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (OutputStream os = new BufferedOutputStream(
+                Files.newOutputStream(p), 1 << 16)) {
+            write(pix, ncols, nrows, os);
+        }
+    }
+
+    /**
+     * Writes pixels as a PNG. The stream is not closed.
+     *
+     * @param pix The ARGB pixels in rows from the top.
+     * @param ncols The number of columns.
+     * @param nrows The number of rows.
+     * @param os The stream to write to.
+     * @throws IOException If os cannot be written.
+     */
+    public void write(int[] pix, int ncols, int nrows, OutputStream os)
+            throws IOException {
+        if (ncols < 1 || nrows < 1 || pix.length < (long) ncols * nrows) {
+            throw new IllegalArgumentException(ncols + "x" + nrows
+                    + " for pix.length " + pix.length);
+        }
+        int bpp = isOpaque(pix, ncols * nrows) ? 3 : 4;
+        if (1L + (long) ncols * bpp > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many columns " + ncols);
+        }
+        os.write(SIGNATURE);
+        byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, ncols);
+        putInt(ihdr, 4, nrows);
+        ihdr[8] = 8;
+        ihdr[9] = (byte) (bpp == 3 ? 2 : 6);
+        writeChunk(os, "IHDR", ihdr);
+        writeImageData(os, nrows, () -> new Filter(pix, ncols, bpp));
+        writeChunk(os, "IEND", new byte[0]);
+        os.flush();
+    }
+
+    /**
+     * Writes palette indexes as an indexed colour PNG file.
+     *
+     * @param index The palette indexes of the pixels in rows from the top.
+     * Each must be less than the length of palette.
+     * @param palette The ARGB colours of the palette, at most 256.
+     * @param ncols The number of columns.
+     * @param nrows The number of rows.
+     * @param p The path of the file to write to.
+     * @throws IOException If p cannot be written.
+     */
+    public void write(byte[] index, int[] palette, int ncols, int nrows,
+            Path p) throws IOException {
+        Path parent = p.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (OutputStream os = new BufferedOutputStream(
+                Files.newOutputStream(p), 1 << 16)) {
+            write(index, palette, ncols, nrows, os);
+        }
+    }
+
+    /**
+     * Writes palette indexes as an indexed colour PNG. The bit depth is the
+     * least of 1, 2, 4 or 8 that can index the palette and the alpha of the
+     * palette is written in a tRNS chunk if any colours are not opaque. Rows
+     * are not filtered as recommended for indexed colour. The stream is not
+     * closed.
+     *
+     * @param index The palette indexes of the pixels in rows from the top.
+     * Each must be less than the length of palette.
+     * @param palette The ARGB colours of the palette, at most 256.
+     * @param ncols The number of columns.
+     * @param nrows The number of rows.
+     * @param os The stream to write to.
+     * @throws IOException If os cannot be written.
+     */
+    public void write(byte[] index, int[] palette, int ncols, int nrows,
+            OutputStream os) throws IOException {
+        if (ncols < 1 || nrows < 1 || index.length < (long) ncols * nrows) {
+            throw new IllegalArgumentException(ncols + "x" + nrows
+                    + " for index.length " + index.length);
+        }
+        int depth = writeIndexedHeader(os, palette, ncols, nrows);
+        writeImageData(os, nrows, () -> new Indexed(index, ncols, depth));
+        writeChunk(os, "IEND", new byte[0]);
+        os.flush();
+    }
+
+    /**
+     * Writes the IDAT chunks, filtering and compressing bands of rows
+     * concurrently.
+     *
+     * @param os The stream to write to.
+     * @param nrows The number of rows.
+     * @param rows For creating a source of the filtered rows for each band.
+     */
+    void writeImageData(OutputStream os, int nrows, Supplier<Rows> rows)
+            throws IOException {
+        int rowBytes = rows.get().getRowBytes();
+        int bandRows = Math.max(1, BAND_BYTES / rowBytes);
+        int nBands = (nrows + bandRows - 1) / bandRows;
+        // Bands are compressed a window at a time so only a window of them
+        // is held in memory.
+        int window = nThreads * 2;
+        ForkJoinPool pool = nThreads > 1 ? new ForkJoinPool(nThreads) : null;
+        try {
+            long adler = 1L;
+            for (int b0 = 0; b0 < nBands; b0 += window) {
+                int b1 = Math.min(nBands, b0 + window);
+                ArrayList<Band> bands = new ArrayList<>(b1 - b0);
+                if (pool == null) {
+                    for (int b = b0; b < b1; b++) {
+                        int r0 = b * bandRows;
+                        bands.add(compress(rows.get(), r0,
+                                Math.min(nrows, r0 + bandRows),
+                                b == nBands - 1));
+                    }
+                } else {
+                    ArrayList<Callable<Band>> tasks = new ArrayList<>(b1 - b0);
+                    for (int b = b0; b < b1; b++) {
+                        int r0 = b * bandRows;
+                        int r1 = Math.min(nrows, r0 + bandRows);
+                        boolean last = b == nBands - 1;
+                        tasks.add(() -> compress(rows.get(), r0, r1, last));
+                    }
+                    for (Future<Band> f : pool.invokeAll(tasks)) {
+                        bands.add(f.get());
+                    }
+                }
+                for (int i = 0; i < bands.size(); i++) {
+                    Band band = bands.get(i);
+                    adler = combine(adler, band.adler, band.length);
+                    int b = b0 + i;
+                    byte[] head = b == 0 ? getZlibHeader() : new byte[0];
+                    byte[] tail = new byte[0];
+                    if (b == nBands - 1) {
+                        tail = new byte[4];
+                        putInt(tail, 0, (int) adler);
+                    }
+                    writeChunk(os, "IDAT", head, band.data, tail);
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * A compressed band of rows.
+     */
+    static final class Band {
+
+        /**
+         * The raw deflate blocks.
+         */
+        final byte[] data;
+
+        /**
+         * The Adler-32 checksum of the filtered rows.
+         */
+        final long adler;
+
+        /**
+         * The number of bytes of filtered rows.
+         */
+        final int length;
+
+        Band(byte[] data, long adler, int length) {
+            this.data = data;
+            this.adler = adler;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Filters and deflates rows r0 to r1 - 1.
+     *
+     * @param filter The source of the filtered rows.
+     * @param last If true the deflate stream is finished, otherwise it is
+     * flushed to a byte boundary.
+     */
+    Band compress(Rows filter, int r0, int r1, boolean last) {
+        int rowBytes = filter.getRowBytes();
+        Deflater d = new Deflater(level, true);
+        try {
+            if (r0 > 0) {
+                int dr = Math.min(r0, (WINDOW + rowBytes - 1) / rowBytes);
+                byte[] dict = new byte[dr * rowBytes];
+                filter.start(r0 - dr);
+                for (int r = 0; r < dr; r++) {
+                    filter.next(dict, r * rowBytes);
+                }
+                int n = Math.min(WINDOW, dict.length);
+                d.setDictionary(dict, dict.length - n, n);
+            }
+            byte[] data = new byte[(r1 - r0) * rowBytes];
+            filter.start(r0);
+            for (int r = 0; r < r1 - r0; r++) {
+                filter.next(data, r * rowBytes);
+            }
+            Adler32 a = new Adler32();
+            a.update(data);
+            d.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    Math.max(64, data.length / 4));
+            byte[] buf = new byte[1 << 16];
+            if (last) {
+                d.finish();
+                while (!d.finished()) {
+                    out.write(buf, 0, d.deflate(buf));
+                }
+            } else {
+                int n;
+                do {
+                    n = d.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    out.write(buf, 0, n);
+                } while (n == buf.length);
+            }
+            return new Band(out.toByteArray(), a.getValue(), data.length);
+        } finally {
+            d.end();
+        }
+    }
+
+    /**
+     * A source of filtered rows one after another. Each row is the filter
+     * type then the filtered bytes.
+     */
+    abstract static class Rows {
+
+        /**
+         * @return The number of bytes in each filtered row.
+         */
+        abstract int getRowBytes();
+
+        /**
+         * Sets the next row to filter.
+         *
+         * @param row The row.
+         */
+        abstract void start(int row);
+
+        /**
+         * Filters the next row into dst at off.
+         *
+         * @param dst The destination.
+         * @param off The offset in dst.
+         */
+        abstract void next(byte[] dst, int off);
+    }
+
+    /**
+     * For packing rows of palette indexes with no filtering.
+     */
+    static final class Indexed extends Rows {
+
+        final byte[] index;
+
+        final int ncols;
+
+        final int depth;
+
+        final int rowBytes;
+
+        /**
+         * The next row.
+         */
+        int row;
+
+        Indexed(byte[] index, int ncols, int depth) {
+            this.index = index;
+            this.ncols = ncols;
+            this.depth = depth;
+            this.rowBytes = 1 + (ncols * depth + 7) / 8;
+        }
+
+        @Override
+        int getRowBytes() {
+            return rowBytes;
+        }
+
+        @Override
+        void start(int row) {
+            this.row = row;
+        }
+
+        @Override
+        void next(byte[] dst, int off) {
+            int i = row * ncols;
+            dst[off] = 0;
+            if (depth == 8) {
+                System.arraycopy(index, i, dst, off + 1, ncols);
+            } else {
+                int perByte = 8 / depth;
+                int mask = (1 << depth) - 1;
+                int j = off + 1;
+                for (int c = 0; c < ncols; c += perByte) {
+                    int v = 0;
+                    int m = Math.min(perByte, ncols - c);
+                    for (int k = 0; k < perByte; k++) {
+                        v <<= depth;
+                        if (k < m) {
+                            v |= index[i + c + k] & mask;
+                        }
+                    }
+                    dst[j++] = (byte) v;
+                }
+            }
+            row++;
+        }
+    }
+
+    /**
+     * For filtering rows of ARGB pixels adaptively one after another.
+     */
+    static final class Filter extends Rows {
+
+        /**
+         * The pixels in rows from the top.
+         */
+        int[] pix;
+
+        final int ncols;
+
+        final int bpp;
+
+        final int len;
+
+        /**
+         * The next row.
+         */
+        int row;
+
+        /**
+         * The unfiltered bytes of the previous and next row.
+         */
+        byte[] prev, cur;
+
+        Filter(int[] pix, int ncols, int bpp) {
+            this.pix = pix;
+            this.ncols = ncols;
+            this.bpp = bpp;
+            this.len = ncols * bpp;
+            this.prev = new byte[len];
+            this.cur = new byte[len];
+        }
+
+        /**
+         * Continues filtering from the first row of other pixels, which
+         * follow on from the row last filtered.
+         *
+         * @param pix What {@link #pix} is set to.
+         */
+        void follow(int[] pix) {
+            this.pix = pix;
+            this.row = 0;
+        }
+
+        @Override
+        int getRowBytes() {
+            return 1 + len;
+        }
+
+        @Override
+        void start(int row) {
+            this.row = row;
+            if (row == 0) {
+                Arrays.fill(prev, (byte) 0);
+            } else {
+                unpack(row - 1, prev);
+            }
+        }
+
+        /**
+         * Filters the next row into dst at off as the filter type then the
+         * filtered bytes. A row the same as the previous one is all zeros
+         * with the Up filter, otherwise the sums of the filters are found
+         * in a first pass and the best filter is applied in a second.
+         */
+        @Override
+        void next(byte[] dst, int off) {
+            unpack(row, cur);
+            if (Arrays.equals(cur, prev)) {
+                dst[off] = 2;
+                Arrays.fill(dst, off + 1, off + 1 + len, (byte) 0);
+            } else {
+                long s0 = 0L, s1 = 0L, s2 = 0L, s3 = 0L, s4 = 0L;
+                for (int x = 0; x < len; x++) {
+                    int raw = cur[x] & 0xff;
+                    int b = prev[x] & 0xff;
+                    int a, c;
+                    if (x >= bpp) {
+                        a = cur[x - bpp] & 0xff;
+                        c = prev[x - bpp] & 0xff;
+                    } else {
+                        a = 0;
+                        c = 0;
+                    }
+                    s0 += Math.abs((byte) raw);
+                    s1 += Math.abs((byte) (raw - a));
+                    s2 += Math.abs((byte) (raw - b));
+                    s3 += Math.abs((byte) (raw - ((a + b) >> 1)));
+                    s4 += Math.abs((byte) (raw - paeth(a, b, c)));
+                }
+                int best = 0;
+                long min = s0;
+                if (s1 < min) {
+                    best = 1;
+                    min = s1;
+                }
+                if (s2 < min) {
+                    best = 2;
+                    min = s2;
+                }
+                if (s3 < min) {
+                    best = 3;
+                    min = s3;
+                }
+                if (s4 < min) {
+                    best = 4;
+                }
+                dst[off] = (byte) best;
+                apply(best, dst, off + 1);
+            }
+            byte[] t = prev;
+            prev = cur;
+            cur = t;
+            row++;
+        }
+
+        /**
+         * Applies filter type f to {@link #cur} into dst at off.
+         */
+        void apply(int f, byte[] dst, int off) {
+            switch (f) {
+                case 0 ->
+                    System.arraycopy(cur, 0, dst, off, len);
+                case 1 -> {
+                    System.arraycopy(cur, 0, dst, off, bpp);
+                    for (int x = bpp; x < len; x++) {
+                        dst[off + x] = (byte) (cur[x] - cur[x - bpp]);
+                    }
+                }
+                case 2 -> {
+                    for (int x = 0; x < len; x++) {
+                        dst[off + x] = (byte) (cur[x] - prev[x]);
+                    }
+                }
+                case 3 -> {
+                    for (int x = 0; x < len; x++) {
+                        int a = x >= bpp ? cur[x - bpp] & 0xff : 0;
+                        dst[off + x] = (byte) ((cur[x] & 0xff)
+                                - ((a + (prev[x] & 0xff)) >> 1));
+                    }
+                }
+                default -> {
+                    for (int x = 0; x < len; x++) {
+                        int a, c;
+                        if (x >= bpp) {
+                            a = cur[x - bpp] & 0xff;
+                            c = prev[x - bpp] & 0xff;
+                        } else {
+                            a = 0;
+                            c = 0;
+                        }
+                        dst[off + x] = (byte) ((cur[x] & 0xff)
+                                - paeth(a, prev[x] & 0xff, c));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Unpacks a row of ARGB pixels as RGB or RGBA bytes.
+         */
+        void unpack(int r, byte[] b) {
+            int i = r * ncols;
+            int j = 0;
+            if (bpp == 3) {
+                for (int c = 0; c < ncols; c++) {
+                    int p = pix[i + c];
+                    b[j++] = (byte) (p >> 16);
+                    b[j++] = (byte) (p >> 8);
+                    b[j++] = (byte) p;
+                }
+            } else {
+                for (int c = 0; c < ncols; c++) {
+                    int p = pix[i + c];
+                    b[j++] = (byte) (p >> 16);
+                    b[j++] = (byte) (p >> 8);
+                    b[j++] = (byte) p;
+                    b[j++] = (byte) (p >>> 24);
+                }
+            }
+        }
+    }
+
+    /**
+     * The Paeth predictor.
+     */
+    static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * @param pix The pixels.
+     * @param n The number of pixels.
+     * @return true if all the pixels are opaque.
+     */
+    static boolean isOpaque(int[] pix, int n) {
+        for (int i = 0; i < n; i++) {
+            if ((pix[i] >>> 24) != 0xff) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Combines the Adler-32 checksums of two sequences of bytes into that of
+     * the sequences one after the other, as adler32_combine in zlib.
+     *
+     * @param adler1 The checksum of the first sequence.
+     * @param adler2 The checksum of the second sequence.
+     * @param len2 The length of the second sequence.
+     * @return The checksum of both.
+     */
+    static long combine(long adler1, long adler2, long len2) {
+        final long base = 65521L;
+        long rem = len2 % base;
+        long sum1 = adler1 & 0xffffL;
+        long sum2 = (rem * sum1) % base;
+        sum1 += (adler2 & 0xffffL) + base - 1L;
+        sum2 += ((adler1 >> 16) & 0xffffL) + ((adler2 >> 16) & 0xffffL)
+                + base - rem;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= (base << 1);
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * @return The zlib header for a 32KB window and {@link #level}.
+     */
+    byte[] getZlibHeader() {
+        int flevel;
+        if (level == Deflater.DEFAULT_COMPRESSION || level == 6) {
+            flevel = 2;
+        } else if (level < 2) {
+            flevel = 0;
+        } else if (level < 6) {
+            flevel = 1;
+        } else {
+            flevel = 3;
+        }
+        int cmf = 0x78;
+        int flg = flevel << 6;
+        flg += 31 - ((cmf << 8) + flg) % 31;
+        return new byte[]{(byte) cmf, (byte) flg};
+    }
+
+    /**
+     * Writes the signature, IHDR, PLTE and if any colours are not opaque the
+     * tRNS chunk of an indexed colour PNG.
+     *
+     * @return The bit depth.
+     */
+    static int writeIndexedHeader(OutputStream os, int[] palette, int ncols,
+            int nrows) throws IOException {
+        int n = palette.length;
+        if (n < 1 || n > 256) {
+            throw new IllegalArgumentException("Palette of " + n
+                    + " colours");
+        }
+        int depth = n <= 2 ? 1 : n <= 4 ? 2 : n <= 16 ? 4 : 8;
+        os.write(SIGNATURE);
+        byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, ncols);
+        putInt(ihdr, 4, nrows);
+        ihdr[8] = (byte) depth;
+        ihdr[9] = 3;
+        writeChunk(os, "IHDR", ihdr);
+        byte[] plte = new byte[3 * n];
+        int lastAlpha = -1;
+        for (int i = 0; i < n; i++) {
+            int c = palette[i];
+            plte[3 * i] = (byte) (c >> 16);
+            plte[3 * i + 1] = (byte) (c >> 8);
+            plte[3 * i + 2] = (byte) c;
+            if ((c >>> 24) != 0xff) {
+                lastAlpha = i;
+            }
+        }
+        writeChunk(os, "PLTE", plte);
+        if (lastAlpha >= 0) {
+            byte[] trns = new byte[lastAlpha + 1];
+            for (int i = 0; i <= lastAlpha; i++) {
+                trns[i] = (byte) (palette[i] >>> 24);
+            }
+            writeChunk(os, "tRNS", trns);
+        }
+        return depth;
+    }
+
+    /**
+     * Writes a chunk with data made of parts.
+     */
+    static void writeChunk(OutputStream os, String type, byte[]... parts)
+            throws IOException {
+        long length = 0L;
+        for (byte[] p : parts) {
+            length += p.length;
+        }
+        byte[] b = new byte[8];
+        putInt(b, 0, (int) length);
+        for (int i = 0; i < 4; i++) {
+            b[4 + i] = (byte) type.charAt(i);
+        }
+        os.write(b);
+        CRC32 crc = new CRC32();
+        crc.update(b, 4, 4);
+        for (byte[] p : parts) {
+            os.write(p);
+            crc.update(p);
+        }
+        putInt(b, 0, (int) crc.getValue());
+        os.write(b, 0, 4);
+    }
+
+    /**
+     * Puts v into b at off in big endian order.
+     */
+    static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+}